@@ -0,0 +1,19 @@
+package net.iteach.core.model;
+
+import lombok.Data;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Number and minutes of lessons per day between two dates (included). The arrays have
+ * one item per day, the first one being for the <code>from</code> date.
+ */
+@Data
+public class LessonDensity {
+
+	private final LocalDate from;
+	private final LocalDate to;
+	private final int[] counts;
+	private final int[] minutes;
+
+}
@@ -0,0 +1,22 @@
+package net.iteach.core.model;
+
+/**
+ * Interval between two lessons of a series
+ */
+public enum LessonPeriod {
+
+	WEEKLY(1),
+
+	BIWEEKLY(2);
+
+	private final int weeks;
+
+	private LessonPeriod(int weeks) {
+		this.weeks = weeks;
+	}
+
+	public int getWeeks() {
+		return weeks;
+	}
+
+}
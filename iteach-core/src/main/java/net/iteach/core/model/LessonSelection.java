@@ -0,0 +1,12 @@
+package net.iteach.core.model;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class LessonSelection {
+	
+	private final List<Integer> ids;
+
+}
@@ -0,0 +1,16 @@
+package net.iteach.core.model;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Same change for all the selected lessons
+ */
+@Data
+public class LessonSelectionChange {
+	
+	private final List<Integer> ids;
+	private final LessonChange change;
+
+}
@@ -0,0 +1,25 @@
+package net.iteach.core.model;
+
+import net.iteach.core.validation.LessonSeriesFormValidation;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+
+import lombok.Data;
+
+/**
+ * Lessons repeated every week or every other week, from the <code>date</code> of the first
+ * lesson until the <code>until</code> date (included).
+ */
+@Data
+public class LessonSeriesForm implements LessonSeriesFormValidation {
+
+	private final LocalDate date;
+	private final LocalTime from;
+	private final LocalTime to;
+	private final int student;
+	private final String location;
+	private final LessonPeriod period;
+	private final LocalDate until;
+
+}
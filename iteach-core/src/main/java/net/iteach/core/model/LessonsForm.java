@@ -0,0 +1,15 @@
+package net.iteach.core.model;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Several lessons to create at once, for example when copying a week.
+ */
+@Data
+public class LessonsForm {
+	
+	private final List<LessonForm> lessons;
+
+}
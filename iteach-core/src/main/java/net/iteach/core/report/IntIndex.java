@@ -0,0 +1,77 @@
+package net.iteach.core.report;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from <code>int</code> keys to positions in a list, which
+ * does not box the keys.
+ */
+class IntIndex {
+
+    private int[] keys;
+    private int[] positions;
+    private int size;
+
+    IntIndex() {
+        keys = new int[16];
+        positions = new int[16];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Position associated with the key, or <code>-1</code>
+     */
+    int get(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (positions[slot] >= 0) {
+            if (keys[slot] == key) {
+                return positions[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    void put(int key, int position) {
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (positions[slot] >= 0) {
+            if (keys[slot] == key) {
+                positions[slot] = position;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        positions[slot] = position;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldPositions = positions;
+        keys = new int[oldKeys.length * 2];
+        positions = new int[oldKeys.length * 2];
+        Arrays.fill(positions, -1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldPositions[i] >= 0) {
+                put(oldKeys[i], oldPositions[i]);
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -8,62 +8,47 @@ import lombok.Data;
 import org.joda.money.Money;
 import org.joda.time.YearMonth;
 
+/**
+ * Monthly report, built by the {@link ReportAccumulator}. The totals are computed once.
+ */
 @Data
 public class MonthlyReport {
 	
 	private final YearMonth yearMonth;
 	private final List<SchoolMonthlyHours> schools;
-	
-	public BigDecimal getMonthlyHours () {
-		BigDecimal hours = BigDecimal.ZERO;
-		for (SchoolMonthlyHours school: schools) {
-			hours = hours.add(school.getMonthlyHours());
-		}
-		return hours;
-	}
-	
-	public BigDecimal getTotalHours () {
-		BigDecimal hours = BigDecimal.ZERO;
-		for (SchoolMonthlyHours school: schools) {
-			hours = hours.add(school.getTotalHours());
-		}
-		return hours;
-	}
-	
-	public Money getMonthlyAmount () {
-		Money amount = null;
-		boolean ok = true;
-		for (SchoolMonthlyHours school : schools) {
-			if (ok) {
-				Money totalAmount = school.getMonthlyAmount();
-				if (amount == null) {
-					amount = totalAmount;
-				} else if (amount.getCurrencyUnit().equals(totalAmount.getCurrencyUnit())) {
-					amount = amount.plus(totalAmount.getAmount());
-				} else {
-					ok = false;
-				}
-			}
-		}
-		return ok ? amount : null;
-	}
-	
-	public Money getTotalAmount () {
-		Money amount = null;
+	private final BigDecimal monthlyHours;
+	private final BigDecimal totalHours;
+	/**
+	 * Sum of the monthly amounts of the schools, <code>null</code> if they are in different currencies
+	 */
+	private final Money monthlyAmount;
+	/**
+	 * Sum of the total amounts of the schools, <code>null</code> if they are in different currencies
+	 */
+	private final Money totalAmount;
+
+	public MonthlyReport(YearMonth yearMonth, List<SchoolMonthlyHours> schools, BigDecimal monthlyHours, BigDecimal totalHours) {
+		this.yearMonth = yearMonth;
+		this.schools = schools;
+		this.monthlyHours = monthlyHours;
+		this.totalHours = totalHours;
+		Money monthlyAmount = null;
+		Money totalAmount = null;
 		boolean ok = true;
 		for (SchoolMonthlyHours school : schools) {
-			if (ok) {
-				Money schoolAmount = school.getTotalAmount();
-				if (amount == null) {
-					amount = schoolAmount;
-				} else if (amount.getCurrencyUnit().equals(schoolAmount.getCurrencyUnit())) {
-					amount = amount.plus(schoolAmount.getAmount());
-				} else {
-					ok = false;
-				}
+			if (monthlyAmount == null) {
+				monthlyAmount = school.getMonthlyAmount();
+				totalAmount = school.getTotalAmount();
+			} else if (monthlyAmount.getCurrencyUnit().equals(school.getHourlyRate().getCurrencyUnit())) {
+				monthlyAmount = monthlyAmount.plus(school.getMonthlyAmount());
+				totalAmount = totalAmount.plus(school.getTotalAmount());
+			} else {
+				ok = false;
+				break;
 			}
 		}
-		return ok ? amount : null;
+		this.monthlyAmount = ok ? monthlyAmount : null;
+		this.totalAmount = ok ? totalAmount : null;
 	}
 
 }
@@ -0,0 +1,33 @@
+package net.iteach.core.report;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import lombok.Data;
+
+import org.joda.money.Money;
+import org.joda.time.LocalDate;
+
+/**
+ * Hours of the schools and students of a teacher between two dates, split into periods.
+ * Built by the {@link RangeReportAccumulator}.
+ */
+@Data
+public class RangeReport {
+
+	private final LocalDate from;
+	private final LocalDate to;
+	private final ReportGranularity granularity;
+	/**
+	 * Start of each period. The first one may be before <code>from</code>.
+	 */
+	private final List<LocalDate> periods;
+	private final List<SchoolRangeHours> schools;
+	private final List<BigDecimal> hours;
+	private final BigDecimal totalHours;
+	/**
+	 * Sum of the amounts of the schools, <code>null</code> if they are in different currencies
+	 */
+	private final Money totalAmount;
+
+}
@@ -0,0 +1,206 @@
+package net.iteach.core.report;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.joda.money.Money;
+import org.joda.time.LocalDate;
+
+/**
+ * Collects the minutes of the lessons between two dates into one <code>long</code> counter
+ * per period, for each school and student, and builds the {@link RangeReport} in one single
+ * {@link #freeze() freeze} step.
+ * <p/>
+ * Lessons can be added in any order. Schools and students are kept in the order they are
+ * first added. An accumulator is not thread safe and can be frozen only once.
+ */
+public class RangeReportAccumulator {
+
+	private final LocalDate from;
+	private final LocalDate to;
+	private final ReportGranularity granularity;
+	private final LocalDate origin;
+	private final List<LocalDate> periods = new ArrayList<>();
+	private final IntIndex schoolIndex = new IntIndex();
+	private final List<SchoolAccumulator> schools = new ArrayList<>();
+	private boolean frozen = false;
+
+	public RangeReportAccumulator(LocalDate from, LocalDate to, ReportGranularity granularity) {
+		this.from = from;
+		this.to = to;
+		this.granularity = granularity;
+		this.origin = granularity.getStart(from);
+		LocalDate start = origin;
+		while (!start.isAfter(to)) {
+			periods.add(start);
+			start = granularity.getNext(start);
+		}
+	}
+
+	public int getPeriodCount() {
+		return periods.size();
+	}
+
+	/**
+	 * Registers a school, if not already done.
+	 */
+	public RangeReportAccumulator addSchool(int id, String name, String color, Money hourlyRate) {
+		checkNotFrozen();
+		if (schoolIndex.get(id) < 0) {
+			schoolIndex.put(id, schools.size());
+			schools.add(new SchoolAccumulator(id, name, color, hourlyRate, periods.size()));
+		}
+		return this;
+	}
+
+	/**
+	 * Adds the minutes of a lesson to a student of a school, which must have been registered before.
+	 */
+	public RangeReportAccumulator addMinutes(int schoolId, int studentId, String studentName, boolean studentDisabled, LocalDate date, long minutes) {
+		checkNotFrozen();
+		if (date.isBefore(from) || date.isAfter(to)) {
+			throw new IllegalArgumentException("The date " + date + " is not in the report range");
+		}
+		int position = schoolIndex.get(schoolId);
+		if (position < 0) {
+			throw new IllegalStateException("School " + schoolId + " has not been added to the report");
+		}
+		schools.get(position).addMinutes(studentId, studentName, studentDisabled, granularity.getIndex(origin, date), minutes);
+		return this;
+	}
+
+	/**
+	 * Builds the report. The accumulator cannot be used any longer afterwards.
+	 */
+	public RangeReport freeze() {
+		checkNotFrozen();
+		frozen = true;
+		long[] minutes = new long[periods.size()];
+		List<SchoolRangeHours> list = new ArrayList<>(schools.size());
+		Money totalAmount = null;
+		boolean ok = true;
+		for (SchoolAccumulator school : schools) {
+			SchoolRangeHours schoolHours = school.freeze();
+			list.add(schoolHours);
+			for (int i = 0; i < minutes.length; i++) {
+				minutes[i] += school.minutes[i];
+			}
+			if (totalAmount == null) {
+				totalAmount = schoolHours.getTotalAmount();
+			} else if (totalAmount.getCurrencyUnit().equals(school.hourlyRate.getCurrencyUnit())) {
+				totalAmount = totalAmount.plus(schoolHours.getTotalAmount());
+			} else {
+				ok = false;
+			}
+		}
+		return new RangeReport(
+				from,
+				to,
+				granularity,
+				Collections.unmodifiableList(periods),
+				Collections.unmodifiableList(list),
+				toHours(minutes),
+				ReportAccumulator.toHours(sum(minutes)),
+				ok ? totalAmount : null);
+	}
+
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("The report has already been built");
+		}
+	}
+
+	private static List<BigDecimal> toHours(long[] minutes) {
+		List<BigDecimal> hours = new ArrayList<>(minutes.length);
+		for (long m : minutes) {
+			hours.add(ReportAccumulator.toHours(m));
+		}
+		return Collections.unmodifiableList(hours);
+	}
+
+	private static long sum(long[] minutes) {
+		long total = 0;
+		for (long m : minutes) {
+			total += m;
+		}
+		return total;
+	}
+
+	private static class SchoolAccumulator {
+
+		private final int id;
+		private final String name;
+		private final String color;
+		private final Money hourlyRate;
+		private final long[] minutes;
+		private final IntIndex studentIndex = new IntIndex();
+		private final List<StudentAccumulator> students = new ArrayList<>();
+
+		private SchoolAccumulator(int id, String name, String color, Money hourlyRate, int periodCount) {
+			this.id = id;
+			this.name = name;
+			this.color = color;
+			this.hourlyRate = hourlyRate;
+			this.minutes = new long[periodCount];
+		}
+
+		private void addMinutes(int studentId, String studentName, boolean studentDisabled, int period, long value) {
+			int position = studentIndex.get(studentId);
+			StudentAccumulator student;
+			if (position < 0) {
+				studentIndex.put(studentId, students.size());
+				student = new StudentAccumulator(studentId, studentName, studentDisabled, minutes.length);
+				students.add(student);
+			} else {
+				student = students.get(position);
+			}
+			student.minutes[period] += value;
+			minutes[period] += value;
+		}
+
+		private SchoolRangeHours freeze() {
+			List<StudentRangeHours> list = new ArrayList<>(students.size());
+			for (StudentAccumulator student : students) {
+				BigDecimal totalHours = ReportAccumulator.toHours(sum(student.minutes));
+				list.add(new StudentRangeHours(
+						student.id,
+						student.name,
+						student.disabled,
+						toHours(student.minutes),
+						totalHours,
+						hourlyRate.multipliedBy(totalHours, RoundingMode.HALF_UP)));
+			}
+			BigDecimal totalHours = ReportAccumulator.toHours(sum(minutes));
+			return new SchoolRangeHours(
+					id,
+					name,
+					color,
+					hourlyRate,
+					Collections.unmodifiableList(list),
+					toHours(minutes),
+					totalHours,
+					hourlyRate.multipliedBy(totalHours, RoundingMode.HALF_UP));
+		}
+
+	}
+
+	private static class StudentAccumulator {
+
+		private final int id;
+		private final String name;
+		private final boolean disabled;
+		private final long[] minutes;
+
+		private StudentAccumulator(int id, String name, boolean disabled, int periodCount) {
+			this.id = id;
+			this.name = name;
+			this.disabled = disabled;
+			this.minutes = new long[periodCount];
+		}
+
+	}
+
+}
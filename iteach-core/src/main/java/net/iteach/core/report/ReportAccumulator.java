@@ -0,0 +1,171 @@
+package net.iteach.core.report;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.money.Money;
+import org.joda.time.YearMonth;
+
+/**
+ * Collects the minutes of the students, per school, and builds the {@link MonthlyReport}
+ * in one single {@link #freeze(YearMonth) freeze} step.
+ * <p/>
+ * The minutes are summed in <code>long</code> counters and converted into hours and amounts
+ * only once, when freezing. Adding minutes to a school or a student already known does not
+ * allocate anything. Schools and students are kept in the order they are first added.
+ * <p/>
+ * An accumulator is not thread safe and can be frozen only once.
+ */
+public class ReportAccumulator {
+
+	private static final BigDecimal MINUTES_IN_HOUR = BigDecimal.valueOf(60);
+
+	private final IntIndex schoolIndex = new IntIndex();
+	private final List<SchoolAccumulator> schools = new ArrayList<>();
+	private boolean frozen = false;
+
+	/**
+	 * Registers a school, if not already done.
+	 */
+	public ReportAccumulator addSchool(int id, String name, String color, Money hourlyRate) {
+		checkNotFrozen();
+		if (schoolIndex.get(id) < 0) {
+			schoolIndex.put(id, schools.size());
+			schools.add(new SchoolAccumulator(id, name, color, hourlyRate));
+		}
+		return this;
+	}
+
+	/**
+	 * Adds minutes to a student of a school, which must have been registered before.
+	 *
+	 * @param monthlyMinutes Minutes in the month
+	 * @param totalMinutes   Minutes since the beginning, including the month
+	 */
+	public ReportAccumulator addMinutes(int schoolId, int studentId, String studentName, boolean studentDisabled, long monthlyMinutes, long totalMinutes) {
+		checkNotFrozen();
+		int position = schoolIndex.get(schoolId);
+		if (position < 0) {
+			throw new IllegalStateException("School " + schoolId + " has not been added to the report");
+		}
+		schools.get(position).addMinutes(studentId, studentName, studentDisabled, monthlyMinutes, totalMinutes);
+		return this;
+	}
+
+	/**
+	 * Builds the report. The accumulator cannot be used any longer afterwards.
+	 */
+	public MonthlyReport freeze(YearMonth yearMonth) {
+		checkNotFrozen();
+		frozen = true;
+		List<SchoolMonthlyHours> list = new ArrayList<>(schools.size());
+		long monthlyMinutes = 0;
+		long totalMinutes = 0;
+		for (SchoolAccumulator school : schools) {
+			list.add(school.freeze());
+			monthlyMinutes += school.monthlyMinutes;
+			totalMinutes += school.totalMinutes;
+		}
+		return new MonthlyReport(
+				yearMonth,
+				Collections.unmodifiableList(list),
+				toHours(monthlyMinutes),
+				toHours(totalMinutes));
+	}
+
+	/**
+	 * Converts minutes into hours, with two decimals.
+	 */
+	public static BigDecimal toHours(long minutes) {
+		if (minutes == 0) {
+			return BigDecimal.ZERO;
+		} else {
+			return BigDecimal.valueOf(minutes).divide(MINUTES_IN_HOUR, 2, RoundingMode.HALF_UP);
+		}
+	}
+
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("The report has already been built");
+		}
+	}
+
+	private static class SchoolAccumulator {
+
+		private final int id;
+		private final String name;
+		private final String color;
+		private final Money hourlyRate;
+		private final IntIndex studentIndex = new IntIndex();
+		private final List<StudentAccumulator> students = new ArrayList<>();
+		private long monthlyMinutes;
+		private long totalMinutes;
+
+		private SchoolAccumulator(int id, String name, String color, Money hourlyRate) {
+			this.id = id;
+			this.name = name;
+			this.color = color;
+			this.hourlyRate = hourlyRate;
+		}
+
+		private void addMinutes(int studentId, String studentName, boolean studentDisabled, long monthly, long total) {
+			int position = studentIndex.get(studentId);
+			StudentAccumulator student;
+			if (position < 0) {
+				studentIndex.put(studentId, students.size());
+				student = new StudentAccumulator(studentId, studentName, studentDisabled);
+				students.add(student);
+			} else {
+				student = students.get(position);
+			}
+			student.monthlyMinutes += monthly;
+			student.totalMinutes += total;
+			monthlyMinutes += monthly;
+			totalMinutes += total;
+		}
+
+		private SchoolMonthlyHours freeze() {
+			Map<Integer, StudentMonthlyHours> map = new LinkedHashMap<>(2 * students.size());
+			for (StudentAccumulator student : students) {
+				map.put(student.id, new StudentMonthlyHours(
+						student.id,
+						student.name,
+						student.disabled,
+						hourlyRate,
+						toHours(student.monthlyMinutes),
+						toHours(student.totalMinutes)));
+			}
+			return new SchoolMonthlyHours(
+					id,
+					name,
+					color,
+					hourlyRate,
+					Collections.unmodifiableMap(map),
+					toHours(monthlyMinutes),
+					toHours(totalMinutes));
+		}
+
+	}
+
+	private static class StudentAccumulator {
+
+		private final int id;
+		private final String name;
+		private final boolean disabled;
+		private long monthlyMinutes;
+		private long totalMinutes;
+
+		private StudentAccumulator(int id, String name, boolean disabled) {
+			this.id = id;
+			this.name = name;
+			this.disabled = disabled;
+		}
+
+	}
+
+}
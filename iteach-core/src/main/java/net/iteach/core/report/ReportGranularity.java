@@ -0,0 +1,86 @@
+package net.iteach.core.report;
+
+import org.joda.time.DateTimeConstants;
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+
+/**
+ * Size of the periods of a {@link RangeReport}.
+ */
+public enum ReportGranularity {
+
+	/**
+	 * ISO weeks, starting on Monday
+	 */
+	WEEK {
+		@Override
+		public LocalDate getStart(LocalDate date) {
+			return date.withDayOfWeek(DateTimeConstants.MONDAY);
+		}
+
+		@Override
+		public LocalDate getNext(LocalDate start) {
+			return start.plusWeeks(1);
+		}
+
+		@Override
+		public int getIndex(LocalDate origin, LocalDate date) {
+			return Days.daysBetween(origin, date).getDays() / 7;
+		}
+	},
+
+	MONTH {
+		@Override
+		public LocalDate getStart(LocalDate date) {
+			return date.withDayOfMonth(1);
+		}
+
+		@Override
+		public LocalDate getNext(LocalDate start) {
+			return start.plusMonths(1);
+		}
+
+		@Override
+		public int getIndex(LocalDate origin, LocalDate date) {
+			return getMonths(origin, date);
+		}
+	},
+
+	QUARTER {
+		@Override
+		public LocalDate getStart(LocalDate date) {
+			return new LocalDate(date.getYear(), 3 * ((date.getMonthOfYear() - 1) / 3) + 1, 1);
+		}
+
+		@Override
+		public LocalDate getNext(LocalDate start) {
+			return start.plusMonths(3);
+		}
+
+		@Override
+		public int getIndex(LocalDate origin, LocalDate date) {
+			return getMonths(origin, date) / 3;
+		}
+	};
+
+	/**
+	 * Start of the period which contains the given date
+	 */
+	public abstract LocalDate getStart(LocalDate date);
+
+	/**
+	 * Start of the period which follows the one starting at the given date
+	 */
+	public abstract LocalDate getNext(LocalDate start);
+
+	/**
+	 * Index of the period which contains the date, counted from the period starting at <code>origin</code>.
+	 * The date must not be before the origin.
+	 */
+	public abstract int getIndex(LocalDate origin, LocalDate date);
+
+	private static int getMonths(LocalDate origin, LocalDate date) {
+		return 12 * (date.getYear() - origin.getYear()) + date.getMonthOfYear() - origin.getMonthOfYear();
+	}
+
+}
@@ -0,0 +1,25 @@
+package net.iteach.core.report;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import lombok.Data;
+
+import org.joda.money.Money;
+
+/**
+ * Hours of a school and of its students for each period of a {@link RangeReport}
+ */
+@Data
+public class SchoolRangeHours {
+
+	private final int id;
+	private final String name;
+	private final String color;
+	private final Money hourlyRate;
+	private final List<StudentRangeHours> students;
+	private final List<BigDecimal> hours;
+	private final BigDecimal totalHours;
+	private final Money totalAmount;
+
+}
@@ -1,15 +1,15 @@
 package net.iteach.core.report;
 
-import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.joda.money.Money;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 
+/**
+ * Hours of a student, built by the {@link ReportAccumulator}. The amounts are computed once.
+ */
 @Data
-@AllArgsConstructor(access = AccessLevel.PROTECTED)
 public class StudentMonthlyHours {
 
     private final int id;
@@ -18,23 +18,18 @@ public class StudentMonthlyHours {
     private final Money hourlyRate;
     private final BigDecimal monthlyHours;
     private final BigDecimal totalHours;
-
-    public StudentMonthlyHours(int id, String name, boolean disabled, Money hourlyRate) {
-        this(id, name, disabled, hourlyRate, BigDecimal.ZERO, BigDecimal.ZERO);
-    }
-
-    public StudentMonthlyHours addHours(BigDecimal hours, boolean isMonthlyHours) {
-        return new StudentMonthlyHours(id, name, disabled, hourlyRate,
-                isMonthlyHours ? monthlyHours.add(hours) : monthlyHours,
-                totalHours.add(hours));
-    }
-
-    public Money getMonthlyAmount() {
-        return hourlyRate.multipliedBy(getMonthlyHours(), RoundingMode.HALF_UP);
-    }
-
-    public Money getTotalAmount() {
-        return hourlyRate.multipliedBy(getTotalHours(), RoundingMode.HALF_UP);
+    private final Money monthlyAmount;
+    private final Money totalAmount;
+
+    public StudentMonthlyHours(int id, String name, boolean disabled, Money hourlyRate, BigDecimal monthlyHours, BigDecimal totalHours) {
+        this.id = id;
+        this.name = name;
+        this.disabled = disabled;
+        this.hourlyRate = hourlyRate;
+        this.monthlyHours = monthlyHours;
+        this.totalHours = totalHours;
+        this.monthlyAmount = hourlyRate.multipliedBy(monthlyHours, RoundingMode.HALF_UP);
+        this.totalAmount = hourlyRate.multipliedBy(totalHours, RoundingMode.HALF_UP);
     }
 
 }
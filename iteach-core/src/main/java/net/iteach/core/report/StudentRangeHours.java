@@ -0,0 +1,23 @@
+package net.iteach.core.report;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import lombok.Data;
+
+import org.joda.money.Money;
+
+/**
+ * Hours of a student for each period of a {@link RangeReport}
+ */
+@Data
+public class StudentRangeHours {
+
+	private final int id;
+	private final String name;
+	private final boolean disabled;
+	private final List<BigDecimal> hours;
+	private final BigDecimal totalHours;
+	private final Money totalAmount;
+
+}
@@ -31,9 +31,21 @@ public interface TeacherUI {
 
 	Lessons getLessons(LessonRange range);
 
+	LessonDensity getLessonDensity(LocalDate from, LocalDate to);
+
 	Ack editLesson(int id, LessonForm form);
 
 	Ack deleteLesson(int id);
+
+	LessonSelection createLessons(LessonsForm form);
+
+	Ack moveLessons(LessonSelectionChange change);
+
+	Ack deleteLessons(LessonSelection selection);
+
+	ID createLessonSeries(LessonSeriesForm form);
+
+	Ack deleteLessonSeries(int id);
 	
 	StudentDetails getStudent (int id);
 
@@ -0,0 +1,17 @@
+package net.iteach.core.validation;
+
+import javax.validation.constraints.NotNull;
+
+import net.iteach.core.model.LessonPeriod;
+
+import org.joda.time.LocalDate;
+
+public interface LessonSeriesFormValidation extends LessonFormValidation {
+
+    @NotNull
+    LessonPeriod getPeriod();
+
+    @NotNull
+    LocalDate getUntil();
+
+}
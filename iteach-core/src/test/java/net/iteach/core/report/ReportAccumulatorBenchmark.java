@@ -0,0 +1,116 @@
+package net.iteach.core.report;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.joda.time.YearMonth;
+
+/**
+ * Compares the former construction of the monthly report, where every row copied the map
+ * of students of its school and created new hours objects, with the {@link ReportAccumulator}.
+ * Both the time and the bytes allocated by the current thread are measured.
+ * <p/>
+ * This is not a unit test and is not run by the build. Launch it manually on a HotSpot JVM:
+ * <pre>
+ * java -cp ... net.iteach.core.report.ReportAccumulatorBenchmark [schools] [students] [iterations]
+ * </pre>
+ */
+public class ReportAccumulatorBenchmark {
+
+	private static final BigDecimal MINUTES_IN_HOUR = BigDecimal.valueOf(60);
+	private static final YearMonth MONTH = new YearMonth(2013, 1);
+
+	public static void main(String[] args) {
+		int schools = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int students = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		System.out.format("Schools: %d, students: %d, iterations: %d%n", schools, students, iterations);
+		// Rows, ordered by school
+		Random random = new Random(42);
+		int[] schoolIds = new int[students];
+		int[] monthlyMinutes = new int[students];
+		int[] totalMinutes = new int[students];
+		for (int i = 0; i < students; i++) {
+			schoolIds[i] = 1 + i * schools / students;
+			monthlyMinutes[i] = 15 * random.nextInt(40);
+			totalMinutes[i] = monthlyMinutes[i] + 15 * random.nextInt(400);
+		}
+		Money rate = Money.of(CurrencyUnit.EUR, 25);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		// Runs
+		long beforeNanos = 0, afterNanos = 0, beforeBytes = 0, afterBytes = 0;
+		BigDecimal before = null, after = null;
+		// Warm-up and measured runs
+		for (int i = -3; i < iterations; i++) {
+			long startBytes = threads.getThreadAllocatedBytes(threadId);
+			long start = System.nanoTime();
+			before = copyOnWrite(schoolIds, monthlyMinutes, totalMinutes, rate);
+			long middle = System.nanoTime();
+			long middleBytes = threads.getThreadAllocatedBytes(threadId);
+			after = accumulator(schoolIds, monthlyMinutes, totalMinutes, rate);
+			long end = System.nanoTime();
+			long endBytes = threads.getThreadAllocatedBytes(threadId);
+			if (i >= 0) {
+				beforeNanos += middle - start;
+				afterNanos += end - middle;
+				beforeBytes += middleBytes - startBytes;
+				afterBytes += endBytes - middleBytes;
+			}
+		}
+		System.out.format("Before: %s hours, %.3f ms/run, %d KB/run%n", before, beforeNanos / 1e6 / iterations, beforeBytes / 1024 / iterations);
+		System.out.format("After:  %s hours, %.3f ms/run, %d KB/run%n", after, afterNanos / 1e6 / iterations, afterBytes / 1024 / iterations);
+	}
+
+	/**
+	 * Former algorithm: a copy of the student map and new hours for each row, and totals
+	 * recomputed when read.
+	 */
+	private static BigDecimal copyOnWrite(int[] schoolIds, int[] monthlyMinutes, int[] totalMinutes, Money rate) {
+		Map<Integer, Map<Integer, BigDecimal[]>> schools = new LinkedHashMap<>();
+		for (int i = 0; i < schoolIds.length; i++) {
+			BigDecimal monthly = hours(monthlyMinutes[i]);
+			BigDecimal[] hours = {
+					BigDecimal.ZERO.add(monthly),
+					BigDecimal.ZERO.add(monthly).add(hours(totalMinutes[i] - monthlyMinutes[i]))
+			};
+			Map<Integer, BigDecimal[]> students = schools.get(schoolIds[i]);
+			Map<Integer, BigDecimal[]> copy = students != null ? new LinkedHashMap<>(students) : new LinkedHashMap<Integer, BigDecimal[]>();
+			copy.put(i, hours);
+			schools.put(schoolIds[i], copy);
+		}
+		// Totals, as read by the template
+		BigDecimal total = BigDecimal.ZERO;
+		for (Map<Integer, BigDecimal[]> students : schools.values()) {
+			BigDecimal schoolHours = BigDecimal.ZERO;
+			for (BigDecimal[] hours : students.values()) {
+				schoolHours = schoolHours.add(hours[1]);
+			}
+			rate.multipliedBy(schoolHours, RoundingMode.HALF_UP);
+			total = total.add(schoolHours);
+		}
+		return total;
+	}
+
+	private static BigDecimal accumulator(int[] schoolIds, int[] monthlyMinutes, int[] totalMinutes, Money rate) {
+		ReportAccumulator accumulator = new ReportAccumulator();
+		for (int i = 0; i < schoolIds.length; i++) {
+			accumulator
+					.addSchool(schoolIds[i], "School", "#FF0000", rate)
+					.addMinutes(schoolIds[i], i, "Student", false, monthlyMinutes[i], totalMinutes[i]);
+		}
+		MonthlyReport report = accumulator.freeze(MONTH);
+		return report.getTotalHours();
+	}
+
+	private static BigDecimal hours(int minutes) {
+		return BigDecimal.valueOf(minutes).divide(MINUTES_IN_HOUR, 2, RoundingMode.HALF_UP);
+	}
+
+}
@@ -0,0 +1,104 @@
+package net.iteach.core.report;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.joda.time.YearMonth;
+import org.junit.Test;
+
+public class ReportAccumulatorTest {
+
+	private static final YearMonth MONTH = new YearMonth(2013, 1);
+
+	@Test
+	public void empty() {
+		MonthlyReport report = new ReportAccumulator().freeze(MONTH);
+		assertEquals(MONTH, report.getYearMonth());
+		assertEquals(0, report.getSchools().size());
+		assertEquals(BigDecimal.ZERO, report.getMonthlyHours());
+		assertEquals(BigDecimal.ZERO, report.getTotalHours());
+		assertNull(report.getMonthlyAmount());
+		assertNull(report.getTotalAmount());
+	}
+
+	@Test
+	public void totals() {
+		MonthlyReport report = new ReportAccumulator()
+				.addSchool(3, "School 3", "#0000FF", Money.of(CurrencyUnit.EUR, 30))
+				.addSchool(1, "School 1", "#FF0000", Money.of(CurrencyUnit.EUR, 10))
+				.addMinutes(1, 10, "Student 10", false, 300, 660)
+				.addMinutes(3, 30, "Student 30", true, 105, 210)
+				.addMinutes(1, 11, "Student 11", false, 0, 20)
+				.addMinutes(1, 10, "Student 10", false, 20, 20)
+				.freeze(MONTH);
+		// Schools in the order of registration
+		List<SchoolMonthlyHours> schools = report.getSchools();
+		assertEquals(2, schools.size());
+		SchoolMonthlyHours school3 = schools.get(0);
+		assertEquals("School 3", school3.getName());
+		assertEquals(new BigDecimal("1.75"), school3.getMonthlyHours());
+		assertEquals(Money.of(CurrencyUnit.EUR, new BigDecimal("52.50")), school3.getMonthlyAmount());
+		SchoolMonthlyHours school1 = schools.get(1);
+		assertEquals(new BigDecimal("5.33"), school1.getMonthlyHours());
+		assertEquals(new BigDecimal("11.67"), school1.getTotalHours());
+		// Students in the order of registration
+		List<StudentMonthlyHours> students = new ArrayList<>(school1.getStudents().values());
+		assertEquals(2, students.size());
+		assertEquals(10, students.get(0).getId());
+		assertEquals(new BigDecimal("5.33"), students.get(0).getMonthlyHours());
+		assertEquals(new BigDecimal("11.33"), students.get(0).getTotalHours());
+		assertEquals(Money.of(CurrencyUnit.EUR, new BigDecimal("113.30")), students.get(0).getTotalAmount());
+		assertEquals(BigDecimal.ZERO, students.get(1).getMonthlyHours());
+		// Report
+		assertEquals(new BigDecimal("7.08"), report.getMonthlyHours());
+		assertEquals(new BigDecimal("15.17"), report.getTotalHours());
+		assertEquals(Money.of(CurrencyUnit.EUR, new BigDecimal("105.80")), report.getMonthlyAmount());
+		assertEquals(Money.of(CurrencyUnit.EUR, new BigDecimal("221.70")), report.getTotalAmount());
+	}
+
+	@Test
+	public void amounts_in_different_currencies() {
+		MonthlyReport report = new ReportAccumulator()
+				.addSchool(1, "School 1", "#FF0000", Money.of(CurrencyUnit.EUR, 10))
+				.addSchool(2, "School 2", "#00FF00", Money.of(CurrencyUnit.USD, 10))
+				.addMinutes(1, 10, "Student 10", false, 60, 60)
+				.addMinutes(2, 20, "Student 20", false, 60, 60)
+				.freeze(MONTH);
+		assertEquals(new BigDecimal("2.00"), report.getMonthlyHours());
+		assertNull(report.getMonthlyAmount());
+		assertNull(report.getTotalAmount());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void unknown_school() {
+		new ReportAccumulator().addMinutes(1, 10, "Student 10", false, 60, 60);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void frozen() {
+		ReportAccumulator accumulator = new ReportAccumulator();
+		accumulator.freeze(MONTH);
+		accumulator.addSchool(1, "School 1", "#FF0000", Money.of(CurrencyUnit.EUR, 10));
+	}
+
+	@Test
+	public void many_students() {
+		ReportAccumulator accumulator = new ReportAccumulator()
+				.addSchool(1, "School 1", "#FF0000", Money.of(CurrencyUnit.EUR, 10));
+		for (int i = 0; i < 1000; i++) {
+			accumulator.addMinutes(1, i, "Student " + i, false, 30, 60);
+			accumulator.addMinutes(1, i, "Student " + i, false, 30, 60);
+		}
+		MonthlyReport report = accumulator.freeze(MONTH);
+		assertEquals(1000, report.getSchools().get(0).getStudents().size());
+		assertEquals(new BigDecimal("1.00"), report.getSchools().get(0).getStudents().get(999).getMonthlyHours());
+		assertEquals(new BigDecimal("1000.00"), report.getMonthlyHours());
+	}
+
+}
@@ -0,0 +1,39 @@
+package net.iteach.core.report;
+
+import static org.junit.Assert.assertEquals;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+public class ReportGranularityTest {
+
+	@Test
+	public void week() {
+		LocalDate origin = ReportGranularity.WEEK.getStart(new LocalDate(2013, 1, 1));
+		assertEquals(new LocalDate(2012, 12, 31), origin);
+		assertEquals(new LocalDate(2013, 1, 7), ReportGranularity.WEEK.getNext(origin));
+		assertEquals(0, ReportGranularity.WEEK.getIndex(origin, new LocalDate(2013, 1, 6)));
+		assertEquals(1, ReportGranularity.WEEK.getIndex(origin, new LocalDate(2013, 1, 7)));
+		assertEquals(52, ReportGranularity.WEEK.getIndex(origin, new LocalDate(2013, 12, 31)));
+	}
+
+	@Test
+	public void month() {
+		LocalDate origin = ReportGranularity.MONTH.getStart(new LocalDate(2012, 11, 15));
+		assertEquals(new LocalDate(2012, 11, 1), origin);
+		assertEquals(new LocalDate(2012, 12, 1), ReportGranularity.MONTH.getNext(origin));
+		assertEquals(1, ReportGranularity.MONTH.getIndex(origin, new LocalDate(2012, 12, 31)));
+		assertEquals(2, ReportGranularity.MONTH.getIndex(origin, new LocalDate(2013, 1, 1)));
+	}
+
+	@Test
+	public void quarter() {
+		LocalDate origin = ReportGranularity.QUARTER.getStart(new LocalDate(2012, 12, 15));
+		assertEquals(new LocalDate(2012, 10, 1), origin);
+		assertEquals(new LocalDate(2013, 1, 1), ReportGranularity.QUARTER.getNext(origin));
+		assertEquals(0, ReportGranularity.QUARTER.getIndex(origin, new LocalDate(2012, 12, 31)));
+		assertEquals(1, ReportGranularity.QUARTER.getIndex(origin, new LocalDate(2013, 3, 31)));
+		assertEquals(2, ReportGranularity.QUARTER.getIndex(origin, new LocalDate(2013, 4, 1)));
+	}
+
+}
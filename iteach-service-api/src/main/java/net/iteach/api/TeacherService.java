@@ -58,12 +58,54 @@ public interface TeacherService {
 
     Lessons getLessonsForTeacher(int userId, LessonRange range);
 
+    /**
+     * Number and minutes of the lessons per day between two dates (included), for the
+     * month and year overviews which do not need the lessons themselves.
+     */
+    LessonDensity getLessonDensityForTeacher(int userId, LocalDate from, LocalDate to);
+
+    /**
+     * Loads in the background the ranges around the given one, so that navigating
+     * to them in the planning does not have to wait for the database.
+     */
+    void prefetchLessonsForTeacher(int userId, LessonRange range);
+
     ID createLessonForTeacher(int userId, LessonForm form);
 
     Ack editLessonForTeacher(int userId, int id, LessonForm form);
 
     Ack deleteLessonForTeacher(int userId, int id);
 
+    /**
+     * Creates several lessons in one transaction, with batched statements. None of them is
+     * created if one of them overlaps another lesson.
+     *
+     * @return IDs of the created lessons, in the order of the form
+     */
+    LessonSelection createLessonsForTeacher(int userId, LessonsForm form);
+
+    /**
+     * Moves several lessons at once, as {@link #moveLessonForTeacher(int, int, LessonChange)}
+     * does for one lesson.
+     */
+    Ack moveLessonsForTeacher(int userId, LessonSelectionChange change);
+
+    Ack deleteLessonsForTeacher(int userId, LessonSelection selection);
+
+    /**
+     * Creates a series of lessons, whose occurrences are listed with the lessons under
+     * negative IDs. An occurrence becomes a lesson of its own when it is edited, moved or
+     * commented.
+     *
+     * @return ID of the series
+     */
+    ID createLessonSeriesForTeacher(int userId, LessonSeriesForm form);
+
+    /**
+     * Deletes the occurrences of a series which have not become lessons
+     */
+    Ack deleteLessonSeriesForTeacher(int userId, int id);
+
     StudentLessons getLessonsForStudent(int userId, int id, LocalDate date, Locale locale);
 
     LessonDetails getLessonDetails(int userId, int id);
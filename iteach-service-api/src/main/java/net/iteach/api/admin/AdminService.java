@@ -2,9 +2,13 @@ package net.iteach.api.admin;
 
 import net.iteach.api.model.copy.ExportedTeacher;
 import net.iteach.core.model.Ack;
+import org.joda.time.YearMonth;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Locale;
 
 public interface AdminService {
 
@@ -25,4 +29,21 @@ public interface AdminService {
     Ack userDisable(int userId);
 
     Ack userEnable(int userId);
+
+    /**
+     * Recomputes the monthly minutes used by the reports from the lessons
+     * and returns the number of (teacher, student, month) rows.
+     */
+    int rebuildMonthlyMinutes();
+
+    /**
+     * Lessons, hours and revenue of every account over a month
+     */
+    HoursDashboard getHoursDashboard(YearMonth month);
+
+    /**
+     * Writes the invoices of all the teachers for a month as a zip, one folder per teacher
+     * and one file per school, and returns the number of invoices.
+     */
+    int exportInvoices(YearMonth month, Locale locale, OutputStream out) throws IOException;
 }
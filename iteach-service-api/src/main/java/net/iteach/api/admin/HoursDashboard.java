@@ -0,0 +1,23 @@
+package net.iteach.api.admin;
+
+import lombok.Data;
+import org.joda.money.Money;
+import org.joda.time.YearMonth;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Lessons, hours and revenue of all the teachers of the instance over a month,
+ * ordered by name, with the totals.
+ */
+@Data
+public class HoursDashboard {
+
+    private final YearMonth yearMonth;
+    private final List<TeacherHours> teachers;
+    private final int lessonCount;
+    private final BigDecimal hours;
+    private final Money revenue;
+
+}
@@ -0,0 +1,24 @@
+package net.iteach.api.admin;
+
+import lombok.Data;
+import org.joda.money.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Lessons, hours and revenue of one teacher over a month
+ */
+@Data
+public class TeacherHours {
+
+    private final int id;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+    private final boolean disabled;
+
+    private final int lessonCount;
+    private final BigDecimal hours;
+    private final Money revenue;
+
+}
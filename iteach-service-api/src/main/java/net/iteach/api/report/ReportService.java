@@ -1,11 +1,38 @@
 package net.iteach.api.report;
 
 import net.iteach.core.report.MonthlyReport;
+import net.iteach.core.report.RangeReport;
+import net.iteach.core.report.ReportGranularity;
 
 import org.joda.time.LocalDate;
+import org.joda.time.YearMonth;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Locale;
 
 public interface ReportService {
 
 	MonthlyReport getMonthlyReport(LocalDate date);
 
+	/**
+	 * Hours of the current teacher between two dates (included), per school and student,
+	 * split into periods of the given granularity.
+	 */
+	RangeReport getRangeReport(LocalDate from, LocalDate to, ReportGranularity granularity);
+
+	/**
+	 * Writes the lessons of the current teacher between two dates (included) as CSV, one line
+	 * per lesson with its school, student, hours and amount. The lessons are written as they
+	 * are read, without being loaded first.
+	 */
+	void exportLessons(LocalDate from, LocalDate to, Writer writer) throws IOException;
+
+	/**
+	 * Writes the invoices of the current teacher for a month as a zip, one file per school
+	 * having had lessons, and returns the number of invoices.
+	 */
+	int exportInvoices(YearMonth month, Locale locale, OutputStream out) throws IOException;
+
 }
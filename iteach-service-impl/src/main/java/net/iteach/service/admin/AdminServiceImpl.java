@@ -13,11 +13,19 @@ import net.iteach.core.model.AccountProfile;
 import net.iteach.core.model.Ack;
 import net.iteach.core.model.Coordinate;
 import net.iteach.core.model.Coordinates;
+import net.iteach.core.model.Lesson;
 import net.iteach.core.security.SecurityRoles;
 import net.iteach.core.security.SecurityUtils;
 import net.iteach.service.dao.*;
 import net.iteach.service.dao.model.*;
+import net.iteach.service.db.SQLUtils;
+import net.iteach.service.impl.LessonIntervalIndex;
+import net.iteach.service.impl.OwnershipIndex;
+import net.iteach.service.impl.PlanningCache;
+import net.iteach.service.impl.TeacherGenerations;
+import net.iteach.service.report.InvoiceGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.joda.time.YearMonth;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.stereotype.Service;
@@ -26,8 +34,12 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 @Service
 public class AdminServiceImpl implements AdminService {
@@ -38,23 +50,41 @@ public class AdminServiceImpl implements AdminService {
     private final SchoolDao schoolDao;
     private final StudentDao studentDao;
     private final LessonDao lessonDao;
+    private final LessonSeriesDao lessonSeriesDao;
+    private final StudentTotalDao studentTotalDao;
+    private final TeacherMonthlyMinutesDao teacherMonthlyMinutesDao;
+    private final LessonIntervalIndex lessonIntervalIndex;
+    private final OwnershipIndex ownershipIndex;
+    private final PlanningCache planningCache;
+    private final TeacherGenerations teacherGenerations;
     private final CommentDao commentDao;
     private final CoordinatesService coordinatesService;
     private final ConfigurationDao configurationDao;
     private final UserDao userDao;
+    private final HoursDashboardCollector hoursDashboardCollector;
+    private final InvoiceGenerator invoiceGenerator;
 
     @Autowired
-    public AdminServiceImpl(ObjectMapper objectMapper, SecurityUtils securityUtils, ProfileService profileService, SchoolDao schoolDao, StudentDao studentDao, LessonDao lessonDao, CommentDao commentDao, CoordinatesService coordinatesService, ConfigurationDao configurationDao, UserDao userDao) {
+    public AdminServiceImpl(ObjectMapper objectMapper, SecurityUtils securityUtils, ProfileService profileService, SchoolDao schoolDao, StudentDao studentDao, LessonDao lessonDao, LessonSeriesDao lessonSeriesDao, StudentTotalDao studentTotalDao, TeacherMonthlyMinutesDao teacherMonthlyMinutesDao, LessonIntervalIndex lessonIntervalIndex, OwnershipIndex ownershipIndex, PlanningCache planningCache, TeacherGenerations teacherGenerations, CommentDao commentDao, CoordinatesService coordinatesService, ConfigurationDao configurationDao, UserDao userDao, HoursDashboardCollector hoursDashboardCollector, InvoiceGenerator invoiceGenerator) {
         this.objectMapper = objectMapper;
         this.securityUtils = securityUtils;
         this.profileService = profileService;
         this.schoolDao = schoolDao;
         this.studentDao = studentDao;
         this.lessonDao = lessonDao;
+        this.lessonSeriesDao = lessonSeriesDao;
+        this.studentTotalDao = studentTotalDao;
+        this.teacherMonthlyMinutesDao = teacherMonthlyMinutesDao;
+        this.lessonIntervalIndex = lessonIntervalIndex;
+        this.ownershipIndex = ownershipIndex;
+        this.planningCache = planningCache;
+        this.teacherGenerations = teacherGenerations;
         this.commentDao = commentDao;
         this.coordinatesService = coordinatesService;
         this.configurationDao = configurationDao;
         this.userDao = userDao;
+        this.hoursDashboardCollector = hoursDashboardCollector;
+        this.invoiceGenerator = invoiceGenerator;
     }
 
     @Override
@@ -139,6 +169,9 @@ public class AdminServiceImpl implements AdminService {
     @Secured(SecurityRoles.ADMINISTRATOR)
     public void deleteAccount(int id) {
         userDao.deleteUser(id);
+        lessonIntervalIndex.evict(id);
+        ownershipIndex.evict(id);
+        planningCache.evictTeacher(id);
     }
 
     @Override
@@ -155,6 +188,30 @@ public class AdminServiceImpl implements AdminService {
         return userDao.userEnable(userId);
     }
 
+    @Override
+    @Transactional
+    @Secured(SecurityRoles.ADMINISTRATOR)
+    public int rebuildMonthlyMinutes() {
+        int count = teacherMonthlyMinutesDao.rebuild();
+        teacherGenerations.bumpAll();
+        return count;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @Secured(SecurityRoles.ADMINISTRATOR)
+    public HoursDashboard getHoursDashboard(YearMonth month) {
+        // All users, with their names, in one query
+        return hoursDashboardCollector.collect(month, userDao.findAll());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @Secured(SecurityRoles.ADMINISTRATOR)
+    public int exportInvoices(YearMonth month, Locale locale, OutputStream out) throws IOException {
+        return invoiceGenerator.writeAllInvoices(month, locale, out);
+    }
+
     @Override
     @Transactional(readOnly = true)
     @Secured(SecurityRoles.ADMINISTRATOR)
@@ -219,7 +276,7 @@ public class AdminServiceImpl implements AdminService {
     }
 
     private List<ExportedLesson> exportedLessons(int studentId) {
-        return Lists.transform(
+        List<ExportedLesson> lessons = new ArrayList<>(Lists.transform(
                 lessonDao.findAllLessonsForStudent(studentId),
                 new Function<TLesson, ExportedLesson>() {
                     @Override
@@ -233,7 +290,20 @@ public class AdminServiceImpl implements AdminService {
                         );
                     }
                 }
-        );
+        ));
+        // The occurrences of the series are exported as plain lessons
+        for (TLessonSeries series : lessonSeriesDao.findAllSeriesForStudent(studentId)) {
+            for (Lesson occurrence : series.getOccurrences(series.getStartDate(), series.getEndDate())) {
+                lessons.add(new ExportedLesson(
+                        Collections.<ExportedComment>emptyList(),
+                        occurrence.getDate(),
+                        occurrence.getFrom(),
+                        occurrence.getTo(),
+                        occurrence.getLocation()
+                ));
+            }
+        }
+        return lessons;
     }
 
     @Override
@@ -258,6 +328,10 @@ public class AdminServiceImpl implements AdminService {
 
         // Importing data
         importData(id, data);
+        teacherMonthlyMinutesDao.rebuild(id);
+        lessonIntervalIndex.evict(id);
+        ownershipIndex.evict(id);
+        planningCache.evictTeacher(id);
 
         // OK
         return account;
@@ -306,9 +380,13 @@ public class AdminServiceImpl implements AdminService {
         // Coordinates
         importCoordinates(CoordinateEntity.STUDENT, studentId, student.getCoordinates());
         // Lessons
+        int minutes = 0;
         for (ExportedLesson lesson : student.getLessons()) {
             importLesson(studentId, lesson);
+            minutes += SQLUtils.getMinutes(lesson.getFrom(), lesson.getTo());
         }
+        // Total
+        studentTotalDao.addMinutes(studentId, minutes);
     }
 
     private void importCoordinates(CoordinateEntity entity, int id, List<Coordinate> coordinates) {
@@ -0,0 +1,223 @@
+package net.iteach.service.admin;
+
+import net.iteach.api.admin.HoursDashboard;
+import net.iteach.api.admin.TeacherHours;
+import net.iteach.core.model.SchoolSummary;
+import net.iteach.core.report.ReportAccumulator;
+import net.iteach.service.dao.LessonSeriesDao;
+import net.iteach.service.dao.ReportDao;
+import net.iteach.service.dao.model.TLessonSeries;
+import net.iteach.service.dao.model.TTeacherMinutes;
+import net.iteach.service.dao.model.TUser;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.joda.time.LocalDate;
+import org.joda.time.YearMonth;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes the lessons, hours and revenue of all the teachers over a month.
+ * <p/>
+ * The teachers are split, by ID, into shards of at most {@link #SHARD_SIZE} teachers
+ * and each shard is aggregated by one grouped query, the shards being run in parallel
+ * in a fork/join pool. Each shard fills arrays indexed by the position of the teacher
+ * in the sorted IDs, and adjacent shards are merged by concatenating their arrays.
+ * <p/>
+ * The occurrences of the lesson series of the shard are expanded and added to its figures.
+ */
+@Component
+public class HoursDashboardCollector {
+
+    /**
+     * Maximum number of teachers aggregated by one query
+     */
+    public static final int SHARD_SIZE = 500;
+
+    /**
+     * Maximum number of queries run at the same time
+     */
+    public static final int PARALLELISM = 4;
+
+    private final ReportDao reportDao;
+    private final LessonSeriesDao lessonSeriesDao;
+    private final int shardSize;
+    private final ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+
+    @Autowired
+    public HoursDashboardCollector(ReportDao reportDao, LessonSeriesDao lessonSeriesDao) {
+        this(reportDao, lessonSeriesDao, SHARD_SIZE);
+    }
+
+    protected HoursDashboardCollector(ReportDao reportDao, LessonSeriesDao lessonSeriesDao, int shardSize) {
+        this.reportDao = reportDao;
+        this.lessonSeriesDao = lessonSeriesDao;
+        this.shardSize = shardSize;
+    }
+
+    /**
+     * Collects the figures of the given users, who are kept in the same order.
+     */
+    public HoursDashboard collect(YearMonth month, List<TUser> users) {
+        int[] ids = new int[users.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = users.get(i).getId();
+        }
+        Arrays.sort(ids);
+        LocalDate from = month.toLocalDate(1);
+        LocalDate to = from.plusMonths(1).minusDays(1);
+        ShardAccumulator accumulator = pool.invoke(new ShardTask(ids, 0, ids.length, from, to));
+        // Teachers, in the order of the users
+        List<TeacherHours> teachers = new ArrayList<>(users.size());
+        int lessonCount = 0;
+        long minutes = 0;
+        long revenue = 0;
+        for (TUser user : users) {
+            int i = Arrays.binarySearch(ids, user.getId());
+            teachers.add(new TeacherHours(
+                    user.getId(),
+                    user.getFirstName(),
+                    user.getLastName(),
+                    user.getEmail(),
+                    user.isDisabled(),
+                    accumulator.lessons[i],
+                    ReportAccumulator.toHours(accumulator.minutes[i]),
+                    toMoney(accumulator.revenue[i])));
+            lessonCount += accumulator.lessons[i];
+            minutes += accumulator.minutes[i];
+            revenue += accumulator.revenue[i];
+        }
+        return new HoursDashboard(
+                month,
+                teachers,
+                lessonCount,
+                ReportAccumulator.toHours(minutes),
+                toMoney(revenue));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * The hourly rates are always read in euros
+     */
+    private static Money toMoney(long cents) {
+        return Money.ofMinor(CurrencyUnit.EUR, cents);
+    }
+
+    /**
+     * Aggregates the teachers between two positions of the sorted IDs, splitting
+     * the range in two until it fits in a shard.
+     */
+    private class ShardTask extends RecursiveTask<ShardAccumulator> {
+
+        private final int[] ids;
+        private final int start;
+        private final int end;
+        private final LocalDate from;
+        private final LocalDate to;
+
+        private ShardTask(int[] ids, int start, int end, LocalDate from, LocalDate to) {
+            this.ids = ids;
+            this.start = start;
+            this.end = end;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ShardAccumulator compute() {
+            if (end - start <= shardSize) {
+                ShardAccumulator accumulator = new ShardAccumulator(ids, start, end);
+                if (start < end) {
+                    for (TTeacherMinutes t : reportDao.findTeacherMinutes(ids[start], ids[end - 1], from, to)) {
+                        accumulator.add(t);
+                    }
+                    for (TLessonSeries series : lessonSeriesDao.findSeriesForTeachers(ids[start], ids[end - 1], from, to)) {
+                        int count = series.getIndexes(from, to).size();
+                        SchoolSummary school = series.getStudent().getSchool();
+                        accumulator.add(new TTeacherMinutes(
+                                series.getTeacher(),
+                                school.getId(),
+                                school.getHourlyRate(),
+                                count,
+                                count * series.getDurationMinutes()));
+                    }
+                }
+                return accumulator;
+            } else {
+                int middle = (start + end) >>> 1;
+                ShardTask left = new ShardTask(ids, start, middle, from, to);
+                left.fork();
+                ShardAccumulator right = new ShardTask(ids, middle, end, from, to).compute();
+                return left.join().merge(right);
+            }
+        }
+    }
+
+    /**
+     * Number of lessons, minutes and revenue in cents of the teachers between two
+     * positions of the sorted IDs
+     */
+    private static class ShardAccumulator {
+
+        private final int[] ids;
+        private final int start;
+        private final int end;
+        private final int[] lessons;
+        private final long[] minutes;
+        private final long[] revenue;
+
+        private ShardAccumulator(int[] ids, int start, int end) {
+            this(ids, start, end, new int[end - start], new long[end - start], new long[end - start]);
+        }
+
+        private ShardAccumulator(int[] ids, int start, int end, int[] lessons, long[] minutes, long[] revenue) {
+            this.ids = ids;
+            this.start = start;
+            this.end = end;
+            this.lessons = lessons;
+            this.minutes = minutes;
+            this.revenue = revenue;
+        }
+
+        public void add(TTeacherMinutes t) {
+            int i = Arrays.binarySearch(ids, start, end, t.getTeacherId());
+            if (i >= 0) {
+                i -= start;
+                lessons[i] += t.getLessonCount();
+                minutes[i] += t.getMinutes();
+                revenue[i] += t.getSchoolHourlyRate()
+                        .multipliedBy(ReportAccumulator.toHours(t.getMinutes()), RoundingMode.HALF_UP)
+                        .getAmountMinorLong();
+            }
+        }
+
+        /**
+         * Merges this accumulator with the one which follows it
+         */
+        public ShardAccumulator merge(ShardAccumulator next) {
+            int length = lessons.length;
+            int nextLength = next.lessons.length;
+            ShardAccumulator merged = new ShardAccumulator(ids, start, next.end,
+                    Arrays.copyOf(lessons, length + nextLength),
+                    Arrays.copyOf(minutes, length + nextLength),
+                    Arrays.copyOf(revenue, length + nextLength));
+            System.arraycopy(next.lessons, 0, merged.lessons, length, nextLength);
+            System.arraycopy(next.minutes, 0, merged.minutes, length, nextLength);
+            System.arraycopy(next.revenue, 0, merged.revenue, length, nextLength);
+            return merged;
+        }
+    }
+
+}
@@ -2,13 +2,15 @@ package net.iteach.service.dao;
 
 import net.iteach.core.model.Ack;
 import net.iteach.core.model.ID;
-import net.iteach.core.model.LessonRange;
+import net.iteach.core.model.Lesson;
+import net.iteach.core.model.LessonDensity;
+import net.iteach.core.model.LessonDetails;
 import net.iteach.service.dao.model.TLesson;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalDateTime;
 import org.joda.time.LocalTime;
 
-import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 public interface LessonDao {
@@ -19,21 +21,77 @@ public interface LessonDao {
 
     List<TLesson> findLessonsForTeacher(int userId, LocalDateTime from, LocalDateTime to);
 
-    BigDecimal getHoursForStudent(int studentId);
+    /**
+     * Same as {@link #findLessonsForTeacher(int, LocalDateTime, LocalDateTime)} but with the student and
+     * school summaries loaded in the same query. Lessons for the same student share the same summary instances.
+     */
+    List<Lesson> findLessonsWithStudentsForTeacher(int userId, LocalDateTime from, LocalDateTime to);
 
     TLesson getLessonById(int id);
 
+    /**
+     * Lessons with the given IDs, in no particular order
+     */
+    List<TLesson> findLessonsByIds(Collection<Integer> ids);
+
+    /**
+     * Lesson of a teacher with its student, its school and their coordinates, loaded
+     * in one statement.
+     *
+     * @return <code>null</code> if the lesson does not exist or does not belong to the teacher
+     */
+    LessonDetails findLessonDetails(int userId, int id);
+
     ID createLesson(int student, String location, LocalDate date, LocalTime from, LocalTime to);
 
     Ack updateLesson(int id, int student, String location, LocalDate date, LocalTime from, LocalTime to);
 
     Ack deleteLesson(int id);
 
-    LessonRange getLessonRange(int lessonId);
-
     Ack setLessonRange(int lessonId, LocalDate pdate, LocalTime pfrom, LocalTime pto);
 
+    /**
+     * Creates several lessons of a teacher in one batch. Their IDs are read back from their
+     * dates and start times, which are unique for a teacher.
+     *
+     * @param lessons Lessons to create, whose IDs are ignored
+     * @return IDs of the created lessons, in the same order
+     */
+    List<Integer> createLessons(int teacherId, List<TLesson> lessons);
+
+    /**
+     * Same as {@link #setLessonRange(int, LocalDate, LocalTime, LocalTime)} for several lessons, in one batch
+     */
+    Ack setLessonRanges(List<TLesson> lessons);
+
+    /**
+     * Deletes several lessons in one batch
+     */
+    Ack deleteLessons(Collection<Integer> ids);
+
     List<TLesson> findAllLessonsForTeacher(int userId);
 
+    /**
+     * Same as {@link #findAllLessonsForTeacher(int)} but without any ordering, using only the
+     * <code>LESSONS</code> table.
+     */
+    List<TLesson> findLessonRangesForTeacher(int userId);
+
     boolean doesLessonBelongToTeacher(int id, int userId);
+
+    /**
+     * IDs of all the lessons of a teacher
+     */
+    List<Integer> findLessonIdsByTeacher(int userId);
+
+    /**
+     * IDs, among the given ones, of the lessons of a teacher
+     */
+    List<Integer> findLessonIdsByTeacher(int userId, Collection<Integer> ids);
+
+    /**
+     * Number and minutes of the lessons of a teacher per day between two dates (included),
+     * computed by the database.
+     */
+    LessonDensity getLessonDensity(int userId, LocalDate from, LocalDate to);
 }
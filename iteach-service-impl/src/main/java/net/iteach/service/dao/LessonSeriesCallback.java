@@ -0,0 +1,13 @@
+package net.iteach.service.dao;
+
+import net.iteach.core.model.UserSummary;
+import net.iteach.service.dao.model.TLessonSeries;
+
+/**
+ * Receives the lesson series one by one, as they are read, with the summary of their teacher
+ */
+public interface LessonSeriesCallback {
+
+    void processSeries(UserSummary teacher, TLessonSeries series);
+
+}
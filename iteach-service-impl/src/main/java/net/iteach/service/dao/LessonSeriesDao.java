@@ -0,0 +1,65 @@
+package net.iteach.service.dao;
+
+import net.iteach.core.model.Ack;
+import net.iteach.core.model.ID;
+import net.iteach.core.model.LessonPeriod;
+import net.iteach.service.dao.model.TLessonSeries;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+
+import java.util.List;
+
+public interface LessonSeriesDao {
+
+    ID createSeries(int student, LessonPeriod period, LocalDate startDate, LocalDate endDate, LocalTime from, LocalTime to, String location, int occurrenceCount);
+
+    Ack deleteSeries(int id);
+
+    /**
+     * Series of a teacher
+     *
+     * @return <code>null</code> if the series does not exist or does not belong to the teacher
+     */
+    TLessonSeries findSeries(int teacherId, int id);
+
+    /**
+     * Series of a teacher having occurrences between two dates (included)
+     */
+    List<TLessonSeries> findSeriesForTeacher(int teacherId, LocalDate from, LocalDate to);
+
+    /**
+     * Series having occurrences between two dates (included), for all the teachers whose ID
+     * is between <code>minTeacher</code> and <code>maxTeacher</code> (included).
+     */
+    List<TLessonSeries> findSeriesForTeachers(int minTeacher, int maxTeacher, LocalDate from, LocalDate to);
+
+    /**
+     * Same as {@link #findSeriesForTeachers(int, int, LocalDate, LocalDate)}, the series being
+     * given to the callback as they are read, with the summary of their teacher.
+     */
+    void processSeriesForTeachers(int minTeacher, int maxTeacher, LocalDate from, LocalDate to, LessonSeriesCallback callback);
+
+    /**
+     * Series of a student having occurrences between two dates (included)
+     */
+    List<TLessonSeries> findSeriesForStudent(int studentId, LocalDate from, LocalDate to);
+
+    List<TLessonSeries> findAllSeriesForTeacher(int teacherId);
+
+    List<TLessonSeries> findAllSeriesForStudent(int studentId);
+
+    /**
+     * Removes an occurrence from its series.
+     *
+     * @param lessonId Lesson which replaces the occurrence, or <code>null</code> if the occurrence
+     *                 is deleted
+     */
+    Ack addException(int seriesId, LocalDate date, Integer lessonId);
+
+    /**
+     * Lesson which has replaced an occurrence, or <code>null</code> if the occurrence
+     * has been deleted or is still part of the series
+     */
+    Integer findExceptionLesson(int seriesId, LocalDate date);
+
+}
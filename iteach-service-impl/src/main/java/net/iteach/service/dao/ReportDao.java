@@ -0,0 +1,53 @@
+package net.iteach.service.dao;
+
+import net.iteach.core.report.RangeReportAccumulator;
+import net.iteach.service.dao.model.TStudentMinutes;
+import net.iteach.service.dao.model.TTeacherMinutes;
+import org.joda.time.LocalDate;
+import org.joda.time.YearMonth;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.List;
+
+public interface ReportDao {
+
+    /**
+     * Minutes of lessons for a month and since the beginning, for all the students of
+     * a teacher having had lessons, ordered by school and student name.
+     */
+    List<TStudentMinutes> findStudentMinutes(int teacherId, YearMonth month);
+
+    /**
+     * Adds the lessons of a teacher between two dates (included) to the accumulator,
+     * ordered by school and student name, in one pass over the rows.
+     */
+    void collectLessonMinutes(int teacherId, LocalDate from, LocalDate to, RangeReportAccumulator accumulator);
+
+    /**
+     * Passes the lessons of a teacher between two dates (included), ordered by date and time,
+     * one row at a time to the handler. Columns are PDATE, PFROM, PTO, DURATION_MINUTES, LOCATION,
+     * STUDENT_NAME, SCHOOL_ID, SCHOOL_NAME and SCHOOL_HRATE.
+     */
+    void processLessons(int teacherId, LocalDate from, LocalDate to, RowCallbackHandler handler);
+
+    /**
+     * Number and minutes of the lessons between two dates (included), per school, for all
+     * the teachers whose ID is between <code>minTeacher</code> and <code>maxTeacher</code> (included).
+     */
+    List<TTeacherMinutes> findTeacherMinutes(int minTeacher, int maxTeacher, LocalDate from, LocalDate to);
+
+    /**
+     * Passes the number and minutes of the lessons of a teacher between two dates (included),
+     * per school and student, one row at a time to the handler, ordered by school and student name.
+     * Columns are TEACHER_ID, TEACHER_FIRSTNAME, TEACHER_LASTNAME, TEACHER_EMAIL, SCHOOL_ID, SCHOOL_NAME,
+     * SCHOOL_HRATE, STUDENT_ID, STUDENT_NAME, LESSON_COUNT and MINUTES.
+     */
+    void processInvoiceLines(int teacherId, LocalDate from, LocalDate to, RowCallbackHandler handler);
+
+    /**
+     * Same as {@link #processInvoiceLines(int, LocalDate, LocalDate, RowCallbackHandler)} for all
+     * the teachers, ordered by teacher ID first.
+     */
+    void processAllInvoiceLines(LocalDate from, LocalDate to, RowCallbackHandler handler);
+
+}
@@ -20,4 +20,9 @@ public interface SchoolDao {
     Ack updateSchool(int id, String name, String color, BigDecimal hourlyRate);
 
     boolean doesSchoolBelongToTeacher(int id, int userId);
+
+    /**
+     * IDs of all the schools of a teacher
+     */
+    List<Integer> findSchoolIdsByTeacher(int userId);
 }
@@ -2,8 +2,10 @@ package net.iteach.service.dao;
 
 import net.iteach.core.model.Ack;
 import net.iteach.core.model.ID;
+import net.iteach.core.model.StudentDetails;
 import net.iteach.service.dao.model.TStudent;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface StudentDao {
@@ -11,6 +13,14 @@ public interface StudentDao {
 
     TStudent getStudentById(int studentId);
 
+    /**
+     * Student of a teacher with its school, its total hours and its coordinates, loaded
+     * in one statement.
+     *
+     * @return <code>null</code> if the student does not exist or does not belong to the teacher
+     */
+    StudentDetails findStudentDetails(int userId, int id);
+
     List<TStudent> findStudentsBySchool(int schoolId);
 
     ID createStudent(String name, int school, String subject);
@@ -24,4 +34,14 @@ public interface StudentDao {
     Ack updateStudent(int id, String name, int school, String subject);
 
     boolean doesStudentBelongToTeacher(int id, int userId);
+
+    /**
+     * IDs of all the students of a teacher
+     */
+    List<Integer> findStudentIdsByTeacher(int userId);
+
+    /**
+     * IDs, among the given ones, of the students of a teacher
+     */
+    List<Integer> findStudentIdsByTeacher(int userId, Collection<Integer> ids);
 }
@@ -0,0 +1,30 @@
+package net.iteach.service.dao;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface StudentTotalDao {
+
+    /**
+     * Total number of lesson minutes for a student
+     */
+    int getMinutes(int studentId);
+
+    /**
+     * Totals of minutes for several students at once, indexed by student ID. Students
+     * without any total are not part of the map.
+     */
+    Map<Integer, Integer> getMinutesForStudents(Collection<Integer> studentIds);
+
+    /**
+     * Adds (or removes, if negative) minutes to the total of a student. The total must
+     * exist, as created with the student.
+     */
+    void addMinutes(int studentId, int minutes);
+
+    /**
+     * Recomputes the totals from the lessons and the lesson series, and returns the number of totals which had to be fixed
+     */
+    int reconcile();
+
+}
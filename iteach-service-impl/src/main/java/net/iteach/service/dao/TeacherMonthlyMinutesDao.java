@@ -0,0 +1,22 @@
+package net.iteach.service.dao;
+
+import org.joda.time.LocalDate;
+
+public interface TeacherMonthlyMinutesDao {
+
+    /**
+     * Adds (or removes, if negative) minutes to the month of the given date, for a teacher and a student
+     */
+    void addMinutes(int teacherId, int studentId, LocalDate date, int minutes);
+
+    /**
+     * Recomputes all the monthly minutes from the lessons and the lesson series, and returns the number of rows
+     */
+    int rebuild();
+
+    /**
+     * Recomputes the monthly minutes of a teacher from its lessons and lesson series, and returns the number of rows
+     */
+    int rebuild(int teacherId);
+
+}
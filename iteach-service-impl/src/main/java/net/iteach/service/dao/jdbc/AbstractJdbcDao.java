@@ -4,6 +4,7 @@ import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcDaoSupport;
 
 import javax.sql.DataSource;
+import java.sql.Statement;
 import java.util.List;
 
 public abstract class AbstractJdbcDao extends NamedParameterJdbcDaoSupport {
@@ -24,4 +25,16 @@ public abstract class AbstractJdbcDao extends NamedParameterJdbcDaoSupport {
     protected MapSqlParameterSource params(String name, Object value) {
         return new MapSqlParameterSource(name, value);
     }
+
+    /**
+     * Total number of rows affected by a batch, the statements whose count is unknown
+     * being counted as one row
+     */
+    protected int getBatchCount(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+        }
+        return total;
+    }
 }
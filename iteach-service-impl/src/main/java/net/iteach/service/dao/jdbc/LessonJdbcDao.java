@@ -1,28 +1,45 @@
 package net.iteach.service.dao.jdbc;
 
+import net.iteach.api.model.CoordinateEntity;
 import net.iteach.core.model.Ack;
+import net.iteach.core.model.CoordinateType;
+import net.iteach.core.model.Coordinates;
 import net.iteach.core.model.ID;
-import net.iteach.core.model.LessonRange;
+import net.iteach.core.model.Lesson;
+import net.iteach.core.model.LessonDensity;
+import net.iteach.core.model.LessonDetails;
+import net.iteach.core.model.SchoolSummary;
+import net.iteach.core.model.SchoolSummaryWithCoordinates;
+import net.iteach.core.model.StudentSummary;
+import net.iteach.core.model.StudentSummaryWithCoordinates;
 import net.iteach.service.dao.LessonDao;
 import net.iteach.service.dao.model.TLesson;
 import net.iteach.service.db.SQL;
 import net.iteach.service.db.SQLUtils;
+import org.joda.time.Days;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalDateTime;
 import org.joda.time.LocalTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
-import java.math.BigDecimal;
+import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Map;
+import java.util.Set;
 
 import static net.iteach.service.db.SQLUtils.dateToDB;
 import static net.iteach.service.db.SQLUtils.timeToDB;
@@ -34,15 +51,13 @@ public class LessonJdbcDao extends AbstractJdbcDao implements LessonDao {
         @Override
         public TLesson mapRow(ResultSet rs, int rowNum)
                 throws SQLException {
-            LocalDate rsDate = SQLUtils.dateFromDB(rs.getString("pdate"));
-            LocalTime rsFrom = SQLUtils.timeFromDB(rs.getString("pfrom"));
-            LocalTime rsTo = SQLUtils.timeFromDB(rs.getString("pto"));
             return new TLesson(
                     rs.getInt("id"),
                     rs.getInt("student"),
-                    rsDate,
-                    rsFrom,
-                    rsTo,
+                    SQLUtils.getLocalDate(rs, "pdate"),
+                    SQLUtils.getLocalTime(rs, "pfrom"),
+                    SQLUtils.getLocalTime(rs, "pto"),
+                    rs.getInt("duration_minutes"),
                     rs.getString("location"));
         }
     };
@@ -58,6 +73,41 @@ public class LessonJdbcDao extends AbstractJdbcDao implements LessonDao {
         return getFirstItem(SQL.TEACHER_FOR_LESSON, params("teacher", userId).addValue("id", id), Integer.class) != null;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Integer> findLessonIdsByTeacher(int userId) {
+        return getNamedParameterJdbcTemplate().queryForList(SQL.LESSON_IDS_FOR_TEACHER, params("teacher", userId), Integer.class);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Integer> findLessonIdsByTeacher(int userId, Collection<Integer> ids) {
+        return getNamedParameterJdbcTemplate().queryForList(SQL.LESSON_IDS_FOR_TEACHER_AMONG, params("teacher", userId).addValue("ids", ids), Integer.class);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public LessonDensity getLessonDensity(int userId, final LocalDate from, LocalDate to) {
+        int days = Days.daysBetween(from, to).getDays() + 1;
+        final int[] counts = new int[days];
+        final int[] minutes = new int[days];
+        getNamedParameterJdbcTemplate().query(
+                SQL.LESSON_DENSITY,
+                params("teacher", userId)
+                        .addValue("from", dateToDB(from))
+                        .addValue("to", dateToDB(to)),
+                new RowCallbackHandler() {
+                    @Override
+                    public void processRow(ResultSet rs) throws SQLException {
+                        int day = Days.daysBetween(from, SQLUtils.getLocalDate(rs, "pdate")).getDays();
+                        counts[day] = rs.getInt("lesson_count");
+                        minutes[day] = rs.getInt("minutes");
+                    }
+                }
+        );
+        return new LessonDensity(from, to, counts, minutes);
+    }
+
     @Override
     @Transactional
     public ID createLesson(int student, String location, LocalDate date, LocalTime from, LocalTime to) {
@@ -68,6 +118,7 @@ public class LessonJdbcDao extends AbstractJdbcDao implements LessonDao {
                         .addValue("date", dateToDB(date))
                         .addValue("from", timeToDB(from))
                         .addValue("to", timeToDB(to))
+                        .addValue("minutes", SQLUtils.getMinutes(from, to))
                         .addValue("location", location),
                 keyHolder);
         return ID.count(count).withId(keyHolder.getKey().intValue());
@@ -83,6 +134,7 @@ public class LessonJdbcDao extends AbstractJdbcDao implements LessonDao {
                         .addValue("date", dateToDB(date))
                         .addValue("from", timeToDB(from))
                         .addValue("to", timeToDB(to))
+                        .addValue("minutes", SQLUtils.getMinutes(from, to))
                         .addValue("location", location)
         ));
     }
@@ -93,6 +145,86 @@ public class LessonJdbcDao extends AbstractJdbcDao implements LessonDao {
         return Ack.one(getNamedParameterJdbcTemplate().update(SQL.LESSON_DELETE, params("id", id)));
     }
 
+    @Override
+    @Transactional
+    public List<Integer> createLessons(int teacherId, List<TLesson> lessons) {
+        if (lessons.isEmpty()) {
+            return Collections.emptyList();
+        }
+        MapSqlParameterSource[] batch = new MapSqlParameterSource[lessons.size()];
+        Set<Date> dates = new HashSet<>();
+        for (int i = 0; i < batch.length; i++) {
+            TLesson lesson = lessons.get(i);
+            batch[i] = params("student", lesson.getStudent())
+                    .addValue("date", dateToDB(lesson.getDate()))
+                    .addValue("from", timeToDB(lesson.getFrom()))
+                    .addValue("to", timeToDB(lesson.getTo()))
+                    .addValue("minutes", SQLUtils.getMinutes(lesson.getFrom(), lesson.getTo()))
+                    .addValue("location", lesson.getLocation());
+            dates.add(dateToDB(lesson.getDate()));
+        }
+        getNamedParameterJdbcTemplate().batchUpdate(SQL.LESSON_CREATE, batch);
+        // Reads the IDs back, the start of a lesson being unique for its teacher
+        final Map<LocalDateTime, Integer> starts = new HashMap<>();
+        getNamedParameterJdbcTemplate().query(
+                SQL.LESSON_IDS_FOR_DATES,
+                params("teacher", teacherId).addValue("dates", dates),
+                new RowCallbackHandler() {
+                    @Override
+                    public void processRow(ResultSet rs) throws SQLException {
+                        starts.put(
+                                SQLUtils.getLocalDate(rs, "pdate").toLocalDateTime(SQLUtils.getLocalTime(rs, "pfrom")),
+                                rs.getInt("id"));
+                    }
+                }
+        );
+        List<Integer> ids = new ArrayList<>(lessons.size());
+        for (TLesson lesson : lessons) {
+            LocalDateTime start = lesson.getDate().toLocalDateTime(lesson.getFrom());
+            Integer id = starts.get(start);
+            if (id == null) {
+                throw new IllegalStateException(String.format("Cannot find the lesson created at %s for the teacher %d", start, teacherId));
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    @Override
+    @Transactional
+    public Ack setLessonRanges(List<TLesson> lessons) {
+        MapSqlParameterSource[] batch = new MapSqlParameterSource[lessons.size()];
+        for (int i = 0; i < batch.length; i++) {
+            TLesson lesson = lessons.get(i);
+            batch[i] = params("id", lesson.getId())
+                    .addValue("date", dateToDB(lesson.getDate()))
+                    .addValue("from", timeToDB(lesson.getFrom()))
+                    .addValue("to", timeToDB(lesson.getTo()))
+                    .addValue("minutes", SQLUtils.getMinutes(lesson.getFrom(), lesson.getTo()));
+        }
+        return Ack.validate(getBatchCount(getNamedParameterJdbcTemplate().batchUpdate(SQL.LESSON_RANGE_UPDATE, batch)) == batch.length);
+    }
+
+    @Override
+    @Transactional
+    public Ack deleteLessons(Collection<Integer> ids) {
+        MapSqlParameterSource[] batch = new MapSqlParameterSource[ids.size()];
+        int i = 0;
+        for (int id : ids) {
+            batch[i++] = params("id", id);
+        }
+        return Ack.validate(getBatchCount(getNamedParameterJdbcTemplate().batchUpdate(SQL.LESSON_DELETE, batch)) == batch.length);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TLesson> findLessonsByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return getNamedParameterJdbcTemplate().query(SQL.LESSONS_BY_IDS, params("ids", ids), lessonRowMapper);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public TLesson getLessonById(int id) {
@@ -105,21 +237,14 @@ public class LessonJdbcDao extends AbstractJdbcDao implements LessonDao {
 
     @Override
     @Transactional(readOnly = true)
-    public LessonRange getLessonRange(int lessonId) {
-        return getNamedParameterJdbcTemplate().queryForObject(
-                SQL.LESSON_RANGE,
-                params("id", lessonId),
-                new RowMapper<LessonRange>() {
-                    @Override
-                    public LessonRange mapRow(ResultSet rs, int rowNum) throws SQLException {
-                        LocalDate date = SQLUtils.dateFromDB(rs.getString("pdate"));
-                        LocalTime from = SQLUtils.timeFromDB(rs.getString("pfrom"));
-                        LocalTime to = SQLUtils.timeFromDB(rs.getString("pto"));
-                        return new LessonRange(
-                                date.toLocalDateTime(from),
-                                date.toLocalDateTime(to));
-                    }
-                });
+    public LessonDetails findLessonDetails(int userId, int id) {
+        LessonDetailsCallbackHandler handler = new LessonDetailsCallbackHandler();
+        getNamedParameterJdbcTemplate().query(
+                SQL.LESSON_DETAILS,
+                params("teacher", userId).addValue("id", id),
+                handler
+        );
+        return handler.getDetails();
     }
 
     @Override
@@ -131,6 +256,7 @@ public class LessonJdbcDao extends AbstractJdbcDao implements LessonDao {
                         .addValue("date", dateToDB(pdate))
                         .addValue("from", timeToDB(pfrom))
                         .addValue("to", timeToDB(pto))
+                        .addValue("minutes", SQLUtils.getMinutes(pfrom, pto))
         ));
     }
 
@@ -139,11 +265,29 @@ public class LessonJdbcDao extends AbstractJdbcDao implements LessonDao {
     public List<TLesson> findLessonsForTeacher(int userId, LocalDateTime from, LocalDateTime to) {
         return getNamedParameterJdbcTemplate().query(
                 SQL.LESSONS,
-                params("teacher", userId).addValue("from", from.toString()).addValue("to", to.toString()),
+                params("teacher", userId)
+                        .addValue("fromDate", dateToDB(from.toLocalDate()))
+                        .addValue("fromTime", timeToDB(from.toLocalTime()))
+                        .addValue("toDate", dateToDB(to.toLocalDate()))
+                        .addValue("toTime", timeToDB(to.toLocalTime())),
                 lessonRowMapper
         );
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Lesson> findLessonsWithStudentsForTeacher(int userId, LocalDateTime from, LocalDateTime to) {
+        return getNamedParameterJdbcTemplate().query(
+                SQL.LESSONS_WITH_STUDENTS,
+                params("teacher", userId)
+                        .addValue("fromDate", dateToDB(from.toLocalDate()))
+                        .addValue("fromTime", timeToDB(from.toLocalTime()))
+                        .addValue("toDate", dateToDB(to.toLocalDate()))
+                        .addValue("toTime", timeToDB(to.toLocalTime())),
+                new LessonWithStudentRowMapper()
+        );
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<TLesson> findAllLessonsForTeacher(int userId) {
@@ -156,23 +300,12 @@ public class LessonJdbcDao extends AbstractJdbcDao implements LessonDao {
 
     @Override
     @Transactional(readOnly = true)
-    public BigDecimal getHoursForStudent(int studentId) {
-        final AtomicReference<BigDecimal> hours = new AtomicReference<>(BigDecimal.ZERO);
-        getNamedParameterJdbcTemplate().query(
-                SQL.STUDENT_TOTAL_HOURS,
-                params("id", studentId),
-                new RowCallbackHandler() {
-
-                    @Override
-                    public void processRow(ResultSet rs) throws SQLException {
-                        hours.set(hours.get().add(SQLUtils.getHours(
-                                SQLUtils.timeFromDB(rs.getString("pfrom")),
-                                SQLUtils.timeFromDB(rs.getString("pto"))
-                        )));
-                    }
-                }
+    public List<TLesson> findLessonRangesForTeacher(int userId) {
+        return getNamedParameterJdbcTemplate().query(
+                SQL.LESSON_RANGES_FOR_TEACHER,
+                params("teacher", userId),
+                lessonRowMapper
         );
-        return hours.get();
     }
 
     @Override
@@ -180,7 +313,7 @@ public class LessonJdbcDao extends AbstractJdbcDao implements LessonDao {
     public List<TLesson> findLessonsForStudent(int studentId, LocalDate from, LocalDate to) {
         return getNamedParameterJdbcTemplate().query(
                 SQL.LESSONS_FOR_STUDENT,
-                params("id", studentId).addValue("from", from.toString()).addValue("to", to.toString()),
+                params("id", studentId).addValue("from", dateToDB(from)).addValue("to", dateToDB(to)),
                 lessonRowMapper
         );
     }
@@ -194,4 +327,104 @@ public class LessonJdbcDao extends AbstractJdbcDao implements LessonDao {
                 lessonRowMapper
         );
     }
+
+    /**
+     * Maps the lessons joined to their student and school. A new instance must be used
+     * for each query, since it keeps the summaries already created.
+     */
+    private static class LessonWithStudentRowMapper implements RowMapper<Lesson> {
+
+        private final Map<Integer, SchoolSummary> schools = new HashMap<>();
+        private final Map<Integer, StudentSummary> students = new HashMap<>();
+
+        @Override
+        public Lesson mapRow(ResultSet rs, int rowNum) throws SQLException {
+            return new Lesson(
+                    rs.getInt("id"),
+                    getStudent(rs),
+                    SQLUtils.getLocalDate(rs, "pdate"),
+                    SQLUtils.getLocalTime(rs, "pfrom"),
+                    SQLUtils.getLocalTime(rs, "pto"),
+                    rs.getString("location")
+            );
+        }
+
+        private StudentSummary getStudent(ResultSet rs) throws SQLException {
+            int id = rs.getInt("student_id");
+            StudentSummary student = students.get(id);
+            if (student == null) {
+                student = new StudentSummary(
+                        id,
+                        rs.getString("student_subject"),
+                        rs.getString("student_name"),
+                        getSchool(rs),
+                        rs.getBoolean("student_disabled")
+                );
+                students.put(id, student);
+            }
+            return student;
+        }
+
+        private SchoolSummary getSchool(ResultSet rs) throws SQLException {
+            int id = rs.getInt("school_id");
+            SchoolSummary school = schools.get(id);
+            if (school == null) {
+                school = new SchoolSummary(
+                        id,
+                        rs.getString("school_name"),
+                        rs.getString("school_color"),
+                        SQLUtils.moneyFromDB(rs, "school_hrate")
+                );
+                schools.put(id, school);
+            }
+            return school;
+        }
+    }
+
+    /**
+     * Gathers the rows of {@link SQL#LESSON_DETAILS}: for the school and then for the student,
+     * one row per coordinate, or a single row without any coordinate.
+     */
+    private static class LessonDetailsCallbackHandler implements RowCallbackHandler {
+
+        private final LessonWithStudentRowMapper lessonRowMapper = new LessonWithStudentRowMapper();
+        private Lesson lesson;
+        private Coordinates schoolCoordinates = Coordinates.create();
+        private Coordinates studentCoordinates = Coordinates.create();
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            if (lesson == null) {
+                lesson = lessonRowMapper.mapRow(rs, 0);
+            }
+            CoordinateType type = SQLUtils.getEnum(CoordinateType.class, rs, "coord_type");
+            if (type != null) {
+                String value = rs.getString("coord_value");
+                if (SQLUtils.getEnum(CoordinateEntity.class, rs, "coord_entity") == CoordinateEntity.SCHOOL) {
+                    schoolCoordinates = schoolCoordinates.add(type, value);
+                } else {
+                    studentCoordinates = studentCoordinates.add(type, value);
+                }
+            }
+        }
+
+        public LessonDetails getDetails() {
+            if (lesson == null) {
+                return null;
+            }
+            StudentSummary student = lesson.getStudent();
+            return new LessonDetails(
+                    lesson.getId(),
+                    new StudentSummaryWithCoordinates(
+                            student,
+                            new SchoolSummaryWithCoordinates(student.getSchool(), schoolCoordinates),
+                            studentCoordinates
+                    ),
+                    lesson.getDate(),
+                    lesson.getFrom(),
+                    lesson.getTo(),
+                    lesson.getLocation()
+            );
+        }
+    }
 }
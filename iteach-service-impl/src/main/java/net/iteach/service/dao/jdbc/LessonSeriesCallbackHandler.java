@@ -0,0 +1,96 @@
+package net.iteach.service.dao.jdbc;
+
+import net.iteach.core.model.LessonPeriod;
+import net.iteach.core.model.SchoolSummary;
+import net.iteach.core.model.StudentSummary;
+import net.iteach.service.dao.model.TLessonSeries;
+import net.iteach.service.db.SQLUtils;
+import org.joda.time.LocalDate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Gathers the rows of the <code>LESSON_SERIES</code> queries: one row per exception of a
+ * series, or a single row without any exception, the rows of a series being adjacent.
+ * A series is complete once the rows of the next one are read, or once {@link #finish()}
+ * is called after the last row.
+ */
+class LessonSeriesCallbackHandler implements RowCallbackHandler {
+
+    private final List<TLessonSeries> series = new ArrayList<>();
+    private TLessonSeries current;
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        int id = rs.getInt("id");
+        if (current == null || current.getId() != id) {
+            finish();
+            current = new TLessonSeries(
+                    id,
+                    rs.getInt("teacher"),
+                    new StudentSummary(
+                            rs.getInt("student_id"),
+                            rs.getString("student_subject"),
+                            rs.getString("student_name"),
+                            new SchoolSummary(
+                                    rs.getInt("school_id"),
+                                    rs.getString("school_name"),
+                                    rs.getString("school_color"),
+                                    SQLUtils.moneyFromDB(rs, "school_hrate")
+                            ),
+                            rs.getBoolean("student_disabled")
+                    ),
+                    SQLUtils.getEnum(LessonPeriod.class, rs, "period"),
+                    SQLUtils.getLocalDate(rs, "start_date"),
+                    SQLUtils.getLocalDate(rs, "end_date"),
+                    SQLUtils.getLocalTime(rs, "pfrom"),
+                    SQLUtils.getLocalTime(rs, "pto"),
+                    rs.getInt("duration_minutes"),
+                    rs.getString("location"),
+                    new HashSet<LocalDate>()
+            );
+            seriesStarted(rs);
+        }
+        LocalDate exception = SQLUtils.getLocalDate(rs, "exception_date");
+        if (exception != null) {
+            current.getExceptions().add(exception);
+        }
+    }
+
+    /**
+     * Completes the last series read
+     */
+    public void finish() {
+        if (current != null) {
+            seriesRead(current);
+            current = null;
+        }
+    }
+
+    /**
+     * Reads the additional columns of the first row of a series
+     */
+    protected void seriesStarted(ResultSet rs) throws SQLException {
+    }
+
+    /**
+     * Collects a complete series
+     */
+    protected void seriesRead(TLessonSeries s) {
+        series.add(s);
+    }
+
+    /**
+     * All the series read, once all the rows have been read
+     */
+    public List<TLessonSeries> getSeries() {
+        finish();
+        return series;
+    }
+
+}
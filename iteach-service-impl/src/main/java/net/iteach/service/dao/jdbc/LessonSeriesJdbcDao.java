@@ -0,0 +1,167 @@
+package net.iteach.service.dao.jdbc;
+
+import net.iteach.core.model.Ack;
+import net.iteach.core.model.ID;
+import net.iteach.core.model.LessonPeriod;
+import net.iteach.core.model.UserSummary;
+import net.iteach.service.dao.LessonSeriesCallback;
+import net.iteach.service.dao.LessonSeriesDao;
+import net.iteach.service.dao.model.TLessonSeries;
+import net.iteach.service.db.SQL;
+import net.iteach.service.db.SQLUtils;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static net.iteach.service.db.SQLUtils.dateToDB;
+import static net.iteach.service.db.SQLUtils.timeToDB;
+
+@Component
+public class LessonSeriesJdbcDao extends AbstractJdbcDao implements LessonSeriesDao {
+
+    @Autowired
+    public LessonSeriesJdbcDao(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    @Transactional
+    public ID createSeries(int student, LessonPeriod period, LocalDate startDate, LocalDate endDate, LocalTime from, LocalTime to, String location, int occurrenceCount) {
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        int count = getNamedParameterJdbcTemplate().update(
+                SQL.LESSON_SERIES_CREATE,
+                params("student", student)
+                        .addValue("period", period.name())
+                        .addValue("startDate", dateToDB(startDate))
+                        .addValue("endDate", dateToDB(endDate))
+                        .addValue("from", timeToDB(from))
+                        .addValue("to", timeToDB(to))
+                        .addValue("minutes", SQLUtils.getMinutes(from, to))
+                        .addValue("location", location)
+                        .addValue("count", occurrenceCount),
+                keyHolder);
+        return ID.count(count).withId(keyHolder.getKey().intValue());
+    }
+
+    @Override
+    @Transactional
+    public Ack deleteSeries(int id) {
+        return Ack.one(getNamedParameterJdbcTemplate().update(SQL.LESSON_SERIES_DELETE, params("id", id)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TLessonSeries findSeries(int teacherId, int id) {
+        List<TLessonSeries> series = query(SQL.LESSON_SERIES_BY_ID, params("teacher", teacherId).addValue("id", id));
+        return series.isEmpty() ? null : series.get(0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TLessonSeries> findSeriesForTeacher(int teacherId, LocalDate from, LocalDate to) {
+        return findSeriesForTeachers(teacherId, teacherId, from, to);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TLessonSeries> findSeriesForTeachers(int minTeacher, int maxTeacher, LocalDate from, LocalDate to) {
+        return query(
+                SQL.LESSON_SERIES_FOR_TEACHERS,
+                params("minTeacher", minTeacher)
+                        .addValue("maxTeacher", maxTeacher)
+                        .addValue("from", dateToDB(from))
+                        .addValue("to", dateToDB(to)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void processSeriesForTeachers(int minTeacher, int maxTeacher, LocalDate from, LocalDate to, final LessonSeriesCallback callback) {
+        LessonSeriesCallbackHandler handler = new LessonSeriesCallbackHandler() {
+
+            private UserSummary teacher;
+
+            @Override
+            protected void seriesStarted(ResultSet rs) throws SQLException {
+                teacher = new UserSummary(
+                        rs.getInt("teacher"),
+                        rs.getString("teacher_firstname"),
+                        rs.getString("teacher_lastname"),
+                        rs.getString("teacher_email"));
+            }
+
+            @Override
+            protected void seriesRead(TLessonSeries series) {
+                callback.processSeries(teacher, series);
+            }
+        };
+        getNamedParameterJdbcTemplate().query(
+                SQL.LESSON_SERIES_FOR_TEACHERS,
+                params("minTeacher", minTeacher)
+                        .addValue("maxTeacher", maxTeacher)
+                        .addValue("from", dateToDB(from))
+                        .addValue("to", dateToDB(to)),
+                handler);
+        handler.finish();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TLessonSeries> findSeriesForStudent(int studentId, LocalDate from, LocalDate to) {
+        return query(
+                SQL.LESSON_SERIES_FOR_STUDENT,
+                params("student", studentId)
+                        .addValue("from", dateToDB(from))
+                        .addValue("to", dateToDB(to)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TLessonSeries> findAllSeriesForTeacher(int teacherId) {
+        return query(SQL.LESSON_SERIES_ALL_FOR_TEACHER, params("teacher", teacherId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TLessonSeries> findAllSeriesForStudent(int studentId) {
+        return query(SQL.LESSON_SERIES_ALL_FOR_STUDENT, params("student", studentId));
+    }
+
+    @Override
+    @Transactional
+    public Ack addException(int seriesId, LocalDate date, Integer lessonId) {
+        MapSqlParameterSource params = params("series", seriesId)
+                .addValue("date", dateToDB(date))
+                .addValue("lesson", lessonId);
+        Ack ack = Ack.one(getNamedParameterJdbcTemplate().update(SQL.LESSON_SERIES_EXCEPTION_CREATE, params));
+        // Number of remaining occurrences, used by the reconciliation of the totals
+        if (ack.isSuccess()) {
+            getNamedParameterJdbcTemplate().update(SQL.LESSON_SERIES_OCCURRENCE_REMOVE, params);
+        }
+        return ack;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Integer findExceptionLesson(int seriesId, LocalDate date) {
+        return getFirstItem(
+                SQL.LESSON_SERIES_EXCEPTION_LESSON,
+                params("series", seriesId).addValue("date", dateToDB(date)),
+                Integer.class);
+    }
+
+    private List<TLessonSeries> query(String sql, MapSqlParameterSource params) {
+        LessonSeriesCallbackHandler handler = new LessonSeriesCallbackHandler();
+        getNamedParameterJdbcTemplate().query(sql, params, handler);
+        return handler.getSeries();
+    }
+
+}
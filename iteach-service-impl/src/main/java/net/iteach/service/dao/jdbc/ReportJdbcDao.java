@@ -0,0 +1,191 @@
+package net.iteach.service.dao.jdbc;
+
+import net.iteach.core.report.RangeReportAccumulator;
+import net.iteach.service.dao.ReportDao;
+import net.iteach.service.dao.model.TStudentMinutes;
+import net.iteach.service.dao.model.TTeacherMinutes;
+import net.iteach.service.db.SQL;
+import net.iteach.service.db.SQLUtils;
+import org.joda.time.LocalDate;
+import org.joda.time.YearMonth;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static net.iteach.service.db.SQLUtils.dateToDB;
+
+@Component
+public class ReportJdbcDao extends AbstractJdbcDao implements ReportDao {
+
+    /**
+     * Number of rows fetched at a time by the exports
+     */
+    private static final int EXPORT_FETCH_SIZE = 500;
+
+    private final RowMapper<TStudentMinutes> studentMinutesRowMapper = new RowMapper<TStudentMinutes>() {
+        @Override
+        public TStudentMinutes mapRow(ResultSet rs, int rowNum) throws SQLException {
+            return new TStudentMinutes(
+                    rs.getInt("school_id"),
+                    rs.getString("school_name"),
+                    rs.getString("school_color"),
+                    SQLUtils.moneyFromDB(rs, "school_hrate"),
+                    rs.getInt("student_id"),
+                    rs.getString("student_name"),
+                    rs.getBoolean("student_disabled"),
+                    rs.getInt("period_minutes"),
+                    rs.getInt("total_minutes")
+            );
+        }
+    };
+
+    private final RowMapper<TTeacherMinutes> teacherMinutesRowMapper = new RowMapper<TTeacherMinutes>() {
+        @Override
+        public TTeacherMinutes mapRow(ResultSet rs, int rowNum) throws SQLException {
+            return new TTeacherMinutes(
+                    rs.getInt("teacher"),
+                    rs.getInt("school_id"),
+                    SQLUtils.moneyFromDB(rs, "school_hrate"),
+                    rs.getInt("lesson_count"),
+                    rs.getInt("minutes")
+            );
+        }
+    };
+
+    private volatile NamedParameterJdbcTemplate exportTemplate;
+
+    @Autowired
+    public ReportJdbcDao(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    /**
+     * Template whose rows are fetched a few at a time, so that an export over several years
+     * is not read in memory before being written. MySQL Connector/J only streams the rows
+     * when the fetch size is <code>Integer.MIN_VALUE</code>, which other drivers reject.
+     */
+    protected NamedParameterJdbcTemplate getExportTemplate() {
+        if (exportTemplate == null) {
+            JdbcTemplate template = new JdbcTemplate(getDataSource());
+            template.setFetchSize(isMySQL() ? Integer.MIN_VALUE : EXPORT_FETCH_SIZE);
+            exportTemplate = new NamedParameterJdbcTemplate(template);
+        }
+        return exportTemplate;
+    }
+
+    private boolean isMySQL() {
+        try {
+            return "MySQL".equals(JdbcUtils.extractDatabaseMetaData(getDataSource(), "getDatabaseProductName"));
+        } catch (MetaDataAccessException ex) {
+            throw new DataAccessResourceFailureException("Cannot get the database product name", ex);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TStudentMinutes> findStudentMinutes(int teacherId, YearMonth month) {
+        return getNamedParameterJdbcTemplate().query(
+                SQL.REPORT_MONTHLY_MINUTES,
+                params("teacher", teacherId)
+                        .addValue("year", month.getYear())
+                        .addValue("month", month.getMonthOfYear()),
+                studentMinutesRowMapper
+        );
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void collectLessonMinutes(int teacherId, LocalDate from, LocalDate to, final RangeReportAccumulator accumulator) {
+        getNamedParameterJdbcTemplate().query(
+                SQL.REPORT_RANGE_LESSONS,
+                params("teacher", teacherId)
+                        .addValue("from", dateToDB(from))
+                        .addValue("to", dateToDB(to)),
+                new RowCallbackHandler() {
+                    private int schoolId = -1;
+
+                    @Override
+                    public void processRow(ResultSet rs) throws SQLException {
+                        int id = rs.getInt("school_id");
+                        // Rows are grouped by school
+                        if (id != schoolId) {
+                            schoolId = id;
+                            accumulator.addSchool(
+                                    id,
+                                    rs.getString("school_name"),
+                                    rs.getString("school_color"),
+                                    SQLUtils.moneyFromDB(rs, "school_hrate"));
+                        }
+                        accumulator.addMinutes(
+                                id,
+                                rs.getInt("student_id"),
+                                rs.getString("student_name"),
+                                rs.getBoolean("student_disabled"),
+                                SQLUtils.getLocalDate(rs, "pdate"),
+                                rs.getInt("duration_minutes"));
+                    }
+                }
+        );
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void processLessons(int teacherId, LocalDate from, LocalDate to, RowCallbackHandler handler) {
+        getExportTemplate().query(
+                SQL.REPORT_EXPORT_LESSONS,
+                params("teacher", teacherId)
+                        .addValue("from", dateToDB(from))
+                        .addValue("to", dateToDB(to)),
+                handler
+        );
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TTeacherMinutes> findTeacherMinutes(int minTeacher, int maxTeacher, LocalDate from, LocalDate to) {
+        return getNamedParameterJdbcTemplate().query(
+                SQL.REPORT_TEACHER_MINUTES,
+                params("minTeacher", minTeacher)
+                        .addValue("maxTeacher", maxTeacher)
+                        .addValue("from", dateToDB(from))
+                        .addValue("to", dateToDB(to)),
+                teacherMinutesRowMapper
+        );
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void processInvoiceLines(int teacherId, LocalDate from, LocalDate to, RowCallbackHandler handler) {
+        getNamedParameterJdbcTemplate().query(
+                SQL.REPORT_INVOICE_LINES,
+                params("teacher", teacherId)
+                        .addValue("from", dateToDB(from))
+                        .addValue("to", dateToDB(to)),
+                handler
+        );
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void processAllInvoiceLines(LocalDate from, LocalDate to, RowCallbackHandler handler) {
+        getNamedParameterJdbcTemplate().query(
+                SQL.REPORT_INVOICE_LINES_ALL,
+                params("from", dateToDB(from))
+                        .addValue("to", dateToDB(to)),
+                handler
+        );
+    }
+
+}
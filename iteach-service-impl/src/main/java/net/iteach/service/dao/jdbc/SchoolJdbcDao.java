@@ -7,6 +7,7 @@ import net.iteach.service.dao.model.TSchool;
 import net.iteach.service.db.SQL;
 import net.iteach.service.db.SQLUtils;
 import net.iteach.service.impl.SchoolNameAlreadyDefined;
+import net.iteach.service.memo.Memoized;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -31,6 +32,7 @@ public class SchoolJdbcDao extends AbstractJdbcDao implements SchoolDao {
                 throws SQLException {
             return new TSchool(
                     rs.getInt("id"),
+                    rs.getInt("teacher"),
                     rs.getString("name"),
                     rs.getString("color"),
                     SQLUtils.moneyFromDB(rs, "hrate"));
@@ -48,6 +50,12 @@ public class SchoolJdbcDao extends AbstractJdbcDao implements SchoolDao {
         return getFirstItem(SQL.TEACHER_FOR_SCHOOL, params("teacher", userId).addValue("id", id), Integer.class) != null;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Integer> findSchoolIdsByTeacher(int userId) {
+        return getNamedParameterJdbcTemplate().queryForList(SQL.SCHOOL_IDS_FOR_TEACHER, params("teacher", userId), Integer.class);
+    }
+
     @Override
     @Transactional
     public ID createSchool(int teacherId, String name, String color, BigDecimal hourlyRate) {
@@ -95,6 +103,7 @@ public class SchoolJdbcDao extends AbstractJdbcDao implements SchoolDao {
     @Override
     @Transactional(readOnly = true)
     @Cacheable(DaoCacheKeys.SCHOOL)
+    @Memoized
     public TSchool getSchoolById(int id) {
         return getNamedParameterJdbcTemplate().queryForObject(
                 SQL.SCHOOL,
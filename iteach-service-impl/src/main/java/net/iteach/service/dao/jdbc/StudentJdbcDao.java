@@ -1,13 +1,20 @@
 package net.iteach.service.dao.jdbc;
 
 import net.iteach.core.model.Ack;
+import net.iteach.core.model.CoordinateType;
+import net.iteach.core.model.Coordinates;
 import net.iteach.core.model.ID;
+import net.iteach.core.model.SchoolSummary;
+import net.iteach.core.model.StudentDetails;
 import net.iteach.service.dao.StudentDao;
 import net.iteach.service.dao.model.TStudent;
 import net.iteach.service.db.SQL;
+import net.iteach.service.db.SQLUtils;
+import net.iteach.service.memo.Memoized;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Component;
@@ -16,6 +23,7 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 
 @Component
@@ -44,6 +52,18 @@ public class StudentJdbcDao extends AbstractJdbcDao implements StudentDao {
         return getFirstItem(SQL.TEACHER_FOR_STUDENT, params("teacher", userId).addValue("id", id), Integer.class) != null;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Integer> findStudentIdsByTeacher(int userId) {
+        return getNamedParameterJdbcTemplate().queryForList(SQL.STUDENT_IDS_FOR_TEACHER, params("teacher", userId), Integer.class);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Integer> findStudentIdsByTeacher(int userId, Collection<Integer> ids) {
+        return getNamedParameterJdbcTemplate().queryForList(SQL.STUDENT_IDS_FOR_TEACHER_AMONG, params("teacher", userId).addValue("ids", ids), Integer.class);
+    }
+
     @Override
     @Transactional
     public ID createStudent(String name, int school, String subject) {
@@ -54,8 +74,13 @@ public class StudentJdbcDao extends AbstractJdbcDao implements StudentDao {
                         .addValue("subject", subject)
                         .addValue("name", name),
                 keyHolder);
+        int id = keyHolder.getKey().intValue();
+        // Empty total of minutes
+        getNamedParameterJdbcTemplate().update(
+                SQL.STUDENT_TOTAL_CREATE,
+                params("student", id).addValue("minutes", 0));
         // Gets the ID
-        return ID.count(count).withId(keyHolder.getKey().intValue());
+        return ID.count(count).withId(id);
     }
 
     @Override
@@ -95,6 +120,7 @@ public class StudentJdbcDao extends AbstractJdbcDao implements StudentDao {
     @Override
     @Transactional(readOnly = true)
     @Cacheable(DaoCacheKeys.STUDENT)
+    @Memoized
     public TStudent getStudentById(int studentId) {
         return getNamedParameterJdbcTemplate().queryForObject(
                 SQL.STUDENT,
@@ -103,6 +129,18 @@ public class StudentJdbcDao extends AbstractJdbcDao implements StudentDao {
         );
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public StudentDetails findStudentDetails(int userId, int id) {
+        StudentDetailsCallbackHandler handler = new StudentDetailsCallbackHandler();
+        getNamedParameterJdbcTemplate().query(
+                SQL.STUDENT_DETAILS,
+                params("teacher", userId).addValue("id", id),
+                handler
+        );
+        return handler.getDetails();
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<TStudent> findStudentsByTeacher(int teacherId) {
@@ -122,4 +160,53 @@ public class StudentJdbcDao extends AbstractJdbcDao implements StudentDao {
                 studentRowMapper
         );
     }
+
+    /**
+     * Gathers the rows of {@link SQL#STUDENT_DETAILS}: one row per coordinate of the student,
+     * or a single row without any coordinate.
+     */
+    private static class StudentDetailsCallbackHandler implements RowCallbackHandler {
+
+        private StudentDetails student;
+        private Coordinates coordinates = Coordinates.create();
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            if (student == null) {
+                student = new StudentDetails(
+                        rs.getInt("id"),
+                        rs.getString("subject"),
+                        rs.getString("name"),
+                        null,
+                        new SchoolSummary(
+                                rs.getInt("school_id"),
+                                rs.getString("school_name"),
+                                rs.getString("school_color"),
+                                SQLUtils.moneyFromDB(rs, "school_hrate")
+                        ),
+                        SQLUtils.getHours(rs.getInt("total_minutes")),
+                        rs.getBoolean("disabled")
+                );
+            }
+            CoordinateType type = SQLUtils.getEnum(CoordinateType.class, rs, "coord_type");
+            if (type != null) {
+                coordinates = coordinates.add(type, rs.getString("coord_value"));
+            }
+        }
+
+        public StudentDetails getDetails() {
+            if (student == null) {
+                return null;
+            }
+            return new StudentDetails(
+                    student.getId(),
+                    student.getSubject(),
+                    student.getName(),
+                    coordinates,
+                    student.getSchool(),
+                    student.getTotalHours(),
+                    student.isDisabled()
+            );
+        }
+    }
 }
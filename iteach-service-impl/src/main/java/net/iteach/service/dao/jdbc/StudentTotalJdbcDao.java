@@ -0,0 +1,77 @@
+package net.iteach.service.dao.jdbc;
+
+import net.iteach.service.dao.StudentTotalDao;
+import net.iteach.service.db.SQL;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+public class StudentTotalJdbcDao extends AbstractJdbcDao implements StudentTotalDao {
+
+    @Autowired
+    public StudentTotalJdbcDao(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public int getMinutes(int studentId) {
+        Integer minutes = getFirstItem(SQL.STUDENT_TOTAL_MINUTES, params("student", studentId), Integer.class);
+        return minutes != null ? minutes : 0;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Integer, Integer> getMinutesForStudents(Collection<Integer> studentIds) {
+        final Map<Integer, Integer> minutes = new HashMap<>();
+        if (!studentIds.isEmpty()) {
+            getNamedParameterJdbcTemplate().query(
+                    SQL.STUDENT_TOTALS_FOR_STUDENTS,
+                    params("students", studentIds),
+                    new RowCallbackHandler() {
+                        @Override
+                        public void processRow(ResultSet rs) throws SQLException {
+                            minutes.put(rs.getInt("student"), rs.getInt("minutes"));
+                        }
+                    }
+            );
+        }
+        return minutes;
+    }
+
+    @Override
+    @Transactional
+    public void addMinutes(int studentId, int minutes) {
+        if (minutes != 0) {
+            // The total is created with the student, so that it only has to be updated
+            // in a single statement, concurrent lessons included
+            getNamedParameterJdbcTemplate().update(
+                    SQL.STUDENT_TOTAL_ADD,
+                    params("student", studentId).addValue("minutes", minutes));
+        }
+    }
+
+    @Override
+    @Transactional
+    public int reconcile() {
+        NamedParameterJdbcTemplate t = getNamedParameterJdbcTemplate();
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        // Wrong totals
+        int count = t.update(SQL.STUDENT_TOTALS_RECONCILE, params);
+        // Missing totals
+        count += t.update(SQL.STUDENT_TOTALS_MISSING, params);
+        // OK
+        return count;
+    }
+}
@@ -0,0 +1,99 @@
+package net.iteach.service.dao.jdbc;
+
+import net.iteach.service.dao.TeacherMonthlyMinutesDao;
+import net.iteach.service.dao.model.TLessonSeries;
+import net.iteach.service.db.SQL;
+import org.joda.time.LocalDate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+@Component
+public class TeacherMonthlyMinutesJdbcDao extends AbstractJdbcDao implements TeacherMonthlyMinutesDao {
+
+    @Autowired
+    public TeacherMonthlyMinutesJdbcDao(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    @Transactional
+    public void addMinutes(int teacherId, int studentId, LocalDate date, int minutes) {
+        if (minutes != 0) {
+            add(params("teacher", teacherId)
+                    .addValue("student", studentId)
+                    .addValue("year", date.getYear())
+                    .addValue("month", date.getMonthOfYear())
+                    .addValue("minutes", minutes));
+        }
+    }
+
+    @Override
+    @Transactional
+    public int rebuild() {
+        NamedParameterJdbcTemplate t = getNamedParameterJdbcTemplate();
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        t.update(SQL.MONTHLY_MINUTES_DELETE_ALL, params);
+        int count = t.update(SQL.MONTHLY_MINUTES_REBUILD_ALL, params);
+        return count + addSeriesMinutes(SQL.LESSON_SERIES_ALL, params);
+    }
+
+    @Override
+    @Transactional
+    public int rebuild(int teacherId) {
+        NamedParameterJdbcTemplate t = getNamedParameterJdbcTemplate();
+        MapSqlParameterSource params = params("teacher", teacherId);
+        t.update(SQL.MONTHLY_MINUTES_DELETE_FOR_TEACHER, params);
+        int count = t.update(SQL.MONTHLY_MINUTES_REBUILD_FOR_TEACHER, params);
+        return count + addSeriesMinutes(SQL.LESSON_SERIES_ALL_FOR_TEACHER, params);
+    }
+
+    /**
+     * Adds the occurrences of the series, which are not stored as lessons, and returns
+     * the number of months which had to be created
+     */
+    private int addSeriesMinutes(String sql, MapSqlParameterSource params) {
+        NamedParameterJdbcTemplate t = getNamedParameterJdbcTemplate();
+        LessonSeriesCallbackHandler handler = new LessonSeriesCallbackHandler();
+        t.query(sql, params, handler);
+        int count = 0;
+        for (TLessonSeries series : handler.getSeries()) {
+            for (Map.Entry<LocalDate, Integer> month : series.getMonthlyMinutes().entrySet()) {
+                MapSqlParameterSource monthParams = params("teacher", series.getTeacher())
+                        .addValue("student", series.getStudent().getId())
+                        .addValue("year", month.getKey().getYear())
+                        .addValue("month", month.getKey().getMonthOfYear())
+                        .addValue("minutes", month.getValue());
+                count += add(monthParams);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds minutes to a month, creating it if not existing yet. When a concurrent
+     * transaction creates the same month first, the insertion fails on the primary key
+     * and the minutes are added to its row instead.
+     *
+     * @return <code>1</code> if the month has been created
+     */
+    private int add(MapSqlParameterSource params) {
+        NamedParameterJdbcTemplate t = getNamedParameterJdbcTemplate();
+        if (t.update(SQL.MONTHLY_MINUTES_ADD, params) > 0) {
+            return 0;
+        }
+        try {
+            return t.update(SQL.MONTHLY_MINUTES_CREATE, params);
+        } catch (DuplicateKeyException ex) {
+            t.update(SQL.MONTHLY_MINUTES_ADD, params);
+            return 0;
+        }
+    }
+
+}
@@ -12,6 +12,7 @@ public class TLesson {
     private final LocalDate date;
     private final LocalTime from;
     private final LocalTime to;
+    private final int durationMinutes;
     private final String location;
 
 }
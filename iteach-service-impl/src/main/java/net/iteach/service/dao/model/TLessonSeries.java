@@ -0,0 +1,167 @@
+package net.iteach.service.dao.model;
+
+import lombok.Data;
+import net.iteach.core.model.Lesson;
+import net.iteach.core.model.LessonPeriod;
+import net.iteach.core.model.StudentSummary;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.joda.time.Weeks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rule of a series of lessons, with its student and the dates of the occurrences which
+ * have been deleted or replaced by a lesson.
+ * <p/>
+ * The occurrences of a series are never stored. Each of them is identified by a negative
+ * lesson ID, built from the ID of the series and the position of the occurrence, so that
+ * they can be told apart from the stored lessons. The occurrence IDs of a series whose
+ * ID is above {@link #MAX_SERIES_ID} would not fit into an integer, so such a series is
+ * never created.
+ */
+@Data
+public class TLessonSeries {
+
+    /**
+     * Maximum number of occurrences in a series
+     */
+    public static final int MAX_OCCURRENCES = 1024;
+
+    /**
+     * Maximum ID of a series, whose last occurrence ID is still an integer
+     */
+    public static final int MAX_SERIES_ID = Integer.MAX_VALUE / MAX_OCCURRENCES;
+
+    /**
+     * Orders the lessons by date and time
+     */
+    public static final Comparator<Lesson> LESSON_ORDER = new Comparator<Lesson>() {
+        @Override
+        public int compare(Lesson o1, Lesson o2) {
+            int c = o1.getDate().compareTo(o2.getDate());
+            if (c != 0) {
+                return c;
+            } else {
+                return o1.getFrom().compareTo(o2.getFrom());
+            }
+        }
+    };
+
+    private final int id;
+    private final int teacher;
+    private final StudentSummary student;
+    private final LessonPeriod period;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final LocalTime from;
+    private final LocalTime to;
+    private final int durationMinutes;
+    private final String location;
+    private final Set<LocalDate> exceptions;
+
+    public static boolean isOccurrence(int lessonId) {
+        return lessonId < 0;
+    }
+
+    public static int getSeriesId(int occurrenceId) {
+        return -occurrenceId / MAX_OCCURRENCES;
+    }
+
+    public static int getIndex(int occurrenceId) {
+        return -occurrenceId % MAX_OCCURRENCES;
+    }
+
+    /**
+     * Occurrences of several series between two dates (included), ordered by date and time
+     */
+    public static List<Lesson> getOccurrences(List<TLessonSeries> series, LocalDate from, LocalDate to) {
+        List<Lesson> lessons = new ArrayList<>();
+        for (TLessonSeries s : series) {
+            lessons.addAll(s.getOccurrences(from, to));
+        }
+        Collections.sort(lessons, LESSON_ORDER);
+        return lessons;
+    }
+
+    /**
+     * Number of occurrences of a rule, exceptions not being taken into account
+     */
+    public static int getOccurrenceCount(LessonPeriod period, LocalDate startDate, LocalDate endDate) {
+        int count = 0;
+        LocalDate date = startDate;
+        while (!date.isAfter(endDate) && count <= MAX_OCCURRENCES) {
+            count++;
+            date = date.plusWeeks(period.getWeeks());
+        }
+        return count;
+    }
+
+    public int getOccurrenceId(int index) {
+        return -(id * MAX_OCCURRENCES + index);
+    }
+
+    /**
+     * Date of an occurrence, or <code>null</code> if the position is out of the series
+     */
+    public LocalDate getDate(int index) {
+        LocalDate date = startDate.plusWeeks(index * period.getWeeks());
+        return date.isAfter(endDate) ? null : date;
+    }
+
+    /**
+     * Positions of the occurrences between two dates (included), the exceptions excluded
+     */
+    public List<Integer> getIndexes(LocalDate from, LocalDate to) {
+        List<Integer> indexes = new ArrayList<>();
+        int index = 0;
+        if (from.isAfter(startDate)) {
+            // Skips the occurrences before the range
+            index = Weeks.weeksBetween(startDate, from).getWeeks() / period.getWeeks();
+        }
+        LocalDate date = getDate(index);
+        while (date != null && !date.isAfter(to)) {
+            if (!date.isBefore(from) && !exceptions.contains(date)) {
+                indexes.add(index);
+            }
+            index++;
+            date = getDate(index);
+        }
+        return indexes;
+    }
+
+    /**
+     * Occurrences between two dates (included), ordered by date
+     */
+    public List<Lesson> getOccurrences(LocalDate from, LocalDate to) {
+        List<Lesson> lessons = new ArrayList<>();
+        for (int index : getIndexes(from, to)) {
+            lessons.add(getOccurrence(index));
+        }
+        return lessons;
+    }
+
+    public Lesson getOccurrence(int index) {
+        return new Lesson(getOccurrenceId(index), student, getDate(index), from, to, location);
+    }
+
+    /**
+     * Minutes of all the occurrences, exceptions excluded, per month given by its first day
+     */
+    public Map<LocalDate, Integer> getMonthlyMinutes() {
+        Map<LocalDate, Integer> months = new LinkedHashMap<>();
+        for (int index : getIndexes(startDate, endDate)) {
+            LocalDate month = getDate(index).withDayOfMonth(1);
+            Integer minutes = months.get(month);
+            months.put(month, (minutes != null ? minutes : 0) + durationMinutes);
+        }
+        return months;
+    }
+
+}
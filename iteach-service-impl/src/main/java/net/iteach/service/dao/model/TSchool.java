@@ -7,6 +7,7 @@ import org.joda.money.Money;
 public class TSchool {
 
     private final int id;
+    private final int teacher;
     private final String name;
     private final String color;
     private final Money hourlyRate;
@@ -0,0 +1,23 @@
+package net.iteach.service.dao.model;
+
+import lombok.Data;
+import org.joda.money.Money;
+
+/**
+ * Minutes of lessons for a student over a period and since the beginning,
+ * together with its school.
+ */
+@Data
+public class TStudentMinutes {
+
+    private final int schoolId;
+    private final String schoolName;
+    private final String schoolColor;
+    private final Money schoolHourlyRate;
+    private final int studentId;
+    private final String studentName;
+    private final boolean studentDisabled;
+    private final int periodMinutes;
+    private final int totalMinutes;
+
+}
@@ -0,0 +1,18 @@
+package net.iteach.service.dao.model;
+
+import lombok.Data;
+import org.joda.money.Money;
+
+/**
+ * Number and minutes of the lessons given by a teacher for one school over a period
+ */
+@Data
+public class TTeacherMinutes {
+
+    private final int teacherId;
+    private final int schoolId;
+    private final Money schoolHourlyRate;
+    private final int lessonCount;
+    private final int minutes;
+
+}
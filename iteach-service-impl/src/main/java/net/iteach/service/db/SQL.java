@@ -39,6 +39,8 @@ public interface SQL {
 
     String STUDENT = "SELECT * FROM STUDENTS WHERE ID = :id";
 
+    String STUDENT_DETAILS = "SELECT S.ID, S.SUBJECT, S.NAME, S.DISABLED, H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.COLOR AS SCHOOL_COLOR, H.HRATE AS SCHOOL_HRATE, COALESCE(T.MINUTES, 0) AS TOTAL_MINUTES, C.COORD_TYPE, C.COORD_VALUE FROM STUDENTS S INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL LEFT JOIN STUDENT_TOTALS T ON T.STUDENT = S.ID LEFT JOIN COORDINATES C ON C.STUDENT = S.ID WHERE S.ID = :id AND H.TEACHER = :teacher";
+
     String STUDENTS_FOR_TEACHER = "SELECT S.* FROM STUDENTS S INNER JOIN SCHOOLS H ON S.SCHOOL = H.ID WHERE H.TEACHER = :teacher AND S.DISABLED IS FALSE ORDER BY S.NAME";
 
     String STUDENT_CREATE = "INSERT INTO STUDENTS (SCHOOL, SUBJECT, NAME, DISABLED) VALUES (:school, :subject, :name, false)";
@@ -55,25 +57,99 @@ public interface SQL {
 
     String LESSON = "SELECT * FROM LESSONS WHERE ID = :id";
 
-    String LESSONS = "SELECT L.* FROM LESSONS L INNER JOIN STUDENTS S ON S.ID = L.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL AND H.TEACHER = :teacher WHERE CONCAT(PDATE,'T',PFROM) >= :from AND CONCAT(PDATE,'T','PTO') <= :to";
+    String LESSON_DETAILS = "SELECT L.ID, L.PDATE, L.PFROM, L.PTO, L.LOCATION, S.ID AS STUDENT_ID, S.SUBJECT AS STUDENT_SUBJECT, S.NAME AS STUDENT_NAME, S.DISABLED AS STUDENT_DISABLED, H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.COLOR AS SCHOOL_COLOR, H.HRATE AS SCHOOL_HRATE, 'SCHOOL' AS COORD_ENTITY, C.COORD_TYPE, C.COORD_VALUE FROM LESSONS L INNER JOIN STUDENTS S ON S.ID = L.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL LEFT JOIN COORDINATES C ON C.SCHOOL = H.ID WHERE L.ID = :id AND L.TEACHER = :teacher AND H.TEACHER = :teacher UNION ALL SELECT L.ID, L.PDATE, L.PFROM, L.PTO, L.LOCATION, S.ID AS STUDENT_ID, S.SUBJECT AS STUDENT_SUBJECT, S.NAME AS STUDENT_NAME, S.DISABLED AS STUDENT_DISABLED, H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.COLOR AS SCHOOL_COLOR, H.HRATE AS SCHOOL_HRATE, 'STUDENT' AS COORD_ENTITY, C.COORD_TYPE, C.COORD_VALUE FROM LESSONS L INNER JOIN STUDENTS S ON S.ID = L.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL LEFT JOIN COORDINATES C ON C.STUDENT = S.ID WHERE L.ID = :id AND L.TEACHER = :teacher AND H.TEACHER = :teacher";
+
+    String LESSONS = "SELECT * FROM LESSONS WHERE TEACHER = :teacher AND PDATE >= :fromDate AND PDATE <= :toDate AND (PDATE > :fromDate OR PFROM >= :fromTime) AND (PDATE < :toDate OR PTO <= :toTime)";
+
+    String LESSONS_WITH_STUDENTS = "SELECT L.ID, L.PDATE, L.PFROM, L.PTO, L.LOCATION, S.ID AS STUDENT_ID, S.SUBJECT AS STUDENT_SUBJECT, S.NAME AS STUDENT_NAME, S.DISABLED AS STUDENT_DISABLED, H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.COLOR AS SCHOOL_COLOR, H.HRATE AS SCHOOL_HRATE FROM LESSONS L INNER JOIN STUDENTS S ON S.ID = L.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL WHERE L.TEACHER = :teacher AND L.PDATE >= :fromDate AND L.PDATE <= :toDate AND (L.PDATE > :fromDate OR L.PFROM >= :fromTime) AND (L.PDATE < :toDate OR L.PTO <= :toTime) ORDER BY L.PDATE, L.PFROM";
 
-    String LESSON_CREATE = "INSERT INTO LESSONS (STUDENT, PDATE, PFROM, PTO, LOCATION) VALUES (:student, :date, :from, :to, :location)";
+    String LESSON_CREATE = "INSERT INTO LESSONS (TEACHER, STUDENT, PDATE, PFROM, PTO, DURATION_MINUTES, LOCATION) VALUES ((SELECT H.TEACHER FROM STUDENTS S INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL WHERE S.ID = :student), :student, :date, :from, :to, :minutes, :location)";
 
-    String LESSON_UPDATE = "UPDATE LESSONS SET STUDENT = :student, PDATE = :date, PFROM = :from, PTO = :to, LOCATION = :location WHERE ID = :id";
+    String LESSON_UPDATE = "UPDATE LESSONS SET TEACHER = (SELECT H.TEACHER FROM STUDENTS S INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL WHERE S.ID = :student), STUDENT = :student, PDATE = :date, PFROM = :from, PTO = :to, DURATION_MINUTES = :minutes, LOCATION = :location WHERE ID = :id";
 
     String LESSON_DELETE = "DELETE FROM LESSONS WHERE ID = :id";
 
-    String LESSONS_FOR_STUDENT = "SELECT * FROM LESSONS WHERE STUDENT = :id AND PDATE >= :from AND PDATE <= :to ORDER BY PFROM";
+    String LESSONS_BY_IDS = "SELECT * FROM LESSONS WHERE ID IN (:ids)";
+
+    String LESSON_IDS_FOR_DATES = "SELECT ID, PDATE, PFROM FROM LESSONS WHERE TEACHER = :teacher AND PDATE IN (:dates)";
+
+    String LESSONS_FOR_STUDENT = "SELECT * FROM LESSONS WHERE STUDENT = :id AND PDATE >= :from AND PDATE <= :to ORDER BY PDATE, PFROM";
 
     String LESSONS_ALL_FOR_STUDENT = "SELECT * FROM LESSONS WHERE STUDENT = :id";
 
-    String STUDENT_TOTAL_HOURS = "SELECT PFROM, PTO FROM LESSONS WHERE STUDENT = :id";
+    String LESSON_RANGE_UPDATE = "UPDATE LESSONS SET PDATE = :date, PFROM = :from, PTO = :to, DURATION_MINUTES = :minutes WHERE ID = :id";
+
+    String LESSON_RANGES_FOR_TEACHER = "SELECT * FROM LESSONS WHERE TEACHER = :teacher";
+
+    String LESSON_DENSITY = "SELECT PDATE, COUNT(ID) AS LESSON_COUNT, SUM(DURATION_MINUTES) AS MINUTES FROM LESSONS WHERE TEACHER = :teacher AND PDATE >= :from AND PDATE <= :to GROUP BY PDATE";
+
+    String LESSONS_ALL_FOR_TEACHER = "SELECT L.* FROM LESSONS L INNER JOIN STUDENTS S ON S.ID = L.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL WHERE L.TEACHER = :teacher ORDER BY H.NAME, S.NAME";
+
+    // Lesson series
+
+    String LESSON_SERIES_CREATE = "INSERT INTO LESSON_SERIES (TEACHER, STUDENT, PERIOD, START_DATE, END_DATE, PFROM, PTO, DURATION_MINUTES, LOCATION, OCCURRENCE_COUNT) VALUES ((SELECT H.TEACHER FROM STUDENTS S INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL WHERE S.ID = :student), :student, :period, :startDate, :endDate, :from, :to, :minutes, :location, :count)";
+
+    String LESSON_SERIES_DELETE = "DELETE FROM LESSON_SERIES WHERE ID = :id";
+
+    String LESSON_SERIES_BY_ID = "SELECT R.ID, R.TEACHER, R.PERIOD, R.START_DATE, R.END_DATE, R.PFROM, R.PTO, R.DURATION_MINUTES, R.LOCATION, E.PDATE AS EXCEPTION_DATE, S.ID AS STUDENT_ID, S.SUBJECT AS STUDENT_SUBJECT, S.NAME AS STUDENT_NAME, S.DISABLED AS STUDENT_DISABLED, H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.COLOR AS SCHOOL_COLOR, H.HRATE AS SCHOOL_HRATE FROM LESSON_SERIES R INNER JOIN STUDENTS S ON S.ID = R.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL LEFT JOIN LESSON_SERIES_EXCEPTIONS E ON E.SERIES = R.ID WHERE R.ID = :id AND R.TEACHER = :teacher";
+
+    String LESSON_SERIES_FOR_TEACHERS = "SELECT R.ID, R.TEACHER, R.PERIOD, R.START_DATE, R.END_DATE, R.PFROM, R.PTO, R.DURATION_MINUTES, R.LOCATION, E.PDATE AS EXCEPTION_DATE, S.ID AS STUDENT_ID, S.SUBJECT AS STUDENT_SUBJECT, S.NAME AS STUDENT_NAME, S.DISABLED AS STUDENT_DISABLED, H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.COLOR AS SCHOOL_COLOR, H.HRATE AS SCHOOL_HRATE, U.FIRSTNAME AS TEACHER_FIRSTNAME, U.LASTNAME AS TEACHER_LASTNAME, U.EMAIL AS TEACHER_EMAIL FROM LESSON_SERIES R INNER JOIN STUDENTS S ON S.ID = R.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL INNER JOIN USERS U ON U.ID = R.TEACHER LEFT JOIN LESSON_SERIES_EXCEPTIONS E ON E.SERIES = R.ID WHERE R.TEACHER >= :minTeacher AND R.TEACHER <= :maxTeacher AND R.END_DATE >= :from AND R.START_DATE <= :to ORDER BY R.ID";
+
+    String LESSON_SERIES_FOR_STUDENT = "SELECT R.ID, R.TEACHER, R.PERIOD, R.START_DATE, R.END_DATE, R.PFROM, R.PTO, R.DURATION_MINUTES, R.LOCATION, E.PDATE AS EXCEPTION_DATE, S.ID AS STUDENT_ID, S.SUBJECT AS STUDENT_SUBJECT, S.NAME AS STUDENT_NAME, S.DISABLED AS STUDENT_DISABLED, H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.COLOR AS SCHOOL_COLOR, H.HRATE AS SCHOOL_HRATE FROM LESSON_SERIES R INNER JOIN STUDENTS S ON S.ID = R.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL LEFT JOIN LESSON_SERIES_EXCEPTIONS E ON E.SERIES = R.ID WHERE R.STUDENT = :student AND R.END_DATE >= :from AND R.START_DATE <= :to ORDER BY R.ID";
+
+    String LESSON_SERIES_ALL_FOR_TEACHER = "SELECT R.ID, R.TEACHER, R.PERIOD, R.START_DATE, R.END_DATE, R.PFROM, R.PTO, R.DURATION_MINUTES, R.LOCATION, E.PDATE AS EXCEPTION_DATE, S.ID AS STUDENT_ID, S.SUBJECT AS STUDENT_SUBJECT, S.NAME AS STUDENT_NAME, S.DISABLED AS STUDENT_DISABLED, H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.COLOR AS SCHOOL_COLOR, H.HRATE AS SCHOOL_HRATE FROM LESSON_SERIES R INNER JOIN STUDENTS S ON S.ID = R.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL LEFT JOIN LESSON_SERIES_EXCEPTIONS E ON E.SERIES = R.ID WHERE R.TEACHER = :teacher ORDER BY R.ID";
+
+    String LESSON_SERIES_ALL_FOR_STUDENT = "SELECT R.ID, R.TEACHER, R.PERIOD, R.START_DATE, R.END_DATE, R.PFROM, R.PTO, R.DURATION_MINUTES, R.LOCATION, E.PDATE AS EXCEPTION_DATE, S.ID AS STUDENT_ID, S.SUBJECT AS STUDENT_SUBJECT, S.NAME AS STUDENT_NAME, S.DISABLED AS STUDENT_DISABLED, H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.COLOR AS SCHOOL_COLOR, H.HRATE AS SCHOOL_HRATE FROM LESSON_SERIES R INNER JOIN STUDENTS S ON S.ID = R.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL LEFT JOIN LESSON_SERIES_EXCEPTIONS E ON E.SERIES = R.ID WHERE R.STUDENT = :student ORDER BY R.ID";
+
+    String LESSON_SERIES_ALL = "SELECT R.ID, R.TEACHER, R.PERIOD, R.START_DATE, R.END_DATE, R.PFROM, R.PTO, R.DURATION_MINUTES, R.LOCATION, E.PDATE AS EXCEPTION_DATE, S.ID AS STUDENT_ID, S.SUBJECT AS STUDENT_SUBJECT, S.NAME AS STUDENT_NAME, S.DISABLED AS STUDENT_DISABLED, H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.COLOR AS SCHOOL_COLOR, H.HRATE AS SCHOOL_HRATE FROM LESSON_SERIES R INNER JOIN STUDENTS S ON S.ID = R.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL LEFT JOIN LESSON_SERIES_EXCEPTIONS E ON E.SERIES = R.ID ORDER BY R.ID";
+
+    String LESSON_SERIES_EXCEPTION_CREATE = "INSERT INTO LESSON_SERIES_EXCEPTIONS (SERIES, PDATE, LESSON) VALUES (:series, :date, :lesson)";
+
+    String LESSON_SERIES_OCCURRENCE_REMOVE = "UPDATE LESSON_SERIES SET OCCURRENCE_COUNT = OCCURRENCE_COUNT - 1 WHERE ID = :series";
+
+    String LESSON_SERIES_EXCEPTION_LESSON = "SELECT LESSON FROM LESSON_SERIES_EXCEPTIONS WHERE SERIES = :series AND PDATE = :date";
+
+    // Student totals
+
+    String STUDENT_TOTAL_MINUTES = "SELECT MINUTES FROM STUDENT_TOTALS WHERE STUDENT = :student";
 
-    String LESSON_RANGE = "SELECT PDATE, PFROM, PTO FROM LESSONS WHERE ID = :id";
+    String STUDENT_TOTALS_FOR_STUDENTS = "SELECT STUDENT, MINUTES FROM STUDENT_TOTALS WHERE STUDENT IN (:students)";
 
-    String LESSON_RANGE_UPDATE = "UPDATE LESSONS SET PDATE = :date, PFROM = :from, PTO = :to WHERE ID = :id";
+    String STUDENT_TOTAL_CREATE = "INSERT INTO STUDENT_TOTALS (STUDENT, MINUTES) VALUES (:student, :minutes)";
 
-    String LESSONS_ALL_FOR_TEACHER = "SELECT L.* FROM LESSONS L INNER JOIN STUDENTS S ON S.ID = L.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL WHERE H.TEACHER = :teacher ORDER BY H.NAME, S.NAME";
+    String STUDENT_TOTAL_ADD = "UPDATE STUDENT_TOTALS SET MINUTES = MINUTES + :minutes WHERE STUDENT = :student";
+
+    String STUDENT_TOTALS_RECONCILE = "UPDATE STUDENT_TOTALS SET MINUTES = (SELECT COALESCE(SUM(L.DURATION_MINUTES), 0) FROM LESSONS L WHERE L.STUDENT = STUDENT_TOTALS.STUDENT) + (SELECT COALESCE(SUM(R.OCCURRENCE_COUNT * R.DURATION_MINUTES), 0) FROM LESSON_SERIES R WHERE R.STUDENT = STUDENT_TOTALS.STUDENT) WHERE MINUTES <> (SELECT COALESCE(SUM(L.DURATION_MINUTES), 0) FROM LESSONS L WHERE L.STUDENT = STUDENT_TOTALS.STUDENT) + (SELECT COALESCE(SUM(R.OCCURRENCE_COUNT * R.DURATION_MINUTES), 0) FROM LESSON_SERIES R WHERE R.STUDENT = STUDENT_TOTALS.STUDENT)";
+
+    String STUDENT_TOTALS_MISSING = "INSERT INTO STUDENT_TOTALS (STUDENT, MINUTES) SELECT S.ID, COALESCE(SUM(L.DURATION_MINUTES), 0) + (SELECT COALESCE(SUM(R.OCCURRENCE_COUNT * R.DURATION_MINUTES), 0) FROM LESSON_SERIES R WHERE R.STUDENT = S.ID) FROM STUDENTS S LEFT JOIN LESSONS L ON L.STUDENT = S.ID WHERE NOT EXISTS (SELECT T.STUDENT FROM STUDENT_TOTALS T WHERE T.STUDENT = S.ID) GROUP BY S.ID";
+
+    // Monthly minutes
+
+    String MONTHLY_MINUTES_CREATE = "INSERT INTO TEACHER_MONTHLY_MINUTES (TEACHER, STUDENT, PYEAR, PMONTH, MINUTES) VALUES (:teacher, :student, :year, :month, :minutes)";
+
+    String MONTHLY_MINUTES_ADD = "UPDATE TEACHER_MONTHLY_MINUTES SET MINUTES = MINUTES + :minutes WHERE TEACHER = :teacher AND PYEAR = :year AND PMONTH = :month AND STUDENT = :student";
+
+    String MONTHLY_MINUTES_DELETE_ALL = "DELETE FROM TEACHER_MONTHLY_MINUTES";
+
+    String MONTHLY_MINUTES_REBUILD_ALL = "INSERT INTO TEACHER_MONTHLY_MINUTES (TEACHER, STUDENT, PYEAR, PMONTH, MINUTES) SELECT TEACHER, STUDENT, YEAR(PDATE), MONTH(PDATE), SUM(DURATION_MINUTES) FROM LESSONS GROUP BY TEACHER, STUDENT, YEAR(PDATE), MONTH(PDATE)";
+
+    String MONTHLY_MINUTES_DELETE_FOR_TEACHER = "DELETE FROM TEACHER_MONTHLY_MINUTES WHERE TEACHER = :teacher";
+
+    String MONTHLY_MINUTES_REBUILD_FOR_TEACHER = "INSERT INTO TEACHER_MONTHLY_MINUTES (TEACHER, STUDENT, PYEAR, PMONTH, MINUTES) SELECT TEACHER, STUDENT, YEAR(PDATE), MONTH(PDATE), SUM(DURATION_MINUTES) FROM LESSONS WHERE TEACHER = :teacher GROUP BY TEACHER, STUDENT, YEAR(PDATE), MONTH(PDATE)";
+
+    // Reports
+
+    String REPORT_MONTHLY_MINUTES = "SELECT H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.COLOR AS SCHOOL_COLOR, H.HRATE AS SCHOOL_HRATE, S.ID AS STUDENT_ID, S.NAME AS STUDENT_NAME, S.DISABLED AS STUDENT_DISABLED, COALESCE(T.MINUTES, 0) AS TOTAL_MINUTES, COALESCE(M.MINUTES, 0) AS PERIOD_MINUTES FROM SCHOOLS H INNER JOIN STUDENTS S ON S.SCHOOL = H.ID LEFT JOIN STUDENT_TOTALS T ON T.STUDENT = S.ID LEFT JOIN TEACHER_MONTHLY_MINUTES M ON M.TEACHER = H.TEACHER AND M.PYEAR = :year AND M.PMONTH = :month AND M.STUDENT = S.ID WHERE H.TEACHER = :teacher AND (T.MINUTES > 0 OR M.MINUTES > 0) ORDER BY H.NAME, S.NAME";
+
+    String REPORT_RANGE_LESSONS = "SELECT H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.COLOR AS SCHOOL_COLOR, H.HRATE AS SCHOOL_HRATE, S.ID AS STUDENT_ID, S.NAME AS STUDENT_NAME, S.DISABLED AS STUDENT_DISABLED, L.PDATE, L.DURATION_MINUTES FROM LESSONS L INNER JOIN STUDENTS S ON S.ID = L.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL WHERE L.TEACHER = :teacher AND L.PDATE >= :from AND L.PDATE <= :to ORDER BY H.NAME, H.ID, S.NAME, S.ID";
+
+    String REPORT_EXPORT_LESSONS = "SELECT L.PDATE, L.PFROM, L.PTO, L.DURATION_MINUTES, L.LOCATION, S.NAME AS STUDENT_NAME, H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.HRATE AS SCHOOL_HRATE FROM LESSONS L INNER JOIN STUDENTS S ON S.ID = L.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL WHERE L.TEACHER = :teacher AND L.PDATE >= :from AND L.PDATE <= :to ORDER BY L.PDATE, L.PFROM";
+
+    String REPORT_TEACHER_MINUTES = "SELECT L.TEACHER, H.ID AS SCHOOL_ID, H.HRATE AS SCHOOL_HRATE, COUNT(L.ID) AS LESSON_COUNT, SUM(L.DURATION_MINUTES) AS MINUTES FROM LESSONS L INNER JOIN STUDENTS S ON S.ID = L.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL WHERE L.TEACHER >= :minTeacher AND L.TEACHER <= :maxTeacher AND L.PDATE >= :from AND L.PDATE <= :to GROUP BY L.TEACHER, H.ID, H.HRATE";
+
+    String REPORT_INVOICE_LINES = "SELECT U.ID AS TEACHER_ID, U.FIRSTNAME AS TEACHER_FIRSTNAME, U.LASTNAME AS TEACHER_LASTNAME, U.EMAIL AS TEACHER_EMAIL, H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.HRATE AS SCHOOL_HRATE, S.ID AS STUDENT_ID, S.NAME AS STUDENT_NAME, COUNT(L.ID) AS LESSON_COUNT, SUM(L.DURATION_MINUTES) AS MINUTES FROM LESSONS L INNER JOIN STUDENTS S ON S.ID = L.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL INNER JOIN USERS U ON U.ID = L.TEACHER WHERE L.TEACHER = :teacher AND L.PDATE >= :from AND L.PDATE <= :to GROUP BY U.ID, U.FIRSTNAME, U.LASTNAME, U.EMAIL, H.ID, H.NAME, H.HRATE, S.ID, S.NAME ORDER BY H.NAME, H.ID, S.NAME, S.ID";
+
+    String REPORT_INVOICE_LINES_ALL = "SELECT U.ID AS TEACHER_ID, U.FIRSTNAME AS TEACHER_FIRSTNAME, U.LASTNAME AS TEACHER_LASTNAME, U.EMAIL AS TEACHER_EMAIL, H.ID AS SCHOOL_ID, H.NAME AS SCHOOL_NAME, H.HRATE AS SCHOOL_HRATE, S.ID AS STUDENT_ID, S.NAME AS STUDENT_NAME, COUNT(L.ID) AS LESSON_COUNT, SUM(L.DURATION_MINUTES) AS MINUTES FROM LESSONS L INNER JOIN STUDENTS S ON S.ID = L.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL INNER JOIN USERS U ON U.ID = L.TEACHER WHERE L.PDATE >= :from AND L.PDATE <= :to GROUP BY U.ID, U.FIRSTNAME, U.LASTNAME, U.EMAIL, H.ID, H.NAME, H.HRATE, S.ID, S.NAME ORDER BY U.ID, H.NAME, H.ID, S.NAME, S.ID";
 
     // Security checks
 
@@ -81,7 +157,17 @@ public interface SQL {
 
     String TEACHER_FOR_STUDENT = "SELECT H.TEACHER FROM STUDENTS S INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL AND H.TEACHER = :teacher WHERE S.ID = :id";
 
-    String TEACHER_FOR_LESSON = "SELECT H.TEACHER FROM LESSONS L INNER JOIN STUDENTS S ON S.ID = L.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL AND H.TEACHER = :teacher WHERE L.ID = :id";
+    String TEACHER_FOR_LESSON = "SELECT TEACHER FROM LESSONS WHERE TEACHER = :teacher AND ID = :id";
+
+    String SCHOOL_IDS_FOR_TEACHER = "SELECT ID FROM SCHOOLS WHERE TEACHER = :teacher";
+
+    String STUDENT_IDS_FOR_TEACHER = "SELECT S.ID FROM STUDENTS S INNER JOIN SCHOOLS H ON S.SCHOOL = H.ID WHERE H.TEACHER = :teacher";
+
+    String LESSON_IDS_FOR_TEACHER = "SELECT ID FROM LESSONS WHERE TEACHER = :teacher";
+
+    String STUDENT_IDS_FOR_TEACHER_AMONG = "SELECT S.ID FROM STUDENTS S INNER JOIN SCHOOLS H ON S.SCHOOL = H.ID WHERE H.TEACHER = :teacher AND S.ID IN (:ids)";
+
+    String LESSON_IDS_FOR_TEACHER_AMONG = "SELECT ID FROM LESSONS WHERE TEACHER = :teacher AND ID IN (:ids)";
 
     // Tokens
 
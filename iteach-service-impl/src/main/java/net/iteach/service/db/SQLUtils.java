@@ -6,8 +6,10 @@ import org.joda.time.*;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Time;
 import java.sql.Timestamp;
 
 public final class SQLUtils {
@@ -18,25 +20,54 @@ public final class SQLUtils {
     private static final BigDecimal MINUTES_IN_HOUR = BigDecimal.valueOf(60);
 
     public static BigDecimal getHours(LocalTime from, LocalTime to) {
-        Period duration = new Period(from, to);
-        BigDecimal minutes = new BigDecimal(duration.toStandardMinutes().getMinutes());
-        return minutes.divide(MINUTES_IN_HOUR, 2, RoundingMode.HALF_UP);
+        return getHours(getMinutes(from, to));
     }
 
-    public static String dateToDB(LocalDate date) {
-        return date.toString();
+    public static BigDecimal getHours(int minutes) {
+        if (minutes == 0) {
+            return BigDecimal.ZERO;
+        } else {
+            return new BigDecimal(minutes).divide(MINUTES_IN_HOUR, 2, RoundingMode.HALF_UP);
+        }
+    }
+
+    /**
+     * Number of minutes between two times of the same day. Lessons are planned at the
+     * minute level, so this is plain integer arithmetic on the minutes of the day.
+     */
+    public static int getMinutes(LocalTime from, LocalTime to) {
+        return getMinuteOfDay(to) - getMinuteOfDay(from);
+    }
+
+    private static int getMinuteOfDay(LocalTime time) {
+        return time.getHourOfDay() * 60 + time.getMinuteOfHour();
+    }
+
+    public static Date dateToDB(LocalDate date) {
+        return date != null ? Date.valueOf(date.toString()) : null;
+    }
+
+    public static LocalDate dateFromDB(Date date) {
+        return date != null ? LocalDate.fromDateFields(date) : null;
+    }
+
+    /**
+     * Lessons are planned at the minute level: seconds are not stored.
+     */
+    public static Time timeToDB(LocalTime time) {
+        return time != null ? Time.valueOf(time.toString("HH:mm:00")) : null;
     }
 
-    public static LocalDate dateFromDB(String str) {
-        return LocalDate.parse(str);
+    public static LocalTime timeFromDB(Time time) {
+        return time != null ? LocalTime.fromDateFields(time) : null;
     }
 
-    public static String timeToDB(LocalTime time) {
-        return time.toString("HH:mm");
+    public static LocalDate getLocalDate(ResultSet rs, String columnName) throws SQLException {
+        return dateFromDB(rs.getDate(columnName));
     }
 
-    public static LocalTime timeFromDB(String str) {
-        return LocalTime.parse(str);
+    public static LocalTime getLocalTime(ResultSet rs, String columnName) throws SQLException {
+        return timeFromDB(rs.getTime(columnName));
     }
 
     public static DateTime now() {
@@ -6,6 +6,7 @@ import net.iteach.core.model.CoordinateType;
 import net.iteach.core.model.Coordinates;
 import net.iteach.service.dao.CoordinateDao;
 import net.iteach.service.dao.model.TCoordinate;
+import net.iteach.service.memo.Memoized;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -40,6 +41,7 @@ public class CoordinatesServiceImpl implements CoordinatesService {
 
     @Override
     @Transactional(readOnly = true)
+    @Memoized
     public Coordinates getCoordinates(CoordinateEntity entity, int id) {
         List<TCoordinate> tCoordinates = coordinateDao.getCoordinates(entity, id);
         Coordinates coordinates = Coordinates.create();
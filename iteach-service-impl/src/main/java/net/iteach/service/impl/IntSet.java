@@ -0,0 +1,95 @@
+package net.iteach.service.impl;
+
+/**
+ * Open addressing set of strictly positive <code>int</code> values, which
+ * does not box them. <code>0</code> marks the free slots.
+ */
+class IntSet {
+
+    private int[] values = new int[16];
+    private int size;
+
+    boolean contains(int value) {
+        if (value <= 0) {
+            return false;
+        }
+        int mask = values.length - 1;
+        int slot = hash(value) & mask;
+        while (values[slot] != 0) {
+            if (values[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    void add(int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Only strictly positive values can be added: " + value);
+        }
+        if (2 * (size + 1) > values.length) {
+            grow();
+        }
+        int mask = values.length - 1;
+        int slot = hash(value) & mask;
+        while (values[slot] != 0) {
+            if (values[slot] == value) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        values[slot] = value;
+        size++;
+    }
+
+    void remove(int value) {
+        if (value <= 0) {
+            return;
+        }
+        int mask = values.length - 1;
+        int slot = hash(value) & mask;
+        while (values[slot] != value) {
+            if (values[slot] == 0) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        values[slot] = 0;
+        size--;
+        // Moves back the following values of the cluster which could
+        // not be found any longer through the freed slot
+        int free = slot;
+        slot = (slot + 1) & mask;
+        while (values[slot] != 0) {
+            int home = hash(values[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - free) & mask)) {
+                values[free] = values[slot];
+                values[slot] = 0;
+                free = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        int[] oldValues = values;
+        values = new int[oldValues.length * 2];
+        size = 0;
+        for (int value : oldValues) {
+            if (value != 0) {
+                add(value);
+            }
+        }
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -0,0 +1,11 @@
+package net.iteach.service.impl;
+
+import net.iteach.utils.InputException;
+
+public class LessonBatchSizeException extends InputException {
+
+    public LessonBatchSizeException(int count, int max) {
+        super(count, max);
+    }
+
+}
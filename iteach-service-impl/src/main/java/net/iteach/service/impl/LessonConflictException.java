@@ -0,0 +1,33 @@
+package net.iteach.service.impl;
+
+import net.iteach.utils.InputException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LessonConflictException extends InputException {
+
+    private final List<LessonInterval> conflicts;
+
+    public LessonConflictException(List<LessonInterval> conflicts) {
+        super(format(conflicts));
+        this.conflicts = conflicts;
+    }
+
+    public List<LessonInterval> getConflicts() {
+        return conflicts;
+    }
+
+    private static String format(List<LessonInterval> conflicts) {
+        List<String> periods = new ArrayList<>();
+        for (LessonInterval conflict : conflicts) {
+            periods.add(String.format("%s %s-%s",
+                    conflict.getFrom().toString("yyyy-MM-dd"),
+                    conflict.getFrom().toString("HH:mm"),
+                    conflict.getTo().toString("HH:mm")));
+        }
+        return StringUtils.join(periods, ", ");
+    }
+
+}
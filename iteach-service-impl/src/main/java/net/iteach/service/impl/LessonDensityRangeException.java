@@ -0,0 +1,12 @@
+package net.iteach.service.impl;
+
+import net.iteach.utils.InputException;
+import org.joda.time.LocalDate;
+
+public class LessonDensityRangeException extends InputException {
+
+    public LessonDensityRangeException(LocalDate from, LocalDate to) {
+        super(from, to);
+    }
+
+}
@@ -0,0 +1,43 @@
+package net.iteach.service.impl;
+
+import lombok.Data;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
+
+/**
+ * Period of a lesson, expressed in minutes since the epoch. The end is exclusive.
+ */
+@Data
+public class LessonInterval {
+
+    private final int id;
+    private final long start;
+    private final long end;
+
+    public static LessonInterval of(int id, LocalDate date, LocalTime from, LocalTime to) {
+        return new LessonInterval(id, toMinutes(date, from), toMinutes(date, to));
+    }
+
+    public static long toMinutes(LocalDate date, LocalTime time) {
+        return date.toLocalDateTime(time).toDateTime(DateTimeZone.UTC).getMillis() / 60000L;
+    }
+
+    public boolean overlaps(long start, long end) {
+        return this.start < end && this.end > start;
+    }
+
+    public LocalDateTime getFrom() {
+        return toDateTime(start);
+    }
+
+    public LocalDateTime getTo() {
+        return toDateTime(end);
+    }
+
+    private static LocalDateTime toDateTime(long minutes) {
+        return new LocalDateTime(minutes * 60000L, DateTimeZone.UTC);
+    }
+
+}
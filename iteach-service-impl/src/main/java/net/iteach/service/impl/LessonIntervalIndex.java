@@ -0,0 +1,255 @@
+package net.iteach.service.impl;
+
+import net.iteach.core.model.Lesson;
+import net.iteach.service.dao.LessonDao;
+import net.iteach.service.dao.LessonSeriesDao;
+import net.iteach.service.dao.model.TLessonSeries;
+import net.iteach.service.dao.model.TLesson;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory index of the lesson periods, per teacher, used to detect overlapping lessons
+ * without reading all the lessons of the teacher. The occurrences of the lesson series are
+ * indexed under their negative IDs.
+ * <p/>
+ * The periods of a teacher are loaded on first use and then kept in sync by the lesson
+ * mutations. When a transaction which has used the index of a teacher is rolled back, this
+ * index is dropped and will be loaded again from the database. It is also dropped after
+ * a transaction which has changed the lessons of the teacher if it is not the index which
+ * has been updated, since a concurrent transaction may have loaded it before the commit.
+ */
+@Component
+public class LessonIntervalIndex {
+
+    private static final Comparator<LessonInterval> START_ORDER = new Comparator<LessonInterval>() {
+        @Override
+        public int compare(LessonInterval o1, LessonInterval o2) {
+            int c = Long.compare(o1.getStart(), o2.getStart());
+            if (c != 0) {
+                return c;
+            } else {
+                return Integer.compare(o1.getId(), o2.getId());
+            }
+        }
+    };
+
+    private final LessonDao lessonDao;
+    private final LessonSeriesDao lessonSeriesDao;
+    private final ConcurrentMap<Integer, TeacherIntervals> teachers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LessonIntervalIndex(LessonDao lessonDao, LessonSeriesDao lessonSeriesDao) {
+        this.lessonDao = lessonDao;
+        this.lessonSeriesDao = lessonSeriesDao;
+    }
+
+    /**
+     * Checks that the given period does not overlap any other lesson of the teacher.
+     *
+     * @param teacherId Teacher
+     * @param lessonId  Lesson being edited, which is not checked against itself, or
+     *                  <code>0</code> for a new lesson
+     * @throws LessonConflictException If some lessons overlap the given period
+     */
+    public void checkConflicts(int teacherId, int lessonId, LocalDate date, LocalTime from, LocalTime to) {
+        List<LessonInterval> conflicts = getConflicts(teacherId, lessonId, date, from, to);
+        if (!conflicts.isEmpty()) {
+            throw new LessonConflictException(conflicts);
+        }
+    }
+
+    /**
+     * Checks several periods at once, against the other lessons of the teacher and against
+     * each other. The lessons of the given periods are not checked against their current
+     * periods, so that a selection of lessons can be moved together.
+     *
+     * @param intervals Periods of the lessons, whose ID is <code>0</code> for new lessons
+     * @throws LessonConflictException If some lessons overlap the given periods
+     */
+    public void checkConflicts(int teacherId, List<LessonInterval> intervals) {
+        TeacherIntervals teacher = getTeacher(teacherId);
+        Set<Integer> ids = new HashSet<>();
+        for (LessonInterval interval : intervals) {
+            ids.add(interval.getId());
+        }
+        Set<LessonInterval> conflicts = new LinkedHashSet<>();
+        for (LessonInterval interval : intervals) {
+            for (LessonInterval conflict : teacher.getConflicts(interval.getId(), interval.getStart(), interval.getEnd())) {
+                if (!ids.contains(conflict.getId())) {
+                    conflicts.add(conflict);
+                }
+            }
+        }
+        // Between the given periods, sorted by start
+        List<LessonInterval> sorted = new ArrayList<>(intervals);
+        Collections.sort(sorted, START_ORDER);
+        LessonInterval last = null;
+        for (LessonInterval interval : sorted) {
+            if (last != null && interval.overlaps(last.getStart(), last.getEnd())) {
+                conflicts.add(last);
+                conflicts.add(interval);
+            }
+            if (last == null || interval.getEnd() > last.getEnd()) {
+                last = interval;
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            throw new LessonConflictException(new ArrayList<>(conflicts));
+        }
+    }
+
+    /**
+     * Gets the lessons of the teacher which overlap the given period, ordered by start.
+     */
+    public List<LessonInterval> getConflicts(int teacherId, int lessonId, LocalDate date, LocalTime from, LocalTime to) {
+        return getTeacher(teacherId).getConflicts(
+                lessonId,
+                LessonInterval.toMinutes(date, from),
+                LessonInterval.toMinutes(date, to));
+    }
+
+    /**
+     * Records the period of a new or updated lesson
+     */
+    public void put(int teacherId, int lessonId, LocalDate date, LocalTime from, LocalTime to) {
+        TeacherIntervals intervals = teachers.get(teacherId);
+        registerChange(teacherId, intervals);
+        if (intervals != null) {
+            intervals.put(LessonInterval.of(lessonId, date, from, to));
+        }
+    }
+
+    /**
+     * Forgets a deleted lesson
+     */
+    public void remove(int teacherId, int lessonId) {
+        TeacherIntervals intervals = teachers.get(teacherId);
+        registerChange(teacherId, intervals);
+        if (intervals != null) {
+            intervals.remove(lessonId);
+        }
+    }
+
+    /**
+     * Drops the index of a teacher, when lessons are changed in bulk (deletion of
+     * a school, of a student, import, lesson series...).
+     */
+    public void evict(int teacherId) {
+        teachers.remove(teacherId);
+        registerChange(teacherId, null);
+    }
+
+    protected TeacherIntervals getTeacher(int teacherId) {
+        registerRollback(teacherId);
+        TeacherIntervals intervals = teachers.get(teacherId);
+        if (intervals == null) {
+            intervals = new TeacherIntervals();
+            for (TLesson lesson : lessonDao.findLessonRangesForTeacher(teacherId)) {
+                intervals.put(LessonInterval.of(lesson.getId(), lesson.getDate(), lesson.getFrom(), lesson.getTo()));
+            }
+            for (TLessonSeries series : lessonSeriesDao.findAllSeriesForTeacher(teacherId)) {
+                for (Lesson occurrence : series.getOccurrences(series.getStartDate(), series.getEndDate())) {
+                    intervals.put(LessonInterval.of(occurrence.getId(), occurrence.getDate(), occurrence.getFrom(), occurrence.getTo()));
+                }
+            }
+            TeacherIntervals existing = teachers.putIfAbsent(teacherId, intervals);
+            if (existing != null) {
+                intervals = existing;
+            }
+        }
+        return intervals;
+    }
+
+    private void registerRollback(final int teacherId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        teachers.remove(teacherId);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * After the transaction which changes the lessons of a teacher, drops the index of the
+     * teacher unless it is still the one which has been updated
+     *
+     * @param updated Index which has been updated, <code>null</code> if none was loaded
+     */
+    private void registerChange(final int teacherId, final TeacherIntervals updated) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED || teachers.get(teacherId) != updated) {
+                        teachers.remove(teacherId);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Periods of one teacher, sorted by start. Since all the periods are shorter than
+     * the longest one, the periods overlapping a given range can only start in a window
+     * of this length before the range, which makes the search logarithmic in the number
+     * of lessons.
+     */
+    protected static class TeacherIntervals {
+
+        private final NavigableSet<LessonInterval> byStart = new TreeSet<>(START_ORDER);
+        private final Map<Integer, LessonInterval> byId = new HashMap<>();
+        private long maxDuration = 0;
+
+        public synchronized List<LessonInterval> getConflicts(int lessonId, long start, long end) {
+            List<LessonInterval> conflicts = new ArrayList<>();
+            NavigableSet<LessonInterval> candidates = byStart.subSet(
+                    new LessonInterval(Integer.MAX_VALUE, start - maxDuration, start - maxDuration), false,
+                    new LessonInterval(Integer.MIN_VALUE, end, end), false);
+            for (LessonInterval candidate : candidates) {
+                if (candidate.getId() != lessonId && candidate.overlaps(start, end)) {
+                    conflicts.add(candidate);
+                }
+            }
+            return conflicts;
+        }
+
+        public synchronized void put(LessonInterval interval) {
+            remove(interval.getId());
+            byStart.add(interval);
+            byId.put(interval.getId(), interval);
+            maxDuration = Math.max(maxDuration, interval.getEnd() - interval.getStart());
+        }
+
+        public synchronized void remove(int lessonId) {
+            LessonInterval interval = byId.remove(lessonId);
+            if (interval != null) {
+                byStart.remove(interval);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,11 @@
+package net.iteach.service.impl;
+
+import net.sf.jstring.support.CoreException;
+
+public class LessonSeriesLimitException extends CoreException {
+
+    public LessonSeriesLimitException(int max) {
+        super(max);
+    }
+
+}
@@ -0,0 +1,12 @@
+package net.iteach.service.impl;
+
+import net.iteach.utils.InputException;
+import org.joda.time.LocalDate;
+
+public class LessonSeriesRangeException extends InputException {
+
+    public LessonSeriesRangeException(LocalDate from, LocalDate until) {
+        super(from, until);
+    }
+
+}
@@ -0,0 +1,312 @@
+package net.iteach.service.impl;
+
+import net.iteach.service.dao.LessonDao;
+import net.iteach.service.dao.SchoolDao;
+import net.iteach.service.dao.StudentDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of the schools, students and lessons owned by each teacher, used to
+ * authorise the accesses without querying the database.
+ * <p/>
+ * The IDs of a teacher are loaded on first use and then kept in sync by the creations
+ * and deletions. Bulk changes (deletion of a school or of a student, change of school
+ * for a student, import, deletion of the account) drop the index of the teacher. An ID
+ * which is not found is checked against the database before the access is denied, so
+ * that an item created by a concurrent transaction while the index was being loaded is
+ * still accepted. When a transaction which has used the index of a teacher is rolled
+ * back, this index is dropped and will be loaded again from the database. An index
+ * dropped by a transaction is dropped again after its completion, since a concurrent
+ * transaction may have loaded it meanwhile without the uncommitted changes.
+ * <p/>
+ * The teachers used by a transaction are tracked by a single synchronization, bound to
+ * the transaction on first use.
+ */
+@Component
+public class OwnershipIndex {
+
+    private final SchoolDao schoolDao;
+    private final StudentDao studentDao;
+    private final LessonDao lessonDao;
+    private final ConcurrentMap<Integer, TeacherOwnership> teachers = new ConcurrentHashMap<>();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    @Autowired
+    public OwnershipIndex(SchoolDao schoolDao, StudentDao studentDao, LessonDao lessonDao) {
+        this.schoolDao = schoolDao;
+        this.studentDao = studentDao;
+        this.lessonDao = lessonDao;
+    }
+
+    public boolean ownsSchool(int teacherId, int schoolId) {
+        TeacherOwnership ownership = getTeacher(teacherId);
+        if (ownership.schools.contains(schoolId)) {
+            return true;
+        }
+        missCount.incrementAndGet();
+        if (schoolDao.doesSchoolBelongToTeacher(schoolId, teacherId)) {
+            ownership.schools.add(schoolId);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public boolean ownsStudent(int teacherId, int studentId) {
+        TeacherOwnership ownership = getTeacher(teacherId);
+        if (ownership.students.contains(studentId)) {
+            return true;
+        }
+        missCount.incrementAndGet();
+        if (studentDao.doesStudentBelongToTeacher(studentId, teacherId)) {
+            ownership.students.add(studentId);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public boolean ownsLesson(int teacherId, int lessonId) {
+        TeacherOwnership ownership = getTeacher(teacherId);
+        if (ownership.lessons.contains(lessonId)) {
+            return true;
+        }
+        missCount.incrementAndGet();
+        if (lessonDao.doesLessonBelongToTeacher(lessonId, teacherId)) {
+            ownership.lessons.add(lessonId);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Same as {@link #ownsStudent(int, int)} for several students, those which are not
+     * found in the index being checked by a single query
+     */
+    public boolean ownsStudents(int teacherId, Collection<Integer> studentIds) {
+        TeacherOwnership ownership = getTeacher(teacherId);
+        Set<Integer> missing = new HashSet<>();
+        for (int id : studentIds) {
+            if (!ownership.students.contains(id)) {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return true;
+        }
+        missCount.incrementAndGet();
+        List<Integer> owned = studentDao.findStudentIdsByTeacher(teacherId, missing);
+        for (int id : owned) {
+            ownership.students.add(id);
+        }
+        return owned.size() == missing.size();
+    }
+
+    /**
+     * Same as {@link #ownsLesson(int, int)} for several lessons, those which are not
+     * found in the index being checked by a single query
+     */
+    public boolean ownsLessons(int teacherId, Collection<Integer> lessonIds) {
+        TeacherOwnership ownership = getTeacher(teacherId);
+        Set<Integer> missing = new HashSet<>();
+        for (int id : lessonIds) {
+            if (!ownership.lessons.contains(id)) {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return true;
+        }
+        missCount.incrementAndGet();
+        List<Integer> owned = lessonDao.findLessonIdsByTeacher(teacherId, missing);
+        for (int id : owned) {
+            ownership.lessons.add(id);
+        }
+        return owned.size() == missing.size();
+    }
+
+    public void addSchool(int teacherId, int schoolId) {
+        TeacherOwnership ownership = teachers.get(teacherId);
+        if (ownership != null) {
+            registerUse(teacherId);
+            ownership.schools.add(schoolId);
+        }
+    }
+
+    public void addStudent(int teacherId, int studentId) {
+        TeacherOwnership ownership = teachers.get(teacherId);
+        if (ownership != null) {
+            registerUse(teacherId);
+            ownership.students.add(studentId);
+        }
+    }
+
+    public void addLesson(int teacherId, int lessonId) {
+        TeacherOwnership ownership = teachers.get(teacherId);
+        if (ownership != null) {
+            registerUse(teacherId);
+            ownership.lessons.add(lessonId);
+        }
+    }
+
+    public void removeLesson(int teacherId, int lessonId) {
+        TeacherOwnership ownership = teachers.get(teacherId);
+        if (ownership != null) {
+            registerUse(teacherId);
+            ownership.lessons.remove(lessonId);
+        }
+    }
+
+    /**
+     * Drops the index of a teacher, when its items are changed in bulk
+     */
+    public void evict(int teacherId) {
+        teachers.remove(teacherId);
+        registerEviction(teacherId);
+    }
+
+    /**
+     * Number of teachers whose index has been loaded from the database
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * Number of checks which had to query the database
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    protected TeacherOwnership getTeacher(int teacherId) {
+        registerUse(teacherId);
+        TeacherOwnership ownership = teachers.get(teacherId);
+        if (ownership == null) {
+            ownership = new TeacherOwnership();
+            for (int id : schoolDao.findSchoolIdsByTeacher(teacherId)) {
+                ownership.schools.add(id);
+            }
+            for (int id : studentDao.findStudentIdsByTeacher(teacherId)) {
+                ownership.students.add(id);
+            }
+            for (int id : lessonDao.findLessonIdsByTeacher(teacherId)) {
+                ownership.lessons.add(id);
+            }
+            loadCount.incrementAndGet();
+            TeacherOwnership existing = teachers.putIfAbsent(teacherId, ownership);
+            if (existing != null) {
+                ownership = existing;
+            }
+        }
+        return ownership;
+    }
+
+    private void registerUse(int teacherId) {
+        TransactionTeachers transactionTeachers = getTransactionTeachers();
+        if (transactionTeachers != null) {
+            transactionTeachers.used.add(teacherId);
+        }
+    }
+
+    private void registerEviction(int teacherId) {
+        TransactionTeachers transactionTeachers = getTransactionTeachers();
+        if (transactionTeachers != null) {
+            transactionTeachers.evicted.add(teacherId);
+        }
+    }
+
+    /**
+     * Teachers of the current transaction, registered on first use, or <code>null</code>
+     * outside of any transaction
+     */
+    private TransactionTeachers getTransactionTeachers() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        TransactionTeachers transactionTeachers = (TransactionTeachers) TransactionSynchronizationManager.getResource(this);
+        if (transactionTeachers == null) {
+            transactionTeachers = new TransactionTeachers();
+            TransactionSynchronizationManager.bindResource(this, transactionTeachers);
+            TransactionSynchronizationManager.registerSynchronization(transactionTeachers);
+        }
+        return transactionTeachers;
+    }
+
+    /**
+     * Teachers whose index has been used or dropped by a transaction
+     */
+    private class TransactionTeachers extends TransactionSynchronizationAdapter {
+
+        private final Set<Integer> used = new HashSet<>();
+        private final Set<Integer> evicted = new HashSet<>();
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(OwnershipIndex.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(OwnershipIndex.this, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(OwnershipIndex.this);
+            // Index loaded by a concurrent transaction before the commit of the changes
+            for (int teacherId : evicted) {
+                teachers.remove(teacherId);
+            }
+            if (status != STATUS_COMMITTED) {
+                for (int teacherId : used) {
+                    teachers.remove(teacherId);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * IDs owned by one teacher
+     */
+    protected static class TeacherOwnership {
+
+        private final SynchronizedIntSet schools = new SynchronizedIntSet();
+        private final SynchronizedIntSet students = new SynchronizedIntSet();
+        private final SynchronizedIntSet lessons = new SynchronizedIntSet();
+
+    }
+
+    private static class SynchronizedIntSet {
+
+        private final IntSet set = new IntSet();
+
+        public synchronized boolean contains(int value) {
+            return set.contains(value);
+        }
+
+        public synchronized void add(int value) {
+            set.add(value);
+        }
+
+        public synchronized void remove(int value) {
+            set.remove(value);
+        }
+
+    }
+
+}
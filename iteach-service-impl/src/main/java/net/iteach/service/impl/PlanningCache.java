@@ -0,0 +1,263 @@
+package net.iteach.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import lombok.Data;
+import net.iteach.core.model.Lesson;
+import net.iteach.service.dao.LessonDao;
+import net.iteach.service.dao.LessonSeriesDao;
+import net.iteach.service.dao.model.TLessonSeries;
+import org.joda.time.DateTimeConstants;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the planning lessons, per teacher and per ISO week. A range of the planning
+ * is assembled from the weeks it covers.
+ * <p/>
+ * Lesson mutations must evict the weeks they affect, and changes to the students or
+ * schools of a teacher must evict all of its weeks, since the lessons embed their
+ * student and school summaries. Evictions are done immediately and again at the end
+ * of the current transaction, so that a week read by a concurrent request before the
+ * commit is not kept. Evictions also change the {@link TeacherGenerations generation}
+ * of the teacher, and a week is cached only if this generation has not changed while
+ * it was being loaded, since an eviction does not stop a load which is still running.
+ * <p/>
+ * The occurrences of the lesson series are part of the weeks, so any change to a series
+ * must evict all the weeks of its teacher.
+ * <p/>
+ * Weeks can also be loaded ahead of time by {@link #prefetch(int, LocalDateTime, LocalDateTime)}. The
+ * cache counts how many of those prefetched weeks are then actually read.
+ */
+@Component
+public class PlanningCache {
+
+    /**
+     * Maximum number of lessons kept in the cache
+     */
+    public static final long MAX_LESSONS = 100000L;
+
+    private static final LocalTime LAST_MINUTE = new LocalTime(23, 59);
+
+    private final LessonDao lessonDao;
+    private final LessonSeriesDao lessonSeriesDao;
+    private final TeacherGenerations teacherGenerations;
+    private final Set<WeekKey> prefetched = Collections.newSetFromMap(new ConcurrentHashMap<WeekKey, Boolean>());
+    private final AtomicLong prefetchCount = new AtomicLong();
+    private final AtomicLong prefetchUsedCount = new AtomicLong();
+    private final Cache<WeekKey, List<Lesson>> cache = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_LESSONS)
+            .weigher(new Weigher<WeekKey, List<Lesson>>() {
+                @Override
+                public int weigh(WeekKey key, List<Lesson> lessons) {
+                    return 1 + lessons.size();
+                }
+            })
+            .removalListener(new RemovalListener<WeekKey, List<Lesson>>() {
+                @Override
+                public void onRemoval(RemovalNotification<WeekKey, List<Lesson>> notification) {
+                    if (notification.getCause() != RemovalCause.REPLACED) {
+                        prefetched.remove(notification.getKey());
+                    }
+                }
+            })
+            .recordStats()
+            .build();
+
+    @Autowired
+    public PlanningCache(LessonDao lessonDao, LessonSeriesDao lessonSeriesDao, TeacherGenerations teacherGenerations) {
+        this.lessonDao = lessonDao;
+        this.lessonSeriesDao = lessonSeriesDao;
+        this.teacherGenerations = teacherGenerations;
+    }
+
+    /**
+     * Gets the lessons of a teacher which are fully included in the given range,
+     * ordered by date and time.
+     */
+    public List<Lesson> getLessons(int teacherId, LocalDateTime from, LocalDateTime to) {
+        List<Lesson> lessons = new ArrayList<>();
+        LocalDate monday = getMonday(from.toLocalDate());
+        while (!monday.isAfter(to.toLocalDate())) {
+            for (Lesson lesson : getWeek(teacherId, monday)) {
+                LocalDateTime start = lesson.getDate().toLocalDateTime(lesson.getFrom());
+                LocalDateTime end = lesson.getDate().toLocalDateTime(lesson.getTo());
+                if (!start.isBefore(from) && !end.isAfter(to)) {
+                    lessons.add(lesson);
+                }
+            }
+            monday = monday.plusWeeks(1);
+        }
+        return lessons;
+    }
+
+    /**
+     * Loads the weeks covering the given range which are not cached yet. Weeks changed
+     * while they were being loaded are not kept.
+     */
+    public void prefetch(int teacherId, LocalDateTime from, LocalDateTime to) {
+        LocalDate monday = getMonday(from.toLocalDate());
+        while (!monday.isAfter(to.toLocalDate())) {
+            WeekKey key = new WeekKey(teacherId, monday);
+            if (!cache.asMap().containsKey(key)) {
+                long generation = teacherGenerations.get(teacherId);
+                List<Lesson> lessons = loadWeek(teacherId, monday);
+                prefetched.add(key);
+                if (cacheIfUnchanged(key, generation, lessons)) {
+                    prefetchCount.incrementAndGet();
+                } else {
+                    prefetched.remove(key);
+                }
+            }
+            monday = monday.plusWeeks(1);
+        }
+    }
+
+    /**
+     * Evicts the week which contains the given date
+     */
+    public void evict(int teacherId, LocalDate date) {
+        final WeekKey key = new WeekKey(teacherId, getMonday(date));
+        teacherGenerations.bump(teacherId);
+        cache.invalidate(key);
+        afterTransaction(new Runnable() {
+            @Override
+            public void run() {
+                cache.invalidate(key);
+            }
+        });
+    }
+
+    /**
+     * Evicts all the weeks of a teacher
+     */
+    public void evictTeacher(final int teacherId) {
+        teacherGenerations.bump(teacherId);
+        evictAll(teacherId);
+        afterTransaction(new Runnable() {
+            @Override
+            public void run() {
+                evictAll(teacherId);
+            }
+        });
+    }
+
+    /**
+     * Hit & miss counters
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Number of weeks loaded by {@link #prefetch(int, LocalDateTime, LocalDateTime)}
+     */
+    public long getPrefetchCount() {
+        return prefetchCount.get();
+    }
+
+    /**
+     * Number of prefetched weeks which have been read afterwards
+     */
+    public long getPrefetchUsedCount() {
+        return prefetchUsedCount.get();
+    }
+
+    protected List<Lesson> getWeek(int teacherId, LocalDate monday) {
+        WeekKey key = new WeekKey(teacherId, monday);
+        List<Lesson> lessons = cache.getIfPresent(key);
+        if (lessons == null) {
+            long generation = teacherGenerations.get(teacherId);
+            lessons = loadWeek(teacherId, monday);
+            cacheIfUnchanged(key, generation, lessons);
+        }
+        if (prefetched.remove(key)) {
+            prefetchUsedCount.incrementAndGet();
+        }
+        return lessons;
+    }
+
+    /**
+     * Caches a loaded week, unless the data of the teacher has changed since the given
+     * generation. The generation is checked again once the week is cached, since an
+     * eviction may have run in between.
+     */
+    private boolean cacheIfUnchanged(WeekKey key, long generation, List<Lesson> lessons) {
+        if (generation != teacherGenerations.get(key.getTeacher())) {
+            return false;
+        }
+        if (cache.asMap().putIfAbsent(key, lessons) != null) {
+            return false;
+        }
+        if (generation != teacherGenerations.get(key.getTeacher())) {
+            cache.asMap().remove(key, lessons);
+            return false;
+        }
+        return true;
+    }
+
+    private List<Lesson> loadWeek(int teacherId, LocalDate monday) {
+        LocalDate sunday = monday.plusDays(6);
+        List<Lesson> lessons = lessonDao.findLessonsWithStudentsForTeacher(
+                teacherId,
+                monday.toLocalDateTime(LocalTime.MIDNIGHT),
+                sunday.toLocalDateTime(LAST_MINUTE));
+        // Occurrences of the series, expanded for this week only
+        List<TLessonSeries> series = lessonSeriesDao.findSeriesForTeacher(teacherId, monday, sunday);
+        if (!series.isEmpty()) {
+            lessons = new ArrayList<>(lessons);
+            lessons.addAll(TLessonSeries.getOccurrences(series, monday, sunday));
+            Collections.sort(lessons, TLessonSeries.LESSON_ORDER);
+        }
+        return Collections.unmodifiableList(lessons);
+    }
+
+    private void evictAll(int teacherId) {
+        Iterator<WeekKey> keys = cache.asMap().keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().getTeacher() == teacherId) {
+                keys.remove();
+            }
+        }
+    }
+
+    private void afterTransaction(final Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private static LocalDate getMonday(LocalDate date) {
+        return date.withDayOfWeek(DateTimeConstants.MONDAY);
+    }
+
+    @Data
+    private static class WeekKey {
+        private final int teacher;
+        private final LocalDate monday;
+    }
+
+}
@@ -0,0 +1,108 @@
+package net.iteach.service.impl;
+
+import net.iteach.core.model.LessonRange;
+import org.joda.time.Days;
+import org.joda.time.LocalDateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads in the background the ranges before and after a planning range which has just
+ * been displayed, since the next action of the user is very likely to navigate to one of them.
+ * <p/>
+ * Prefetching is only an optimisation: the executor has no queue and a prefetch is dropped
+ * when all its threads are busy.
+ */
+@Component
+public class PlanningPrefetcher {
+
+    /**
+     * Number of threads used for the prefetching
+     */
+    public static final int THREADS = 2;
+
+    private final Logger logger = LoggerFactory.getLogger(PlanningPrefetcher.class);
+
+    private final PlanningCache planningCache;
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            THREADS, THREADS,
+            60L, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(),
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "planning-prefetch-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            },
+            new RejectedExecutionHandler() {
+                @Override
+                public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                    droppedCount.incrementAndGet();
+                }
+            });
+
+    @Autowired
+    public PlanningPrefetcher(PlanningCache planningCache) {
+        this.planningCache = planningCache;
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedules the loading of the ranges which precede and follow the given one,
+     * with the same number of days.
+     */
+    public void prefetch(final int teacherId, LessonRange range) {
+        final LocalDateTime from = range.getFrom();
+        final LocalDateTime to = range.getTo();
+        final int days = Days.daysBetween(from.toLocalDate(), to.toLocalDate()).getDays() + 1;
+        submittedCount.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    planningCache.prefetch(teacherId, from.minusDays(days), from.minusDays(1));
+                    planningCache.prefetch(teacherId, to.plusDays(1), to.plusDays(days));
+                } catch (RuntimeException ex) {
+                    logger.warn("[planning-prefetch] Cannot prefetch the planning of teacher {}: {}", teacherId, ex.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Number of prefetches requested
+     */
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    /**
+     * Number of prefetches dropped because the executor was busy
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,51 @@
+package net.iteach.service.impl;
+
+import net.iteach.service.dao.StudentTotalDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the per-student totals of minutes from the lessons, in case they
+ * would have drifted from the lessons.
+ */
+@Component
+public class StudentTotalReconciliationTask {
+
+    private final Logger logger = LoggerFactory.getLogger(StudentTotalReconciliationTask.class);
+
+    private final StudentTotalDao studentTotalDao;
+    private final TeacherGenerations teacherGenerations;
+
+    @Autowired
+    public StudentTotalReconciliationTask(StudentTotalDao studentTotalDao, TeacherGenerations teacherGenerations) {
+        this.studentTotalDao = studentTotalDao;
+        this.teacherGenerations = teacherGenerations;
+    }
+
+    /**
+     * Every night at 3 AM
+     */
+    @Scheduled(cron = "0 0 3 * * *")
+    public void reconcileTrigger() {
+        reconcile();
+    }
+
+    /**
+     * Rebuilds the totals and returns the number of fixed ones
+     */
+    public int reconcile() {
+        logger.info("[student-totals] Reconciliation triggering");
+        int count = studentTotalDao.reconcile();
+        if (count > 0) {
+            logger.warn("[student-totals] {} student totals have been fixed", count);
+            teacherGenerations.bumpAll();
+        } else {
+            logger.info("[student-totals] All student totals are correct");
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,74 @@
+package net.iteach.service.impl;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of the data of each teacher, which changes whenever its schools, students or
+ * lessons are changed. Values computed from this data can be cached with the generation
+ * in their key: once the data changes, they are not reachable any longer and no explicit
+ * eviction is needed.
+ * <p/>
+ * A change increments the generation immediately and again at the end of the current
+ * transaction, so that a value computed by a concurrent request before the commit is
+ * not reachable either.
+ */
+@Component
+public class TeacherGenerations {
+
+    private final AtomicLong global = new AtomicLong();
+    private final ConcurrentMap<Integer, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    /**
+     * Current generation of the data of a teacher
+     */
+    public long get(int teacherId) {
+        return global.get() + getCounter(teacherId).get();
+    }
+
+    /**
+     * Changes the generation of a teacher
+     */
+    public void bump(int teacherId) {
+        final AtomicLong counter = getCounter(teacherId);
+        counter.incrementAndGet();
+        afterTransaction(counter);
+    }
+
+    /**
+     * Changes the generation of all the teachers, after a bulk update
+     */
+    public void bumpAll() {
+        global.incrementAndGet();
+        afterTransaction(global);
+    }
+
+    private AtomicLong getCounter(int teacherId) {
+        AtomicLong counter = generations.get(teacherId);
+        if (counter == null) {
+            counter = new AtomicLong();
+            AtomicLong existing = generations.putIfAbsent(teacherId, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        return counter;
+    }
+
+    private void afterTransaction(final AtomicLong counter) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    counter.incrementAndGet();
+                }
+            });
+        }
+    }
+
+}
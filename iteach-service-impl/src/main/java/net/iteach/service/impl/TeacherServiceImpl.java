@@ -9,18 +9,26 @@ import net.iteach.api.model.CommentEntity;
 import net.iteach.api.model.CoordinateEntity;
 import net.iteach.core.model.*;
 import net.iteach.core.validation.LessonFormValidation;
+import net.iteach.core.validation.LessonSeriesFormValidation;
 import net.iteach.core.validation.SchoolFormValidation;
 import net.iteach.core.validation.StudentFormValidation;
 import net.iteach.service.dao.LessonDao;
+import net.iteach.service.dao.LessonSeriesDao;
 import net.iteach.service.dao.SchoolDao;
 import net.iteach.service.dao.StudentDao;
+import net.iteach.service.dao.StudentTotalDao;
+import net.iteach.service.dao.TeacherMonthlyMinutesDao;
 import net.iteach.service.dao.model.TLesson;
+import net.iteach.service.dao.model.TLessonSeries;
 import net.iteach.service.dao.model.TSchool;
 import net.iteach.service.dao.model.TStudent;
 import net.iteach.service.db.SQLUtils;
+import net.iteach.service.memo.Memoized;
 import net.sf.jstring.LocalizableMessage;
+import org.joda.time.Days;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,19 +38,44 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.validation.Validator;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class TeacherServiceImpl extends AbstractServiceImpl implements
         TeacherService {
 
+    /**
+     * Maximum number of days for the lesson density, enough for a year with the
+     * surrounding weeks
+     */
+    public static final int MAX_DENSITY_DAYS = 400;
+
+    /**
+     * Maximum number of lessons created, moved or deleted at once
+     */
+    public static final int MAX_LESSON_BATCH = 500;
+
     private final CoordinatesService coordinatesService;
     private final CommentsService commentsService;
     private final LessonDao lessonDao;
+    private final LessonSeriesDao lessonSeriesDao;
     private final StudentDao studentDao;
     private final SchoolDao schoolDao;
+    private final StudentTotalDao studentTotalDao;
+    private final TeacherMonthlyMinutesDao teacherMonthlyMinutesDao;
+    private final LessonIntervalIndex lessonIntervalIndex;
+    private final OwnershipIndex ownershipIndex;
+    private final PlanningCache planningCache;
+    private final PlanningPrefetcher planningPrefetcher;
 
     private final Function<TSchool, SchoolSummary> schoolSummaryFunction = new Function<TSchool, SchoolSummary>() {
         @Override
@@ -69,33 +102,129 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
     };
 
     @Autowired
-    public TeacherServiceImpl(Validator validator, CoordinatesService coordinatesService, CommentsService commentsService, LessonDao lessonDao, StudentDao studentDao, SchoolDao schoolDao) {
+    public TeacherServiceImpl(Validator validator, CoordinatesService coordinatesService, CommentsService commentsService, LessonDao lessonDao, LessonSeriesDao lessonSeriesDao, StudentDao studentDao, SchoolDao schoolDao, StudentTotalDao studentTotalDao, TeacherMonthlyMinutesDao teacherMonthlyMinutesDao, LessonIntervalIndex lessonIntervalIndex, OwnershipIndex ownershipIndex, PlanningCache planningCache, PlanningPrefetcher planningPrefetcher) {
         super(validator);
         this.coordinatesService = coordinatesService;
         this.commentsService = commentsService;
         this.lessonDao = lessonDao;
+        this.lessonSeriesDao = lessonSeriesDao;
         this.studentDao = studentDao;
         this.schoolDao = schoolDao;
+        this.studentTotalDao = studentTotalDao;
+        this.teacherMonthlyMinutesDao = teacherMonthlyMinutesDao;
+        this.lessonIntervalIndex = lessonIntervalIndex;
+        this.ownershipIndex = ownershipIndex;
+        this.planningCache = planningCache;
+        this.planningPrefetcher = planningPrefetcher;
     }
 
     protected void checkTeacherForSchool(int userId, int id) {
-        if (!schoolDao.doesSchoolBelongToTeacher(id, userId)) {
+        if (!ownershipIndex.ownsSchool(userId, id)) {
             throw new AccessDeniedException(String.format("User %d cannot access school %d", userId, id));
         }
     }
 
     protected void checkTeacherForStudent(int userId, int id) {
-        if (!studentDao.doesStudentBelongToTeacher(id, userId)) {
+        if (!ownershipIndex.ownsStudent(userId, id)) {
             throw new AccessDeniedException(String.format("User %d cannot access student %d", userId, id));
         }
     }
 
     protected void checkTeacherForLesson(int userId, int id) {
-        if (!lessonDao.doesLessonBelongToTeacher(id, userId)) {
+        if (!ownershipIndex.ownsLesson(userId, id)) {
             throw new AccessDeniedException(String.format("User %d cannot access lesson %d", userId, id));
         }
     }
 
+    protected void checkTeacherForStudents(int userId, Collection<Integer> ids) {
+        if (!ownershipIndex.ownsStudents(userId, ids)) {
+            throw new AccessDeniedException(String.format("User %d cannot access students %s", userId, ids));
+        }
+    }
+
+    protected void checkTeacherForLessons(int userId, Collection<Integer> ids) {
+        if (!ownershipIndex.ownsLessons(userId, ids)) {
+            throw new AccessDeniedException(String.format("User %d cannot access lessons %s", userId, ids));
+        }
+    }
+
+    protected void checkLessonBatch(int count) {
+        if (count > MAX_LESSON_BATCH) {
+            throw new LessonBatchSizeException(count, MAX_LESSON_BATCH);
+        }
+    }
+
+    protected TLessonSeries getSeriesForTeacher(int userId, int id) {
+        TLessonSeries series = lessonSeriesDao.findSeries(userId, id);
+        if (series == null) {
+            throw new AccessDeniedException(String.format("User %d cannot access lesson series %d", userId, id));
+        }
+        return series;
+    }
+
+    /**
+     * Gets the series of an occurrence, checked against the teacher
+     */
+    protected TLessonSeries getSeriesForOccurrence(int userId, int occurrenceId) {
+        TLessonSeries series = lessonSeriesDao.findSeries(userId, TLessonSeries.getSeriesId(occurrenceId));
+        if (series == null || series.getDate(TLessonSeries.getIndex(occurrenceId)) == null) {
+            throw new AccessDeniedException(String.format("User %d cannot access lesson %d", userId, occurrenceId));
+        }
+        return series;
+    }
+
+    /**
+     * Checks a lesson against the teacher. An occurrence of a series which has been replaced
+     * by a lesson is redirected to this lesson.
+     *
+     * @return ID of the lesson, or of the occurrence if it is still part of its series
+     */
+    protected int resolveLesson(int userId, int lessonId) {
+        if (TLessonSeries.isOccurrence(lessonId)) {
+            TLessonSeries series = getSeriesForOccurrence(userId, lessonId);
+            LocalDate date = series.getDate(TLessonSeries.getIndex(lessonId));
+            if (!series.getExceptions().contains(date)) {
+                return lessonId;
+            }
+            // Replaced by a lesson, unless deleted
+            Integer replacement = lessonSeriesDao.findExceptionLesson(series.getId(), date);
+            if (replacement == null) {
+                throw new AccessDeniedException(String.format("User %d cannot access lesson %d", userId, lessonId));
+            }
+            lessonId = replacement;
+        }
+        checkTeacherForLesson(userId, lessonId);
+        return lessonId;
+    }
+
+    /**
+     * Same as {@link #resolveLesson(int, int)}, but an occurrence which is still part of its
+     * series is replaced by a lesson, before being edited, moved or commented. Its minutes
+     * are only transferred to the lesson, so the totals do not change.
+     *
+     * @return ID of the lesson
+     */
+    protected int materializeLesson(int userId, int lessonId) {
+        int id = resolveLesson(userId, lessonId);
+        if (TLessonSeries.isOccurrence(id)) {
+            TLessonSeries series = getSeriesForOccurrence(userId, id);
+            Lesson occurrence = series.getOccurrence(TLessonSeries.getIndex(id));
+            id = lessonDao.createLesson(
+                    series.getStudent().getId(),
+                    occurrence.getLocation(),
+                    occurrence.getDate(),
+                    occurrence.getFrom(),
+                    occurrence.getTo()
+            ).getValue();
+            lessonSeriesDao.addException(series.getId(), occurrence.getDate(), id);
+            lessonIntervalIndex.remove(userId, occurrence.getId());
+            lessonIntervalIndex.put(userId, id, occurrence.getDate(), occurrence.getFrom(), occurrence.getTo());
+            ownershipIndex.addLesson(userId, id);
+            planningCache.evict(userId, occurrence.getDate());
+        }
+        return id;
+    }
+
     @Override
     @Transactional(readOnly = true)
     public SchoolSummaries getSchoolsForTeacher(int teacherId) {
@@ -113,25 +242,26 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
         checkTeacherForSchool(userId, id);
 
         List<TStudent> studentsForSchool = studentDao.findStudentsBySchool(id);
-        final List<SchoolDetailsStudent> students = Lists.transform(
-                studentsForSchool,
-                new Function<TStudent, SchoolDetailsStudent>() {
-                    @Override
-                    public SchoolDetailsStudent apply(TStudent t) {
-                        return new SchoolDetailsStudent(
-                                t.getId(),
-                                t.getName(),
-                                t.getSubject(),
-                                t.isDisabled(),
-                                getStudentHours(userId, t.getId())
-                        );
-                    }
-                }
-        );
-        // Total hours
-        final AtomicReference<BigDecimal> totalHours = new AtomicReference<>(BigDecimal.ZERO);
-        for (SchoolDetailsStudent student : students) {
-            totalHours.set(totalHours.get().add(student.getHours()));
+        // Minutes for all the students at once
+        List<Integer> studentIds = new ArrayList<>();
+        for (TStudent t : studentsForSchool) {
+            studentIds.add(t.getId());
+        }
+        Map<Integer, Integer> minutes = studentTotalDao.getMinutesForStudents(studentIds);
+        // Students & total hours
+        List<SchoolDetailsStudent> students = new ArrayList<>();
+        int totalMinutes = 0;
+        for (TStudent t : studentsForSchool) {
+            Integer studentMinutes = minutes.get(t.getId());
+            int m = studentMinutes != null ? studentMinutes : 0;
+            totalMinutes += m;
+            students.add(new SchoolDetailsStudent(
+                    t.getId(),
+                    t.getName(),
+                    t.getSubject(),
+                    t.isDisabled(),
+                    SQLUtils.getHours(m)
+            ));
         }
         // Details
         TSchool school = schoolDao.getSchoolById(id);
@@ -142,7 +272,7 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
                 school.getHourlyRate(),
                 coordinatesService.getCoordinates(CoordinateEntity.SCHOOL, id),
                 students,
-                totalHours.get()
+                SQLUtils.getHours(totalMinutes)
         );
     }
 
@@ -154,6 +284,7 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
         // Coordinates
         if (id.isSuccess()) {
             coordinatesService.setCoordinates(CoordinateEntity.SCHOOL, id.getValue(), form.getCoordinates());
+            ownershipIndex.addSchool(teacherId, id.getValue());
         }
         // OK
         return id;
@@ -165,7 +296,13 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
         // Check for the associated teacher
         checkTeacherForSchool(teacherId, id);
         // Update
-        return schoolDao.deleteSchool(id);
+        Ack ack = schoolDao.deleteSchool(id);
+        // Students and lessons have been deleted as well
+        lessonIntervalIndex.evict(teacherId);
+        ownershipIndex.evict(teacherId);
+        planningCache.evictTeacher(teacherId);
+        // OK
+        return ack;
     }
 
     @Override
@@ -180,6 +317,7 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
         // Coordinates
         if (ack.isSuccess()) {
             coordinatesService.setCoordinates(CoordinateEntity.SCHOOL, id, form.getCoordinates());
+            planningCache.evictTeacher(userId);
         }
         // OK
         return ack;
@@ -233,32 +371,34 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
     @Override
     @Transactional(readOnly = true)
     public StudentSummaries getStudentsForTeacher(int teacherId) {
-        return new StudentSummaries(
-                Lists.transform(
-                        studentDao.findStudentsByTeacher(teacherId),
-                        studentSummaryFunction
-                )
-        );
+        // Schools of the teacher, loaded once
+        Map<Integer, SchoolSummary> schools = new HashMap<>();
+        for (TSchool school : schoolDao.findSchoolsByTeacher(teacherId)) {
+            schools.put(school.getId(), schoolSummaryFunction.apply(school));
+        }
+        // Students
+        List<StudentSummary> students = new ArrayList<>();
+        for (TStudent t : studentDao.findStudentsByTeacher(teacherId)) {
+            students.add(new StudentSummary(
+                    t.getId(),
+                    t.getSubject(),
+                    t.getName(),
+                    schools.get(t.getSchool()),
+                    t.isDisabled()
+            ));
+        }
+        return new StudentSummaries(students);
     }
 
     @Override
     @Transactional(readOnly = true)
     public StudentDetails getStudentForTeacher(int userId, final int id) {
-        // Check for the associated teacher
-        checkTeacherForStudent(userId, id);
-        // Total hours
-        final BigDecimal studentHours = getStudentHours(userId, id);
-        // Details
-        TStudent student = studentDao.getStudentById(id);
-        return new StudentDetails(
-                student.getId(),
-                student.getSubject(),
-                student.getName(),
-                coordinatesService.getCoordinates(CoordinateEntity.STUDENT, id),
-                getSchoolSummary(student.getSchool()),
-                studentHours,
-                student.isDisabled()
-        );
+        // Student, school, hours & coordinates, checked against the teacher
+        StudentDetails details = studentDao.findStudentDetails(userId, id);
+        if (details == null) {
+            throw new AccessDeniedException(String.format("User %d cannot access student %d", userId, id));
+        }
+        return details;
     }
 
     private SchoolSummary getSchoolSummary(int school) {
@@ -269,7 +409,7 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
     @Transactional(readOnly = true)
     public BigDecimal getStudentHours(int userId, int id) {
         checkTeacherForStudent(userId, id);
-        return lessonDao.getHoursForStudent(id);
+        return SQLUtils.getHours(studentTotalDao.getMinutes(id));
     }
 
     @Override
@@ -280,7 +420,12 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
         // Check for the associated teacher
         checkTeacherForSchool(teacherId, form.getSchool());
         // Creation
-        return studentDao.createStudent(form.getName(), form.getSchool(), form.getSubject());
+        ID id = studentDao.createStudent(form.getName(), form.getSchool(), form.getSubject());
+        if (id.isSuccess()) {
+            ownershipIndex.addStudent(teacherId, id.getValue());
+        }
+        // OK
+        return id;
     }
 
     @Override
@@ -289,7 +434,13 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
         // Check for the associated teacher
         checkTeacherForStudent(teacherId, id);
         // Deletion
-        return studentDao.deleteStudent(id);
+        Ack ack = studentDao.deleteStudent(id);
+        // Lessons have been deleted as well
+        lessonIntervalIndex.evict(teacherId);
+        ownershipIndex.evict(teacherId);
+        planningCache.evictTeacher(teacherId);
+        // OK
+        return ack;
     }
 
     @Override
@@ -298,7 +449,11 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
         // Check for the associated teacher
         checkTeacherForStudent(teacherId, id);
         // Update
-        return studentDao.disableStudent(id);
+        Ack ack = studentDao.disableStudent(id);
+        // Planning
+        planningCache.evictTeacher(teacherId);
+        // OK
+        return ack;
     }
 
     @Override
@@ -307,7 +462,11 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
         // Check for the associated teacher
         checkTeacherForStudent(teacherId, id);
         // Update
-        return studentDao.enableStudent(id);
+        Ack ack = studentDao.enableStudent(id);
+        // Planning
+        planningCache.evictTeacher(teacherId);
+        // OK
+        return ack;
     }
 
     @Override
@@ -317,6 +476,8 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
         checkTeacherForStudent(userId, id);
         // Validation
         validate(form, StudentFormValidation.class);
+        // The student can only be moved to another school of the same teacher
+        checkTeacherForSchool(userId, form.getSchool());
         // Update
         Ack ack = studentDao.updateStudent(
                 id,
@@ -327,6 +488,7 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
         // Coordinates
         if (ack.isSuccess()) {
             coordinatesService.setCoordinates(CoordinateEntity.STUDENT, id, form.getCoordinates());
+            planningCache.evictTeacher(userId);
         }
         // OK
         return ack;
@@ -390,8 +552,34 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
         final DateTimeFormatter dateFormat = DateTimeFormat.mediumDate().withLocale(locale);
         final DateTimeFormatter timeFormat = DateTimeFormat.shortTime().withLocale(locale);
         // All lessons
+        List<TLesson> tLessons = lessonDao.findLessonsForStudent(id, from, to);
+        // ... and the occurrences of the series
+        List<TLessonSeries> seriesList = lessonSeriesDao.findSeriesForStudent(id, from, to);
+        if (!seriesList.isEmpty()) {
+            tLessons = new ArrayList<>(tLessons);
+            for (TLessonSeries series : seriesList) {
+                for (Lesson occurrence : series.getOccurrences(from, to)) {
+                    tLessons.add(new TLesson(
+                            occurrence.getId(),
+                            id,
+                            occurrence.getDate(),
+                            occurrence.getFrom(),
+                            occurrence.getTo(),
+                            series.getDurationMinutes(),
+                            occurrence.getLocation()
+                    ));
+                }
+            }
+            Collections.sort(tLessons, new Comparator<TLesson>() {
+                @Override
+                public int compare(TLesson o1, TLesson o2) {
+                    int c = o1.getDate().compareTo(o2.getDate());
+                    return c != 0 ? c : o1.getFrom().compareTo(o2.getFrom());
+                }
+            });
+        }
         List<StudentLesson> lessons = Lists.transform(
-                lessonDao.findLessonsForStudent(id, from, to),
+                tLessons,
                 new Function<TLesson, StudentLesson>() {
 
                     @Override
@@ -414,16 +602,16 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
                     }
                 }
         );
-        // Total hours
-        BigDecimal hours = BigDecimal.ZERO;
-        for (StudentLesson lesson : lessons) {
-            hours = hours.add(SQLUtils.getHours(lesson.getFrom(), lesson.getTo()));
+        // Total minutes
+        int minutes = 0;
+        for (TLesson lesson : tLessons) {
+            minutes += lesson.getDurationMinutes();
         }
         // OK
         return new StudentLessons(
                 date,
                 lessons,
-                hours
+                SQLUtils.getHours(minutes)
         );
     }
 
@@ -431,26 +619,36 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
     @Transactional(readOnly = true)
     public Lessons getLessonsForTeacher(int userId, LessonRange range) {
         return new Lessons(
-                Lists.transform(lessonDao.findLessonsForTeacher(userId, range.getFrom(), range.getTo()),
-                        new Function<TLesson, Lesson>() {
-                            @Override
-                            public Lesson apply(TLesson t) {
-                                return new Lesson(
-                                        t.getId(),
-                                        getStudentSummary(t.getStudent()),
-                                        t.getDate(),
-                                        t.getFrom(),
-                                        t.getTo(),
-                                        t.getLocation()
-                                );
-                            }
-                        }
-                )
+                planningCache.getLessons(userId, range.getFrom(), range.getTo())
         );
     }
 
     @Override
     @Transactional(readOnly = true)
+    public LessonDensity getLessonDensityForTeacher(int userId, LocalDate from, LocalDate to) {
+        if (to.isBefore(from) || Days.daysBetween(from, to).getDays() >= MAX_DENSITY_DAYS) {
+            throw new LessonDensityRangeException(from, to);
+        }
+        LessonDensity density = lessonDao.getLessonDensity(userId, from, to);
+        // Occurrences of the series
+        for (TLessonSeries series : lessonSeriesDao.findSeriesForTeacher(userId, from, to)) {
+            for (Lesson occurrence : series.getOccurrences(from, to)) {
+                int day = Days.daysBetween(from, occurrence.getDate()).getDays();
+                density.getCounts()[day]++;
+                density.getMinutes()[day] += series.getDurationMinutes();
+            }
+        }
+        return density;
+    }
+
+    @Override
+    public void prefetchLessonsForTeacher(int userId, LessonRange range) {
+        planningPrefetcher.prefetch(userId, range);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @Memoized
     public StudentSummary getStudentSummary(int studentId) {
         return studentSummaryFunction.apply(studentDao.getStudentById(studentId));
     }
@@ -458,28 +656,38 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
     @Override
     @Transactional(readOnly = true)
     public LessonDetails getLessonDetails(int userId, int id) {
-        // Check for the associated teacher
-        checkTeacherForLesson(userId, id);
-        // The lesson
-        TLesson t = lessonDao.getLessonById(id);
-        // Student information
-        int studentId = t.getStudent();
-        StudentSummary studentSummary = getStudentSummary(studentId);
-        StudentSummaryWithCoordinates studentSummaryWithCoordinates = new StudentSummaryWithCoordinates(
-                studentSummary,
-                new SchoolSummaryWithCoordinates(
-                        studentSummary.getSchool(),
-                        getSchoolCoordinates(userId, studentSummary.getSchool().getId())
-                ),
-                getStudentCoordinates(userId, studentId)
-        );
+        // Occurrence of a series
+        if (TLessonSeries.isOccurrence(id)) {
+            int lessonId = resolveLesson(userId, id);
+            if (TLessonSeries.isOccurrence(lessonId)) {
+                return getOccurrenceDetails(userId, lessonId);
+            }
+            id = lessonId;
+        }
+        // Lesson, student, school & coordinates, checked against the teacher
+        LessonDetails details = lessonDao.findLessonDetails(userId, id);
+        if (details == null) {
+            throw new AccessDeniedException(String.format("User %d cannot access lesson %d", userId, id));
+        }
+        return details;
+    }
+
+    private LessonDetails getOccurrenceDetails(int userId, int occurrenceId) {
+        Lesson occurrence = getSeriesForOccurrence(userId, occurrenceId).getOccurrence(TLessonSeries.getIndex(occurrenceId));
+        StudentSummary student = occurrence.getStudent();
         return new LessonDetails(
-                id,
-                studentSummaryWithCoordinates,
-                t.getDate(),
-                t.getFrom(),
-                t.getTo(),
-                t.getLocation()
+                occurrence.getId(),
+                new StudentSummaryWithCoordinates(
+                        student,
+                        new SchoolSummaryWithCoordinates(
+                                student.getSchool(),
+                                coordinatesService.getCoordinates(CoordinateEntity.SCHOOL, student.getSchool().getId())),
+                        coordinatesService.getCoordinates(CoordinateEntity.STUDENT, student.getId())
+                ),
+                occurrence.getDate(),
+                occurrence.getFrom(),
+                occurrence.getTo(),
+                occurrence.getLocation()
         );
     }
 
@@ -490,14 +698,27 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
         validate(form, LessonFormValidation.class);
         validate(form.getTo().isAfter(form.getFrom()), new LocalizableMessage("lesson.error.timeorder"));
         checkTeacherForStudent(userId, form.getStudent());
+        // Conflicts
+        lessonIntervalIndex.checkConflicts(userId, 0, form.getDate(), form.getFrom(), form.getTo());
         // Creation
-        return lessonDao.createLesson(
+        ID id = lessonDao.createLesson(
                 form.getStudent(),
                 form.getLocation(),
                 form.getDate(),
                 form.getFrom(),
                 form.getTo()
         );
+        // Student total
+        if (id.isSuccess()) {
+            int minutes = SQLUtils.getMinutes(form.getFrom(), form.getTo());
+            studentTotalDao.addMinutes(form.getStudent(), minutes);
+            teacherMonthlyMinutesDao.addMinutes(userId, form.getStudent(), form.getDate(), minutes);
+            lessonIntervalIndex.put(userId, id.getValue(), form.getDate(), form.getFrom(), form.getTo());
+            ownershipIndex.addLesson(userId, id.getValue());
+            planningCache.evict(userId, form.getDate());
+        }
+        // OK
+        return id;
     }
 
     @Override
@@ -505,9 +726,15 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
     public Ack editLessonForTeacher(int userId, int id, LessonForm form) {
         // Validation
         validate(form, LessonFormValidation.class);
-        checkTeacherForLesson(userId, id);
+        validate(form.getTo().isAfter(form.getFrom()), new LocalizableMessage("lesson.error.timeorder"));
+        id = materializeLesson(userId, id);
+        checkTeacherForStudent(userId, form.getStudent());
+        // Conflicts
+        lessonIntervalIndex.checkConflicts(userId, id, form.getDate(), form.getFrom(), form.getTo());
+        // Previous state
+        TLesson lesson = lessonDao.getLessonById(id);
         // Update
-        return lessonDao.updateLesson(
+        Ack ack = lessonDao.updateLesson(
                 id,
                 form.getStudent(),
                 form.getLocation(),
@@ -515,27 +742,322 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
                 form.getFrom(),
                 form.getTo()
         );
+        // Student totals
+        if (ack.isSuccess()) {
+            int minutes = SQLUtils.getMinutes(form.getFrom(), form.getTo());
+            studentTotalDao.addMinutes(lesson.getStudent(), -lesson.getDurationMinutes());
+            studentTotalDao.addMinutes(form.getStudent(), minutes);
+            teacherMonthlyMinutesDao.addMinutes(userId, lesson.getStudent(), lesson.getDate(), -lesson.getDurationMinutes());
+            teacherMonthlyMinutesDao.addMinutes(userId, form.getStudent(), form.getDate(), minutes);
+            lessonIntervalIndex.put(userId, id, form.getDate(), form.getFrom(), form.getTo());
+            planningCache.evict(userId, lesson.getDate());
+            planningCache.evict(userId, form.getDate());
+        }
+        // OK
+        return ack;
     }
 
     @Override
     @Transactional
     public Ack deleteLessonForTeacher(int teacherId, int id) {
+        // Occurrence of a series
+        if (TLessonSeries.isOccurrence(id)) {
+            int lessonId = resolveLesson(teacherId, id);
+            if (TLessonSeries.isOccurrence(lessonId)) {
+                return deleteOccurrence(teacherId, lessonId);
+            }
+            id = lessonId;
+        }
         checkTeacherForLesson(teacherId, id);
-        return lessonDao.deleteLesson(id);
+        // Previous state
+        TLesson lesson = lessonDao.getLessonById(id);
+        // Deletion
+        Ack ack = lessonDao.deleteLesson(id);
+        // Student total
+        if (ack.isSuccess()) {
+            studentTotalDao.addMinutes(lesson.getStudent(), -lesson.getDurationMinutes());
+            teacherMonthlyMinutesDao.addMinutes(teacherId, lesson.getStudent(), lesson.getDate(), -lesson.getDurationMinutes());
+            lessonIntervalIndex.remove(teacherId, id);
+            ownershipIndex.removeLesson(teacherId, id);
+            planningCache.evict(teacherId, lesson.getDate());
+        }
+        // OK
+        return ack;
+    }
+
+    private Ack deleteOccurrence(int teacherId, int occurrenceId) {
+        TLessonSeries series = getSeriesForOccurrence(teacherId, occurrenceId);
+        LocalDate date = series.getDate(TLessonSeries.getIndex(occurrenceId));
+        // Excluded from the series
+        Ack ack = lessonSeriesDao.addException(series.getId(), date, null);
+        // Student total
+        if (ack.isSuccess()) {
+            int studentId = series.getStudent().getId();
+            studentTotalDao.addMinutes(studentId, -series.getDurationMinutes());
+            teacherMonthlyMinutesDao.addMinutes(teacherId, studentId, date, -series.getDurationMinutes());
+            lessonIntervalIndex.remove(teacherId, occurrenceId);
+            planningCache.evict(teacherId, date);
+        }
+        // OK
+        return ack;
+    }
+
+    @Override
+    @Transactional
+    public LessonSelection createLessonsForTeacher(int userId, LessonsForm form) {
+        checkLessonBatch(form.getLessons().size());
+        // Validation
+        Set<Integer> students = new LinkedHashSet<>();
+        List<TLesson> lessons = new ArrayList<>();
+        List<LessonInterval> intervals = new ArrayList<>();
+        for (LessonForm lessonForm : form.getLessons()) {
+            validate(lessonForm, LessonFormValidation.class);
+            validate(lessonForm.getTo().isAfter(lessonForm.getFrom()), new LocalizableMessage("lesson.error.timeorder"));
+            students.add(lessonForm.getStudent());
+            lessons.add(new TLesson(
+                    0,
+                    lessonForm.getStudent(),
+                    lessonForm.getDate(),
+                    lessonForm.getFrom(),
+                    lessonForm.getTo(),
+                    SQLUtils.getMinutes(lessonForm.getFrom(), lessonForm.getTo()),
+                    lessonForm.getLocation()));
+            intervals.add(LessonInterval.of(0, lessonForm.getDate(), lessonForm.getFrom(), lessonForm.getTo()));
+        }
+        checkTeacherForStudents(userId, students);
+        // Conflicts, with the other lessons and between the new ones
+        lessonIntervalIndex.checkConflicts(userId, intervals);
+        // Creation
+        List<Integer> ids = lessonDao.createLessons(userId, lessons);
+        // Student totals
+        MinutesDelta delta = new MinutesDelta(userId);
+        for (int i = 0; i < lessons.size(); i++) {
+            TLesson lesson = lessons.get(i);
+            int id = ids.get(i);
+            delta.add(lesson.getStudent(), lesson.getDate(), lesson.getDurationMinutes());
+            lessonIntervalIndex.put(userId, id, lesson.getDate(), lesson.getFrom(), lesson.getTo());
+            ownershipIndex.addLesson(userId, id);
+            planningCache.evict(userId, lesson.getDate());
+        }
+        delta.apply();
+        // OK
+        return new LessonSelection(ids);
+    }
+
+    @Override
+    @Transactional
+    public Ack moveLessonsForTeacher(int userId, LessonSelectionChange selectionChange) {
+        checkLessonBatch(selectionChange.getIds().size());
+        // Occurrences of series are replaced by lessons
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (int id : new LinkedHashSet<>(selectionChange.getIds())) {
+            ids.add(TLessonSeries.isOccurrence(id) ? materializeLesson(userId, id) : id);
+        }
+        checkTeacherForLessons(userId, ids);
+        // Previous state
+        List<TLesson> lessons = lessonDao.findLessonsByIds(ids);
+        // Adjust the ranges
+        Function<LessonRange, LessonRange> moveFn = moveFunction(selectionChange.getChange());
+        List<TLesson> moved = new ArrayList<>();
+        List<LessonInterval> intervals = new ArrayList<>();
+        for (TLesson lesson : lessons) {
+            LessonRange newRange = moveFn.apply(new LessonRange(
+                    lesson.getDate().toLocalDateTime(lesson.getFrom()),
+                    lesson.getDate().toLocalDateTime(lesson.getTo())));
+            validateLessonRange(newRange);
+            LocalDate date = newRange.getFrom().toLocalDate();
+            LocalTime from = newRange.getFrom().toLocalTime();
+            LocalTime to = newRange.getTo().toLocalTime();
+            moved.add(new TLesson(lesson.getId(), lesson.getStudent(), date, from, to, SQLUtils.getMinutes(from, to), lesson.getLocation()));
+            intervals.add(LessonInterval.of(lesson.getId(), date, from, to));
+        }
+        // Conflicts, the moved lessons not conflicting with their former periods
+        lessonIntervalIndex.checkConflicts(userId, intervals);
+        // Updates the periods
+        Ack ack = lessonDao.setLessonRanges(moved);
+        // Student totals, the lessons may have moved to another month
+        if (ack.isSuccess()) {
+            MinutesDelta delta = new MinutesDelta(userId);
+            for (int i = 0; i < lessons.size(); i++) {
+                TLesson lesson = lessons.get(i);
+                TLesson newLesson = moved.get(i);
+                delta.add(lesson.getStudent(), lesson.getDate(), -lesson.getDurationMinutes());
+                delta.add(newLesson.getStudent(), newLesson.getDate(), newLesson.getDurationMinutes());
+                lessonIntervalIndex.put(userId, newLesson.getId(), newLesson.getDate(), newLesson.getFrom(), newLesson.getTo());
+                planningCache.evict(userId, lesson.getDate());
+                planningCache.evict(userId, newLesson.getDate());
+            }
+            delta.apply();
+        }
+        // OK
+        return ack;
+    }
+
+    @Override
+    @Transactional
+    public Ack deleteLessonsForTeacher(int userId, LessonSelection selection) {
+        checkLessonBatch(selection.getIds().size());
+        Ack ack = Ack.OK;
+        // Occurrences of series are deleted one by one
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (int id : new LinkedHashSet<>(selection.getIds())) {
+            if (TLessonSeries.isOccurrence(id)) {
+                int lessonId = resolveLesson(userId, id);
+                if (TLessonSeries.isOccurrence(lessonId)) {
+                    ack = ack.and(deleteOccurrence(userId, lessonId));
+                } else {
+                    ids.add(lessonId);
+                }
+            } else {
+                ids.add(id);
+            }
+        }
+        if (!ids.isEmpty()) {
+            checkTeacherForLessons(userId, ids);
+            // Previous state
+            List<TLesson> lessons = lessonDao.findLessonsByIds(ids);
+            // Deletion
+            Ack deleted = lessonDao.deleteLessons(ids);
+            // Student totals
+            if (deleted.isSuccess()) {
+                MinutesDelta delta = new MinutesDelta(userId);
+                for (TLesson lesson : lessons) {
+                    delta.add(lesson.getStudent(), lesson.getDate(), -lesson.getDurationMinutes());
+                    lessonIntervalIndex.remove(userId, lesson.getId());
+                    ownershipIndex.removeLesson(userId, lesson.getId());
+                    planningCache.evict(userId, lesson.getDate());
+                }
+                delta.apply();
+            }
+            ack = ack.and(deleted);
+        }
+        // OK
+        return ack;
+    }
+
+    @Override
+    @Transactional
+    public ID createLessonSeriesForTeacher(int userId, LessonSeriesForm form) {
+        // Validation
+        validate(form, LessonSeriesFormValidation.class);
+        validate(form.getTo().isAfter(form.getFrom()), new LocalizableMessage("lesson.error.timeorder"));
+        checkTeacherForStudent(userId, form.getStudent());
+        int count = TLessonSeries.getOccurrenceCount(form.getPeriod(), form.getDate(), form.getUntil());
+        if (form.getUntil().isBefore(form.getDate()) || count > TLessonSeries.MAX_OCCURRENCES) {
+            throw new LessonSeriesRangeException(form.getDate(), form.getUntil());
+        }
+        // Conflicts, for all the occurrences
+        List<LessonInterval> conflicts = new ArrayList<>();
+        LocalDate date = form.getDate();
+        for (int i = 0; i < count; i++) {
+            conflicts.addAll(lessonIntervalIndex.getConflicts(userId, 0, date, form.getFrom(), form.getTo()));
+            date = date.plusWeeks(form.getPeriod().getWeeks());
+        }
+        if (!conflicts.isEmpty()) {
+            throw new LessonConflictException(conflicts);
+        }
+        // Creation, the series ending with its last occurrence
+        ID id = lessonSeriesDao.createSeries(
+                form.getStudent(),
+                form.getPeriod(),
+                form.getDate(),
+                form.getDate().plusWeeks((count - 1) * form.getPeriod().getWeeks()),
+                form.getFrom(),
+                form.getTo(),
+                form.getLocation(),
+                count
+        );
+        // Occurrence IDs out of the integers, the creation being rolled back
+        if (id.isSuccess() && id.getValue() > TLessonSeries.MAX_SERIES_ID) {
+            throw new LessonSeriesLimitException(TLessonSeries.MAX_SERIES_ID);
+        }
+        // Student total
+        if (id.isSuccess()) {
+            addSeriesMinutes(lessonSeriesDao.findSeries(userId, id.getValue()), 1);
+            lessonIntervalIndex.evict(userId);
+            planningCache.evictTeacher(userId);
+        }
+        // OK
+        return id;
+    }
+
+    @Override
+    @Transactional
+    public Ack deleteLessonSeriesForTeacher(int userId, int id) {
+        // Check for the associated teacher
+        TLessonSeries series = getSeriesForTeacher(userId, id);
+        // Deletion, the occurrences already replaced by lessons being kept
+        Ack ack = lessonSeriesDao.deleteSeries(id);
+        // Student total
+        if (ack.isSuccess()) {
+            addSeriesMinutes(series, -1);
+            lessonIntervalIndex.evict(userId);
+            planningCache.evictTeacher(userId);
+        }
+        // OK
+        return ack;
+    }
+
+    /**
+     * Adds (or removes, if the sign is negative) the minutes of the remaining occurrences
+     * of a series to the totals of its student and teacher
+     */
+    private void addSeriesMinutes(TLessonSeries series, int sign) {
+        int studentId = series.getStudent().getId();
+        int minutes = 0;
+        for (Map.Entry<LocalDate, Integer> month : series.getMonthlyMinutes().entrySet()) {
+            teacherMonthlyMinutesDao.addMinutes(series.getTeacher(), studentId, month.getKey(), sign * month.getValue());
+            minutes += month.getValue();
+        }
+        studentTotalDao.addMinutes(studentId, sign * minutes);
+    }
+
+    /**
+     * Checks that a changed lesson range still ends after its start, on the same day, since
+     * its duration is computed from its times only
+     */
+    protected void validateLessonRange(LessonRange range) {
+        validate(range.getTo().isAfter(range.getFrom()), new LocalizableMessage("lesson.error.timeorder"));
+        validate(range.getTo().toLocalDate().equals(range.getFrom().toLocalDate()), new LocalizableMessage("lesson.error.oneday"));
     }
 
     protected Ack changeLessonRange(int userId, int lessonId, Function<LessonRange, LessonRange> changeFn) {
         // Check for the associated teacher
-        checkTeacherForLesson(userId, lessonId);
+        lessonId = materializeLesson(userId, lessonId);
         // Loads the lesson range
-        final LessonRange range = lessonDao.getLessonRange(lessonId);
+        TLesson lesson = lessonDao.getLessonById(lessonId);
+        final LessonRange range = new LessonRange(
+                lesson.getDate().toLocalDateTime(lesson.getFrom()),
+                lesson.getDate().toLocalDateTime(lesson.getTo()));
         // Adjust the range
         LessonRange newRange = changeFn.apply(range);
+        validateLessonRange(newRange);
+        // Conflicts
+        lessonIntervalIndex.checkConflicts(userId, lessonId,
+                newRange.getFrom().toLocalDate(),
+                newRange.getFrom().toLocalTime(),
+                newRange.getTo().toLocalTime());
         // Updates the period
-        return lessonDao.setLessonRange(lessonId,
+        Ack ack = lessonDao.setLessonRange(lessonId,
                 newRange.getFrom().toLocalDate(),
                 newRange.getFrom().toLocalTime(),
                 newRange.getTo().toLocalTime());
+        // Student total
+        if (ack.isSuccess()) {
+            int minutes = SQLUtils.getMinutes(newRange.getFrom().toLocalTime(), newRange.getTo().toLocalTime());
+            studentTotalDao.addMinutes(lesson.getStudent(), minutes - lesson.getDurationMinutes());
+            // The lesson may have moved to another month
+            teacherMonthlyMinutesDao.addMinutes(userId, lesson.getStudent(), lesson.getDate(), -lesson.getDurationMinutes());
+            teacherMonthlyMinutesDao.addMinutes(userId, lesson.getStudent(), newRange.getFrom().toLocalDate(), minutes);
+            lessonIntervalIndex.put(userId, lessonId,
+                    newRange.getFrom().toLocalDate(),
+                    newRange.getFrom().toLocalTime(),
+                    newRange.getTo().toLocalTime());
+            planningCache.evict(userId, lesson.getDate());
+            planningCache.evict(userId, newRange.getFrom().toLocalDate());
+        }
+        // OK
+        return ack;
     }
 
     @Override
@@ -568,8 +1090,15 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
 
     @Override
     @Transactional
-    public Ack moveLessonForTeacher(int userId, int lessonId, final LessonChange change) {
-        return changeLessonRange(userId, lessonId, new Function<LessonRange, LessonRange>() {
+    public Ack moveLessonForTeacher(int userId, int lessonId, LessonChange change) {
+        return changeLessonRange(userId, lessonId, moveFunction(change));
+    }
+
+    /**
+     * Shifts both ends of a lesson range
+     */
+    private static Function<LessonRange, LessonRange> moveFunction(final LessonChange change) {
+        return new Function<LessonRange, LessonRange>() {
             @Override
             public LessonRange apply(final LessonRange range) {
                 // Adjust the range
@@ -592,14 +1121,14 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
                 // Redefines the lesson range
                 return new LessonRange(from, to);
             }
-        });
+        };
     }
 
     @Override
     @Transactional(readOnly = true)
     public Comments getLessonComments(int userId, int lessonId, int offset, int count, int maxlength, CommentFormat format) {
         // Check for the associated teacher
-        checkTeacherForLesson(userId, lessonId);
+        lessonId = resolveLesson(userId, lessonId);
         // Gets the comments
         return commentsService.getComments(CommentEntity.LESSON, lessonId, offset, count, maxlength, format);
     }
@@ -608,7 +1137,7 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
     @Transactional(readOnly = true)
     public Comment getLessonComment(int userId, int lessonId, int commentId, CommentFormat format) {
         // Check for the associated teacher
-        checkTeacherForLesson(userId, lessonId);
+        lessonId = resolveLesson(userId, lessonId);
         // Gets the comment
         return commentsService.getComment(CommentEntity.LESSON, lessonId, commentId, format);
     }
@@ -616,8 +1145,8 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
     @Override
     @Transactional
     public Comment editLessonComment(int userId, int lessonId, CommentFormat format, CommentsForm form) {
-        // Check for the associated teacher
-        checkTeacherForLesson(userId, lessonId);
+        // Check for the associated teacher, an occurrence becoming a lesson
+        lessonId = materializeLesson(userId, lessonId);
         // Creates the comment
         return commentsService.editComment(CommentEntity.LESSON, lessonId, format, form);
     }
@@ -626,9 +1155,52 @@ public class TeacherServiceImpl extends AbstractServiceImpl implements
     @Transactional
     public Ack deleteLessonComment(int userId, int lessonId, int commentId) {
         // Check for the associated teacher
-        checkTeacherForLesson(userId, lessonId);
+        lessonId = resolveLesson(userId, lessonId);
         // Deletes the comment
         return commentsService.deleteComment(CommentEntity.LESSON, lessonId, commentId);
     }
 
+    /**
+     * Minutes added to the totals of the students and to the monthly minutes of a teacher by
+     * a batch of lessons, so that each total is updated only once
+     */
+    private class MinutesDelta {
+
+        private final int teacherId;
+        private final Map<Integer, Integer> students = new HashMap<>();
+        private final Map<Integer, Map<LocalDate, Integer>> months = new HashMap<>();
+
+        private MinutesDelta(int teacherId) {
+            this.teacherId = teacherId;
+        }
+
+        public void add(int studentId, LocalDate date, int minutes) {
+            Integer total = students.get(studentId);
+            students.put(studentId, (total != null ? total : 0) + minutes);
+            Map<LocalDate, Integer> studentMonths = months.get(studentId);
+            if (studentMonths == null) {
+                studentMonths = new HashMap<>();
+                months.put(studentId, studentMonths);
+            }
+            LocalDate month = date.withDayOfMonth(1);
+            Integer monthTotal = studentMonths.get(month);
+            studentMonths.put(month, (monthTotal != null ? monthTotal : 0) + minutes);
+        }
+
+        public void apply() {
+            for (Map.Entry<Integer, Integer> student : students.entrySet()) {
+                if (student.getValue() != 0) {
+                    studentTotalDao.addMinutes(student.getKey(), student.getValue());
+                }
+            }
+            for (Map.Entry<Integer, Map<LocalDate, Integer>> student : months.entrySet()) {
+                for (Map.Entry<LocalDate, Integer> month : student.getValue().entrySet()) {
+                    if (month.getValue() != 0) {
+                        teacherMonthlyMinutesDao.addMinutes(teacherId, student.getKey(), month.getKey(), month.getValue());
+                    }
+                }
+            }
+        }
+    }
+
 }
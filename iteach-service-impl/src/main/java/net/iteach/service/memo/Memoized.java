@@ -0,0 +1,20 @@
+package net.iteach.service.memo;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a read-only method of a bean whose result can be reused for the same arguments
+ * during the rest of the current HTTP request. See {@link RequestMemo}.
+ * <p/>
+ * The arguments must implement <code>equals</code> and <code>hashCode</code>, and the
+ * result must be immutable since it is shared between the callers.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Memoized {
+}
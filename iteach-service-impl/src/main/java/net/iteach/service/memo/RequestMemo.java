@@ -0,0 +1,116 @@
+package net.iteach.service.memo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of the {@link Memoized} methods called during the current HTTP request.
+ * <p/>
+ * The memo is kept as an attribute of the request, so nothing survives the request,
+ * and it is cleared by any write done during the request. Outside of a request (scheduled
+ * tasks, background threads...), there is no memo and the methods are always called.
+ */
+public class RequestMemo {
+
+    private static final String ATTRIBUTE = RequestMemo.class.getName();
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestMemo.class);
+
+    private final Map<List<Object>, Object> values = new HashMap<>();
+    private int callCount;
+    private int hitCount;
+    private int invalidationCount;
+
+    /**
+     * Gets the memo of the current request, creating it if needed.
+     *
+     * @return Memo or <code>null</code> when there is no current request
+     */
+    public static RequestMemo current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        RequestMemo memo = (RequestMemo) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (memo == null) {
+            final RequestMemo created = new RequestMemo();
+            attributes.setAttribute(ATTRIBUTE, created, RequestAttributes.SCOPE_REQUEST);
+            attributes.registerDestructionCallback(ATTRIBUTE, new Runnable() {
+                @Override
+                public void run() {
+                    logger.debug("[memo] {} calls, {} deduplicated, {} invalidations",
+                            created.getCallCount(), created.getHitCount(), created.getInvalidationCount());
+                }
+            }, RequestAttributes.SCOPE_REQUEST);
+            memo = created;
+        }
+        return memo;
+    }
+
+    static List<Object> key(Method method, Object[] args) {
+        List<Object> key = new ArrayList<>(args.length + 1);
+        key.add(method);
+        key.addAll(Arrays.asList(args));
+        return key;
+    }
+
+    boolean contains(List<Object> key) {
+        callCount++;
+        if (values.containsKey(key)) {
+            hitCount++;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    Object get(List<Object> key) {
+        return values.get(key);
+    }
+
+    /**
+     * Stores a result, unless the memo has been invalidated since the given generation,
+     * in which case the result may already be stale.
+     */
+    void put(List<Object> key, Object value, int generation) {
+        if (generation == invalidationCount) {
+            values.put(key, value);
+        }
+    }
+
+    void invalidate() {
+        values.clear();
+        invalidationCount++;
+    }
+
+    /**
+     * Number of calls to the memoized methods
+     */
+    public int getCallCount() {
+        return callCount;
+    }
+
+    /**
+     * Number of calls served from the memo
+     */
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Number of times the memo has been cleared because of a write
+     */
+    public int getInvalidationCount() {
+        return invalidationCount;
+    }
+
+}
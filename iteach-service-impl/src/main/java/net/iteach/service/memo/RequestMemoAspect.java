@@ -0,0 +1,58 @@
+package net.iteach.service.memo;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Serves the {@link Memoized} methods from the {@link RequestMemo} of the current request,
+ * and clears this memo before and after any method which is {@link Transactional} without
+ * being read-only.
+ * <p/>
+ * The aspect runs before the transaction interceptor (which has the lowest precedence), so
+ * that a memoized call does not start a transaction. Like any Spring proxy, it only applies
+ * to calls between beans.
+ */
+@Aspect
+@Component
+@Order(0)
+public class RequestMemoAspect {
+
+    @Around("@annotation(net.iteach.service.memo.Memoized)")
+    public Object memoize(ProceedingJoinPoint pjp) throws Throwable {
+        RequestMemo memo = RequestMemo.current();
+        if (memo == null) {
+            return pjp.proceed();
+        }
+        List<Object> key = RequestMemo.key(((MethodSignature) pjp.getSignature()).getMethod(), pjp.getArgs());
+        if (memo.contains(key)) {
+            return memo.get(key);
+        } else {
+            int generation = memo.getInvalidationCount();
+            Object value = pjp.proceed();
+            memo.put(key, value, generation);
+            return value;
+        }
+    }
+
+    @Around("@annotation(transactional)")
+    public Object invalidate(ProceedingJoinPoint pjp, Transactional transactional) throws Throwable {
+        RequestMemo memo = transactional.readOnly() ? null : RequestMemo.current();
+        if (memo == null) {
+            return pjp.proceed();
+        }
+        memo.invalidate();
+        try {
+            return pjp.proceed();
+        } finally {
+            memo.invalidate();
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package net.iteach.service.report;
+
+import lombok.Data;
+import org.joda.money.Money;
+import org.joda.time.YearMonth;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Monthly invoice of a teacher for one school, as given to the invoice template
+ */
+@Data
+public class Invoice {
+
+    private final YearMonth yearMonth;
+    private final String month;
+    private final int teacherId;
+    private final String teacherFirstName;
+    private final String teacherLastName;
+    private final String teacherEmail;
+    private final int schoolId;
+    private final String schoolName;
+    private final Money hourlyRate;
+    private final List<InvoiceLine> lines;
+    private final int lessonCount;
+    private final BigDecimal hours;
+    private final Money amount;
+
+}
@@ -0,0 +1,117 @@
+package net.iteach.service.report;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import net.iteach.core.model.UserSummary;
+import net.iteach.service.dao.LessonSeriesCallback;
+import net.iteach.service.dao.LessonSeriesDao;
+import net.iteach.service.dao.ReportDao;
+import net.iteach.service.dao.model.TLessonSeries;
+import net.iteach.service.template.TemplateNotFoundException;
+import org.joda.time.LocalDate;
+import org.joda.time.YearMonth;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the monthly invoices of the schools as a zip, one HTML file per school.
+ * <p/>
+ * The lines of all the invoices are read by one aggregate query and rendered as they
+ * are read, the occurrences of the lesson series of the month being merged into them.
+ * The series are read beforehand by one query, which also gives their teachers.
+ * The template is taken once from the templating configuration, which keeps it
+ * compiled, and then used for all the invoices.
+ */
+@Component
+public class InvoiceGenerator {
+
+    /**
+     * Template used for the invoices
+     */
+    public static final String INVOICE_TEMPLATE = "invoice.html";
+
+    private final ReportDao reportDao;
+    private final LessonSeriesDao lessonSeriesDao;
+    private final Configuration configuration;
+
+    @Autowired
+    public InvoiceGenerator(ReportDao reportDao, LessonSeriesDao lessonSeriesDao, @Qualifier("templating") Configuration configuration) {
+        this.reportDao = reportDao;
+        this.lessonSeriesDao = lessonSeriesDao;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Writes the invoices of the schools of a teacher and returns their number
+     */
+    public int writeInvoices(int teacherId, YearMonth month, Locale locale, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        InvoiceZipWriter writer = new InvoiceZipWriter(getTemplate(locale), month, false, zip);
+        addSeries(writer, teacherId, teacherId, month);
+        try {
+            reportDao.processInvoiceLines(teacherId, getFirstDay(month), getLastDay(month), writer);
+        } catch (InvoiceZipWriter.InvoiceZipWriterException ex) {
+            throw ex.getCause();
+        }
+        return finish(writer, zip);
+    }
+
+    /**
+     * Writes the invoices of the schools of all the teachers, with one folder per
+     * teacher, and returns their number
+     */
+    public int writeAllInvoices(YearMonth month, Locale locale, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        InvoiceZipWriter writer = new InvoiceZipWriter(getTemplate(locale), month, true, zip);
+        addSeries(writer, 0, Integer.MAX_VALUE, month);
+        try {
+            reportDao.processAllInvoiceLines(getFirstDay(month), getLastDay(month), writer);
+        } catch (InvoiceZipWriter.InvoiceZipWriterException ex) {
+            throw ex.getCause();
+        }
+        return finish(writer, zip);
+    }
+
+    private void addSeries(final InvoiceZipWriter writer, int minTeacher, int maxTeacher, YearMonth month) {
+        final LocalDate from = getFirstDay(month);
+        final LocalDate to = getLastDay(month);
+        lessonSeriesDao.processSeriesForTeachers(minTeacher, maxTeacher, from, to, new LessonSeriesCallback() {
+            @Override
+            public void processSeries(UserSummary teacher, TLessonSeries series) {
+                int count = series.getIndexes(from, to).size();
+                if (count > 0) {
+                    writer.addSeries(teacher, series, count);
+                }
+            }
+        });
+    }
+
+    private int finish(InvoiceZipWriter writer, ZipOutputStream zip) throws IOException {
+        int count = writer.finish();
+        zip.finish();
+        return count;
+    }
+
+    private Template getTemplate(Locale locale) {
+        try {
+            return configuration.getTemplate(INVOICE_TEMPLATE, locale, "UTF-8");
+        } catch (IOException ex) {
+            throw new TemplateNotFoundException(INVOICE_TEMPLATE, ex);
+        }
+    }
+
+    private static LocalDate getFirstDay(YearMonth month) {
+        return month.toLocalDate(1);
+    }
+
+    private static LocalDate getLastDay(YearMonth month) {
+        return month.toLocalDate(1).plusMonths(1).minusDays(1);
+    }
+
+}
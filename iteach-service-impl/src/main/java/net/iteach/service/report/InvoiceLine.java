@@ -0,0 +1,19 @@
+package net.iteach.service.report;
+
+import lombok.Data;
+import org.joda.money.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Lessons of one student on an {@link Invoice}
+ */
+@Data
+public class InvoiceLine {
+
+    private final String studentName;
+    private final int lessonCount;
+    private final BigDecimal hours;
+    private final Money amount;
+
+}
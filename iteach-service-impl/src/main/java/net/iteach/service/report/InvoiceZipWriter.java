@@ -0,0 +1,288 @@
+package net.iteach.service.report;
+
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import lombok.Data;
+import net.iteach.core.model.SchoolSummary;
+import net.iteach.core.model.StudentSummary;
+import net.iteach.core.model.UserSummary;
+import net.iteach.core.report.ReportAccumulator;
+import net.iteach.service.dao.model.TLessonSeries;
+import net.iteach.service.db.SQLUtils;
+import net.iteach.service.template.TemplateMergeException;
+import org.joda.money.Money;
+import org.joda.time.YearMonth;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Renders the invoice lines, as read by {@link net.iteach.service.dao.ReportDao#processInvoiceLines},
+ * into one zip entry per teacher and school. The rows being grouped by teacher and school, only
+ * the invoice being read is kept in memory, and all the invoices are rendered with the same
+ * compiled template.
+ * <p/>
+ * The occurrences of the lesson series, which are not read from the database, are given
+ * beforehand and merged into the lines of their students. The schools having only such
+ * occurrences get their invoices at the end.
+ */
+public class InvoiceZipWriter implements RowCallbackHandler {
+
+    private static final Comparator<InvoiceLine> STUDENT_ORDER = new Comparator<InvoiceLine>() {
+        @Override
+        public int compare(InvoiceLine o1, InvoiceLine o2) {
+            return o1.getStudentName().compareTo(o2.getStudentName());
+        }
+    };
+
+    private final Template template;
+    private final YearMonth yearMonth;
+    private final String month;
+    private final boolean teacherFolders;
+    private final ZipOutputStream zip;
+    private final Writer writer;
+    private final Map<InvoiceKey, Map<Integer, SeriesLine>> seriesLines = new LinkedHashMap<>();
+
+    private int count = 0;
+    // Invoice being read
+    private int teacherId = -1;
+    private int schoolId = -1;
+    private String teacherFirstName;
+    private String teacherLastName;
+    private String teacherEmail;
+    private String schoolName;
+    private Money hourlyRate;
+    private List<InvoiceLine> lines;
+    private int lessonCount;
+    private long minutes;
+    private Money amount;
+
+    /**
+     * @param teacherFolders <code>true</code> if the invoices must be grouped into one folder
+     *                       per teacher
+     */
+    public InvoiceZipWriter(Template template, YearMonth yearMonth, boolean teacherFolders, ZipOutputStream zip) throws IOException {
+        this.template = template;
+        this.yearMonth = yearMonth;
+        this.teacherFolders = teacherFolders;
+        this.zip = zip;
+        this.writer = new OutputStreamWriter(zip, "UTF-8");
+        Locale locale = template.getLocale();
+        this.month = String.format("%s %s",
+                yearMonth.monthOfYear().getAsText(locale),
+                yearMonth.year().getAsText(locale));
+    }
+
+    /**
+     * Adds occurrences of a lesson series to the invoice of its school
+     *
+     * @param occurrenceCount Number of occurrences in the month of the invoices
+     */
+    public void addSeries(UserSummary teacher, TLessonSeries series, int occurrenceCount) {
+        StudentSummary student = series.getStudent();
+        InvoiceKey key = new InvoiceKey(teacher.getId(), student.getSchool().getId());
+        Map<Integer, SeriesLine> students = seriesLines.get(key);
+        if (students == null) {
+            students = new LinkedHashMap<>();
+            seriesLines.put(key, students);
+        }
+        SeriesLine line = students.get(student.getId());
+        if (line == null) {
+            line = new SeriesLine(teacher, student);
+            students.put(student.getId(), line);
+        }
+        line.lessonCount += occurrenceCount;
+        line.minutes += occurrenceCount * series.getDurationMinutes();
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        int teacher = rs.getInt("teacher_id");
+        int school = rs.getInt("school_id");
+        try {
+            if (teacher != teacherId || school != schoolId) {
+                writeInvoice();
+                startInvoice(
+                        teacher,
+                        rs.getString("teacher_firstname"),
+                        rs.getString("teacher_lastname"),
+                        rs.getString("teacher_email"),
+                        school,
+                        rs.getString("school_name"),
+                        SQLUtils.moneyFromDB(rs, "school_hrate"));
+            }
+        } catch (IOException ex) {
+            throw new InvoiceZipWriterException(ex);
+        }
+        int lineLessonCount = rs.getInt("lesson_count");
+        int lineMinutes = rs.getInt("minutes");
+        // Occurrences of the series of the same student
+        Map<Integer, SeriesLine> students = seriesLines.get(new InvoiceKey(teacher, school));
+        SeriesLine seriesLine = students != null ? students.remove(rs.getInt("student_id")) : null;
+        if (seriesLine != null) {
+            lineLessonCount += seriesLine.lessonCount;
+            lineMinutes += seriesLine.minutes;
+        }
+        addLine(rs.getString("student_name"), lineLessonCount, lineMinutes);
+    }
+
+    /**
+     * Renders the last invoice, then the invoices having only occurrences of lesson series,
+     * and returns the number of invoices. The zip stream is not finished.
+     */
+    public int finish() throws IOException {
+        writeInvoice();
+        for (Map<Integer, SeriesLine> students : new ArrayList<>(seriesLines.values())) {
+            if (!students.isEmpty()) {
+                SeriesLine line = students.values().iterator().next();
+                SchoolSummary school = line.student.getSchool();
+                startInvoice(
+                        line.teacher.getId(),
+                        line.teacher.getFirstName(),
+                        line.teacher.getLastName(),
+                        line.teacher.getEmail(),
+                        school.getId(),
+                        school.getName(),
+                        school.getHourlyRate());
+                writeInvoice();
+            }
+        }
+        return count;
+    }
+
+    private void startInvoice(int teacher, String firstName, String lastName, String email, int school, String name, Money rate) {
+        teacherId = teacher;
+        schoolId = school;
+        teacherFirstName = firstName;
+        teacherLastName = lastName;
+        teacherEmail = email;
+        schoolName = name;
+        hourlyRate = rate;
+        lines = new ArrayList<>();
+        lessonCount = 0;
+        minutes = 0;
+        amount = Money.zero(hourlyRate.getCurrencyUnit());
+    }
+
+    private void addLine(String studentName, int lineLessonCount, int lineMinutes) {
+        Money lineAmount = hourlyRate.multipliedBy(ReportAccumulator.toHours(lineMinutes), RoundingMode.HALF_UP);
+        lines.add(new InvoiceLine(
+                studentName,
+                lineLessonCount,
+                ReportAccumulator.toHours(lineMinutes),
+                lineAmount));
+        lessonCount += lineLessonCount;
+        minutes += lineMinutes;
+        amount = amount.plus(lineAmount);
+    }
+
+    private void writeInvoice() throws IOException {
+        if (lines == null) {
+            return;
+        }
+        // Students having only occurrences of series
+        Map<Integer, SeriesLine> students = seriesLines.remove(new InvoiceKey(teacherId, schoolId));
+        if (students != null && !students.isEmpty()) {
+            for (SeriesLine line : students.values()) {
+                addLine(line.student.getName(), line.lessonCount, line.minutes);
+            }
+            Collections.sort(lines, STUDENT_ORDER);
+        }
+        Invoice invoice = new Invoice(
+                yearMonth,
+                month,
+                teacherId,
+                teacherFirstName,
+                teacherLastName,
+                teacherEmail,
+                schoolId,
+                schoolName,
+                hourlyRate,
+                Collections.unmodifiableList(lines),
+                lessonCount,
+                ReportAccumulator.toHours(minutes),
+                amount);
+        lines = null;
+        zip.putNextEntry(new ZipEntry(getEntryName(invoice)));
+        try {
+            template.process(Collections.singletonMap("invoice", invoice), writer);
+        } catch (TemplateException ex) {
+            throw new TemplateMergeException(template.getName(), ex);
+        }
+        writer.flush();
+        zip.closeEntry();
+        count++;
+    }
+
+    protected String getEntryName(Invoice invoice) {
+        String name = String.format("invoice-%s-%d-%s.html",
+                invoice.getYearMonth(),
+                invoice.getSchoolId(),
+                toFileName(invoice.getSchoolName()));
+        if (teacherFolders) {
+            return String.format("%d-%s/%s",
+                    invoice.getTeacherId(),
+                    toFileName(invoice.getTeacherLastName()),
+                    name);
+        } else {
+            return name;
+        }
+    }
+
+    private static String toFileName(String value) {
+        return value == null ? "" : value.replaceAll("[^A-Za-z0-9]+", "_");
+    }
+
+    @Data
+    private static class InvoiceKey {
+        private final int teacher;
+        private final int school;
+    }
+
+    /**
+     * Occurrences of the series of a student
+     */
+    private static class SeriesLine {
+
+        private final UserSummary teacher;
+        private final StudentSummary student;
+        private int lessonCount;
+        private int minutes;
+
+        private SeriesLine(UserSummary teacher, StudentSummary student) {
+            this.teacher = teacher;
+            this.student = student;
+        }
+    }
+
+    /**
+     * Carries an {@link IOException} of the zip stream through the JDBC processing
+     */
+    public static class InvoiceZipWriterException extends RuntimeException {
+
+        public InvoiceZipWriterException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public IOException getCause() {
+            return (IOException) super.getCause();
+        }
+
+    }
+
+}
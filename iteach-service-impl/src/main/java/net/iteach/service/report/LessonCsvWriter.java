@@ -0,0 +1,158 @@
+package net.iteach.service.report;
+
+import net.iteach.core.model.Lesson;
+import net.iteach.core.model.SchoolSummary;
+import net.iteach.service.db.SQLUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.joda.money.Money;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes the lessons, as read by {@link net.iteach.service.dao.ReportDao#processLessons}, as CSV lines,
+ * directly from the result set to the writer. The occurrences of the lesson series, which are not
+ * read from the database, are written in between, by date and time.
+ */
+public class LessonCsvWriter implements RowCallbackHandler {
+
+    public static final String HEADER = "Date,From,To,School,Student,Location,Hours,Hourly rate,Currency,Amount";
+
+    private final Writer writer;
+    private final Iterator<Lesson> occurrences;
+    private Lesson occurrence;
+    private int schoolId = -1;
+    private Money hourlyRate;
+
+    /**
+     * @param occurrences Occurrences of the lesson series, ordered by date and time
+     */
+    public LessonCsvWriter(Writer writer, List<Lesson> occurrences) {
+        this.writer = writer;
+        this.occurrences = occurrences.iterator();
+        this.occurrence = this.occurrences.hasNext() ? this.occurrences.next() : null;
+    }
+
+    public void writeHeader() throws IOException {
+        writer.write(HEADER);
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        // The rate is read only when the school changes
+        int id = rs.getInt("school_id");
+        if (id != schoolId) {
+            schoolId = id;
+            hourlyRate = SQLUtils.moneyFromDB(rs, "school_hrate");
+        }
+        LocalDate date = SQLUtils.getLocalDate(rs, "pdate");
+        LocalTime from = SQLUtils.getLocalTime(rs, "pfrom");
+        try {
+            // Occurrences before this lesson
+            writeOccurrences(date, from);
+            writeLine(
+                    date,
+                    from,
+                    SQLUtils.getLocalTime(rs, "pto"),
+                    rs.getString("school_name"),
+                    rs.getString("student_name"),
+                    rs.getString("location"),
+                    rs.getInt("duration_minutes"),
+                    hourlyRate);
+        } catch (IOException ex) {
+            throw new LessonCsvWriterException(ex);
+        }
+    }
+
+    /**
+     * Writes the occurrences after the last lesson
+     */
+    public void finish() throws IOException {
+        writeOccurrences(null, null);
+    }
+
+    private void writeOccurrences(LocalDate date, LocalTime from) throws IOException {
+        while (occurrence != null && (date == null || isBefore(occurrence, date, from))) {
+            SchoolSummary school = occurrence.getStudent().getSchool();
+            writeLine(
+                    occurrence.getDate(),
+                    occurrence.getFrom(),
+                    occurrence.getTo(),
+                    school.getName(),
+                    occurrence.getStudent().getName(),
+                    occurrence.getLocation(),
+                    SQLUtils.getMinutes(occurrence.getFrom(), occurrence.getTo()),
+                    school.getHourlyRate());
+            occurrence = occurrences.hasNext() ? occurrences.next() : null;
+        }
+    }
+
+    private static boolean isBefore(Lesson occurrence, LocalDate date, LocalTime from) {
+        int c = occurrence.getDate().compareTo(date);
+        return c < 0 || (c == 0 && occurrence.getFrom().isBefore(from));
+    }
+
+    private void writeLine(LocalDate date, LocalTime from, LocalTime to, String schoolName, String studentName, String location, int minutes, Money rate) throws IOException {
+        BigDecimal hours = SQLUtils.getHours(minutes);
+        writer.write(date.toString());
+        writer.write(',');
+        writer.write(from.toString("HH:mm"));
+        writer.write(',');
+        writer.write(to.toString("HH:mm"));
+        writer.write(',');
+        writeText(schoolName);
+        writer.write(',');
+        writeText(studentName);
+        writer.write(',');
+        writeText(location);
+        writer.write(',');
+        writer.write(hours.toPlainString());
+        writer.write(',');
+        writer.write(rate.getAmount().toPlainString());
+        writer.write(',');
+        writer.write(rate.getCurrencyUnit().getCode());
+        writer.write(',');
+        writer.write(rate.multipliedBy(hours, RoundingMode.HALF_UP).getAmount().toPlainString());
+        writer.write("\r\n");
+    }
+
+    private void writeText(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (StringUtils.containsAny(value, ",\"\r\n")) {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(value);
+        }
+    }
+
+    /**
+     * Carries an {@link IOException} of the writer through the JDBC processing
+     */
+    public static class LessonCsvWriterException extends RuntimeException {
+
+        public LessonCsvWriterException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public IOException getCause() {
+            return (IOException) super.getCause();
+        }
+
+    }
+
+}
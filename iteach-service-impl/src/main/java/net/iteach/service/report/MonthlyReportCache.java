@@ -0,0 +1,172 @@
+package net.iteach.service.report;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.Data;
+import net.iteach.core.report.MonthlyReport;
+import net.iteach.core.report.ReportAccumulator;
+import net.iteach.service.dao.ReportDao;
+import net.iteach.service.dao.model.TStudentMinutes;
+import net.iteach.service.impl.TeacherGenerations;
+import org.joda.time.YearMonth;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monthly reports, per teacher, month and {@link TeacherGenerations generation} of the teacher
+ * data. Reports computed from data which has changed since are never read again and are
+ * eventually dropped by the size limit.
+ * <p/>
+ * The reports computed by the {@link MonthlyReportPrecomputeTask} are kept apart, at most one
+ * per teacher and month, so that a night of precomputation for all the teachers does not
+ * evict the reports computed on demand, nor the other way around.
+ */
+@Component
+public class MonthlyReportCache {
+
+    /**
+     * Maximum number of monthly reports kept in memory
+     */
+    public static final long MAX_REPORTS = 1000L;
+
+    private final ReportDao reportDao;
+    private final TeacherGenerations teacherGenerations;
+    private final Cache<ReportKey, MonthlyReport> reports = CacheBuilder.newBuilder()
+            .maximumSize(MAX_REPORTS)
+            .recordStats()
+            .build();
+    private final ConcurrentMap<PrecomputedKey, PrecomputedReport> precomputed = new ConcurrentHashMap<>();
+    private final AtomicLong precomputedHitCount = new AtomicLong();
+
+    @Autowired
+    public MonthlyReportCache(ReportDao reportDao, TeacherGenerations teacherGenerations) {
+        this.reportDao = reportDao;
+        this.teacherGenerations = teacherGenerations;
+    }
+
+    /**
+     * Gets the report of a teacher for the current state of its data, computing it if needed.
+     */
+    public MonthlyReport getMonthlyReport(final int teacherId, final YearMonth month) {
+        long generation = teacherGenerations.get(teacherId);
+        // Precomputed report still up to date
+        PrecomputedKey precomputedKey = new PrecomputedKey(teacherId, month);
+        PrecomputedReport precomputedReport = precomputed.get(precomputedKey);
+        if (precomputedReport != null) {
+            if (precomputedReport.getGeneration() == generation) {
+                precomputedHitCount.incrementAndGet();
+                return precomputedReport.getReport();
+            } else {
+                // The data has changed since
+                precomputed.remove(precomputedKey, precomputedReport);
+            }
+        }
+        // Computed on demand
+        ReportKey key = new ReportKey(teacherId, month, generation);
+        try {
+            return reports.get(key, new Callable<MonthlyReport>() {
+                @Override
+                public MonthlyReport call() {
+                    return computeMonthlyReport(teacherId, month);
+                }
+            });
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Cannot compute the monthly report", ex.getCause());
+        }
+    }
+
+    /**
+     * Computes the report of a teacher into the precomputed reports, replacing the one
+     * computed before for the same month.
+     */
+    public void precompute(int teacherId, YearMonth month) {
+        // Generation read before the computation, so that a concurrent change discards the report
+        long generation = teacherGenerations.get(teacherId);
+        MonthlyReport report = computeMonthlyReport(teacherId, month);
+        precomputed.put(new PrecomputedKey(teacherId, month), new PrecomputedReport(generation, report));
+    }
+
+    /**
+     * Drops the precomputed reports of all the months but the given ones.
+     */
+    public void retainPrecomputed(Collection<YearMonth> months) {
+        Iterator<PrecomputedKey> keys = precomputed.keySet().iterator();
+        while (keys.hasNext()) {
+            if (!months.contains(keys.next().getMonth())) {
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * Hit &amp; miss counters of the reports computed on demand
+     */
+    public CacheStats getStats() {
+        return reports.stats();
+    }
+
+    /**
+     * Number of precomputed reports in memory
+     */
+    public long getPrecomputedCount() {
+        return precomputed.size();
+    }
+
+    /**
+     * Number of reports served from the precomputed ones
+     */
+    public long getPrecomputedHitCount() {
+        return precomputedHitCount.get();
+    }
+
+    protected MonthlyReport computeMonthlyReport(int teacherId, YearMonth month) {
+        // Minutes for the month and in total, per student
+        List<TStudentMinutes> minutes = reportDao.findStudentMinutes(teacherId, month);
+        // OK
+        return toMonthlyReport(month, minutes);
+    }
+
+    /**
+     * Groups the minutes of the students, already ordered by school, into the report.
+     */
+    protected static MonthlyReport toMonthlyReport(YearMonth yearMonth, List<TStudentMinutes> minutes) {
+        ReportAccumulator accumulator = new ReportAccumulator();
+        for (TStudentMinutes t : minutes) {
+            accumulator
+                    .addSchool(t.getSchoolId(), t.getSchoolName(), t.getSchoolColor(), t.getSchoolHourlyRate())
+                    .addMinutes(t.getSchoolId(), t.getStudentId(), t.getStudentName(), t.isStudentDisabled(), t.getPeriodMinutes(), t.getTotalMinutes());
+        }
+        // OK
+        return accumulator.freeze(yearMonth);
+    }
+
+    @Data
+    private static class ReportKey {
+        private final int teacher;
+        private final YearMonth month;
+        private final long generation;
+    }
+
+    @Data
+    private static class PrecomputedKey {
+        private final int teacher;
+        private final YearMonth month;
+    }
+
+    @Data
+    private static class PrecomputedReport {
+        private final long generation;
+        private final MonthlyReport report;
+    }
+
+}
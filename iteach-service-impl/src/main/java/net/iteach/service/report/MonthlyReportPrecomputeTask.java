@@ -0,0 +1,196 @@
+package net.iteach.service.report;
+
+import net.iteach.service.dao.UserDao;
+import net.iteach.service.dao.model.TUser;
+import org.joda.time.LocalDate;
+import org.joda.time.YearMonth;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes every night the reports of the current and previous months of all the
+ * enabled teachers into the {@link MonthlyReportCache}, so that they are displayed
+ * at once in the morning. The reports of the older months are dropped at each run,
+ * which keeps two reports per teacher at most.
+ * <p/>
+ * Teachers are processed in parallel by a small pool of low priority threads, which
+ * pause after each teacher in order to leave the database to the interactive requests.
+ */
+@Component
+public class MonthlyReportPrecomputeTask {
+
+    /**
+     * Number of threads used for the precomputation
+     */
+    public static final int THREADS = 2;
+
+    /**
+     * Pause of a thread after each teacher, in milliseconds
+     */
+    public static final long PAUSE = 50L;
+
+    private final Logger logger = LoggerFactory.getLogger(MonthlyReportPrecomputeTask.class);
+
+    private final UserDao userDao;
+    private final MonthlyReportCache monthlyReportCache;
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "report-precompute-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong lastRunDuration = new AtomicLong();
+    private final AtomicLong lastRunTeacherCount = new AtomicLong();
+    private final AtomicLong lastRunFailureCount = new AtomicLong();
+    private final AtomicLong teacherCount = new AtomicLong();
+    private final AtomicLong teacherDuration = new AtomicLong();
+    private final AtomicLong maxTeacherDuration = new AtomicLong();
+
+    @Autowired
+    public MonthlyReportPrecomputeTask(UserDao userDao, MonthlyReportCache monthlyReportCache) {
+        this.userDao = userDao;
+        this.monthlyReportCache = monthlyReportCache;
+    }
+
+    /**
+     * Every night at 4:30 AM, after the reconciliation of the student totals
+     */
+    @Scheduled(cron = "0 30 4 * * *")
+    public void precomputeTrigger() {
+        precompute(new LocalDate());
+    }
+
+    /**
+     * Computes the reports of the month of the given date and of the previous one, and
+     * returns the number of teachers processed.
+     */
+    public int precompute(LocalDate date) {
+        logger.info("[report-precompute] Precomputation triggering");
+        long start = System.currentTimeMillis();
+        final YearMonth month = new YearMonth(date);
+        final YearMonth previousMonth = month.minusMonths(1);
+        monthlyReportCache.retainPrecomputed(Arrays.asList(previousMonth, month));
+        // Schedules all teachers
+        List<Future<?>> futures = new ArrayList<>();
+        for (TUser user : userDao.findAll()) {
+            if (!user.isDisabled()) {
+                final int teacherId = user.getId();
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        precompute(teacherId, month, previousMonth);
+                        // Leaves some room for the other requests
+                        Thread.sleep(PAUSE);
+                        return null;
+                    }
+                }));
+            }
+        }
+        // Waits for all the teachers
+        int failures = 0;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                failures++;
+                logger.warn("[report-precompute] Cannot precompute a report", ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                failures++;
+            }
+        }
+        // Metrics
+        long duration = System.currentTimeMillis() - start;
+        runCount.incrementAndGet();
+        lastRunDuration.set(duration);
+        lastRunTeacherCount.set(futures.size());
+        lastRunFailureCount.set(failures);
+        logger.info("[report-precompute] {} teachers processed in {} ms, {} failures", futures.size(), duration, failures);
+        return futures.size();
+    }
+
+    protected void precompute(int teacherId, YearMonth month, YearMonth previousMonth) {
+        long start = System.nanoTime();
+        monthlyReportCache.precompute(teacherId, previousMonth);
+        monthlyReportCache.precompute(teacherId, month);
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        teacherCount.incrementAndGet();
+        teacherDuration.addAndGet(duration);
+        long max = maxTeacherDuration.get();
+        while (duration > max && !maxTeacherDuration.compareAndSet(max, duration)) {
+            max = maxTeacherDuration.get();
+        }
+    }
+
+    /**
+     * Number of precomputations run
+     */
+    public long getRunCount() {
+        return runCount.get();
+    }
+
+    /**
+     * Duration of the last precomputation, in milliseconds
+     */
+    public long getLastRunDuration() {
+        return lastRunDuration.get();
+    }
+
+    /**
+     * Number of teachers processed by the last precomputation
+     */
+    public long getLastRunTeacherCount() {
+        return lastRunTeacherCount.get();
+    }
+
+    /**
+     * Number of teachers whose reports could not be computed by the last precomputation
+     */
+    public long getLastRunFailureCount() {
+        return lastRunFailureCount.get();
+    }
+
+    /**
+     * Average time to compute the reports of one teacher, in milliseconds
+     */
+    public long getAverageTeacherDuration() {
+        long count = teacherCount.get();
+        return count > 0 ? teacherDuration.get() / count : 0;
+    }
+
+    /**
+     * Longest time to compute the reports of one teacher, in milliseconds
+     */
+    public long getMaxTeacherDuration() {
+        return maxTeacherDuration.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+}
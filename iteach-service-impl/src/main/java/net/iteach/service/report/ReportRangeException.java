@@ -0,0 +1,12 @@
+package net.iteach.service.report;
+
+import net.iteach.utils.InputException;
+import org.joda.time.LocalDate;
+
+public class ReportRangeException extends InputException {
+
+    public ReportRangeException(LocalDate from, LocalDate to) {
+        super(from, to);
+    }
+
+}
@@ -1,42 +1,50 @@
 package net.iteach.service.report;
 
-import net.iteach.api.TeacherService;
 import net.iteach.api.report.ReportService;
+import net.iteach.core.model.Lesson;
 import net.iteach.core.model.SchoolSummary;
 import net.iteach.core.model.StudentSummary;
 import net.iteach.core.report.MonthlyReport;
-import net.iteach.core.report.SchoolMonthlyHours;
-import net.iteach.core.report.StudentMonthlyHours;
+import net.iteach.core.report.RangeReport;
+import net.iteach.core.report.RangeReportAccumulator;
+import net.iteach.core.report.ReportGranularity;
 import net.iteach.core.security.SecurityUtils;
-import net.iteach.service.dao.LessonDao;
-import net.iteach.service.dao.model.TLesson;
-import net.iteach.service.db.SQLUtils;
-import org.joda.money.Money;
+import net.iteach.service.dao.LessonSeriesDao;
+import net.iteach.service.dao.ReportDao;
+import net.iteach.service.dao.model.TLessonSeries;
 import org.joda.time.LocalDate;
-import org.joda.time.LocalTime;
 import org.joda.time.YearMonth;
+import org.joda.time.Years;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Locale;
 
 @Service
 public class ReportServiceImpl implements ReportService {
 
-    private final TeacherService teacherService;
+    /**
+     * Maximum number of years covered by a range report
+     */
+    public static final int MAX_YEARS = 10;
+
     private final SecurityUtils securityUtils;
-    private final LessonDao lessonDao;
+    private final ReportDao reportDao;
+    private final LessonSeriesDao lessonSeriesDao;
+    private final MonthlyReportCache monthlyReportCache;
+    private final InvoiceGenerator invoiceGenerator;
 
     @Autowired
-    public ReportServiceImpl(TeacherService teacherService, SecurityUtils securityUtils, LessonDao lessonDao) {
-        this.teacherService = teacherService;
+    public ReportServiceImpl(SecurityUtils securityUtils, ReportDao reportDao, LessonSeriesDao lessonSeriesDao, MonthlyReportCache monthlyReportCache, InvoiceGenerator invoiceGenerator) {
         this.securityUtils = securityUtils;
-        this.lessonDao = lessonDao;
+        this.reportDao = reportDao;
+        this.lessonSeriesDao = lessonSeriesDao;
+        this.monthlyReportCache = monthlyReportCache;
+        this.invoiceGenerator = invoiceGenerator;
     }
 
     @Override
@@ -44,49 +52,65 @@ public class ReportServiceImpl implements ReportService {
     public MonthlyReport getMonthlyReport(LocalDate date) {
         // Gets the current user
         int userId = securityUtils.getCurrentUserId();
-        // From: first day of the month
-        LocalDate from = date.withDayOfMonth(1);
-        // To: last day of the month
-        LocalDate to = date.withDayOfMonth(date.dayOfMonth().getMaximumValue());
-        // Indexes
-        Map<Integer, SchoolMonthlyHours> schoolHoursIndex = new LinkedHashMap<>();
-        Map<Integer, StudentMonthlyHours> studentHoursIndex = new LinkedHashMap<>();
-        // Gets the full list of lessons
-        List<TLesson> lessons = lessonDao.findAllLessonsForTeacher(userId);
-        for (TLesson t : lessons) {
-            LocalDate lineDate = t.getDate();
-            LocalTime timeFrom = t.getFrom();
-            LocalTime timeTo = t.getTo();
-            BigDecimal hours = SQLUtils.getHours(timeFrom, timeTo);
-            boolean monthlyHours = (lineDate.compareTo(from) >= 0) && (lineDate.compareTo(to) <= 0);
-            // Gets the student
-            int studentId = t.getStudent();
-            StudentSummary student = teacherService.getStudentSummary(studentId);
-            String studentName = student.getName();
-            // School hourly rate
+        // Cached report for the current data
+        return monthlyReportCache.getMonthlyReport(userId, new YearMonth(date));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public RangeReport getRangeReport(LocalDate from, LocalDate to, ReportGranularity granularity) {
+        // Checks the range
+        checkRange(from, to);
+        // Gets the current user
+        int userId = securityUtils.getCurrentUserId();
+        // Lessons in the range, per period
+        RangeReportAccumulator accumulator = new RangeReportAccumulator(from, to, granularity);
+        reportDao.collectLessonMinutes(userId, from, to, accumulator);
+        // ... and the occurrences of the series
+        for (TLessonSeries series : lessonSeriesDao.findSeriesForTeacher(userId, from, to)) {
+            StudentSummary student = series.getStudent();
             SchoolSummary school = student.getSchool();
-            Money hourlyRate = school.getHourlyRate();
-            // Student hours
-            StudentMonthlyHours studentHours = studentHoursIndex.get(studentId);
-            if (studentHours == null) {
-                studentHours = new StudentMonthlyHours(studentId, studentName, student.isDisabled(), hourlyRate);
+            accumulator.addSchool(school.getId(), school.getName(), school.getColor(), school.getHourlyRate());
+            for (Lesson occurrence : series.getOccurrences(from, to)) {
+                accumulator.addMinutes(school.getId(), student.getId(), student.getName(), student.isDisabled(), occurrence.getDate(), series.getDurationMinutes());
             }
-            studentHours = studentHours.addHours(hours, monthlyHours);
-            studentHoursIndex.put(studentId, studentHours);
-            // School hours
-            int schoolId = school.getId();
-            SchoolMonthlyHours schoolHours = schoolHoursIndex.get(schoolId);
-            if (schoolHours == null) {
-                schoolHours = new SchoolMonthlyHours(schoolId, school.getName(), school.getColor(), hourlyRate);
-            }
-
-            schoolHours = schoolHours.addStudent(studentHours);
-            schoolHoursIndex.put(schoolId, schoolHours);
         }
         // OK
-        return new MonthlyReport(
-                new YearMonth(date),
-                new ArrayList<>(schoolHoursIndex.values()));
+        return accumulator.freeze();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportLessons(LocalDate from, LocalDate to, Writer writer) throws IOException {
+        // Checks the range
+        checkRange(from, to);
+        // Gets the current user
+        int userId = securityUtils.getCurrentUserId();
+        // Writes the lessons as they are read, with the occurrences of the series
+        LessonCsvWriter csv = new LessonCsvWriter(writer, TLessonSeries.getOccurrences(
+                lessonSeriesDao.findSeriesForTeacher(userId, from, to), from, to));
+        csv.writeHeader();
+        try {
+            reportDao.processLessons(userId, from, to, csv);
+        } catch (LessonCsvWriter.LessonCsvWriterException ex) {
+            throw ex.getCause();
+        }
+        csv.finish();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public int exportInvoices(YearMonth month, Locale locale, OutputStream out) throws IOException {
+        // Gets the current user
+        int userId = securityUtils.getCurrentUserId();
+        // Writes the invoices as they are read
+        return invoiceGenerator.writeInvoices(userId, month, locale, out);
+    }
+
+    protected void checkRange(LocalDate from, LocalDate to) {
+        if (to.isBefore(from) || Years.yearsBetween(from, to).getYears() >= MAX_YEARS) {
+            throw new ReportRangeException(from, to);
+        }
     }
 
 }
@@ -0,0 +1,49 @@
+-- Lesson date & times stored as native DATE and TIME columns
+
+ALTER TABLE LESSONS ALTER COLUMN PDATE DATE NOT NULL;
+
+ALTER TABLE LESSONS ALTER COLUMN PFROM VARCHAR(8) NOT NULL;
+ALTER TABLE LESSONS ALTER COLUMN PTO VARCHAR(8) NOT NULL;
+UPDATE LESSONS SET PFROM = CONCAT(PFROM, ':00'), PTO = CONCAT(PTO, ':00');
+ALTER TABLE LESSONS ALTER COLUMN PFROM TIME NOT NULL;
+ALTER TABLE LESSONS ALTER COLUMN PTO TIME NOT NULL;
+
+-- Range indexes
+CREATE INDEX IDX_LESSONS_DATE ON LESSONS (PDATE, PFROM);
+CREATE INDEX IDX_LESSONS_STUDENT_DATE ON LESSONS (STUDENT, PDATE, PFROM);
+
+-- @rollback
+
+DROP INDEX IF EXISTS IDX_LESSONS_DATE;
+DROP INDEX IF EXISTS IDX_LESSONS_STUDENT_DATE;
+
+ALTER TABLE LESSONS ALTER COLUMN PDATE CHAR(10) NOT NULL;
+
+ALTER TABLE LESSONS ALTER COLUMN PFROM VARCHAR(8) NOT NULL;
+ALTER TABLE LESSONS ALTER COLUMN PTO VARCHAR(8) NOT NULL;
+UPDATE LESSONS SET PFROM = SUBSTRING(PFROM, 1, 5), PTO = SUBSTRING(PTO, 1, 5);
+ALTER TABLE LESSONS ALTER COLUMN PFROM CHAR(5) NOT NULL;
+ALTER TABLE LESSONS ALTER COLUMN PTO CHAR(5) NOT NULL;
+
+-- @mysql
+
+ALTER TABLE LESSONS MODIFY COLUMN PDATE DATE NOT NULL;
+ALTER TABLE LESSONS MODIFY COLUMN PFROM TIME NOT NULL;
+ALTER TABLE LESSONS MODIFY COLUMN PTO TIME NOT NULL;
+
+-- Range indexes
+CREATE INDEX IDX_LESSONS_DATE ON LESSONS (PDATE, PFROM);
+CREATE INDEX IDX_LESSONS_STUDENT_DATE ON LESSONS (STUDENT, PDATE, PFROM);
+
+-- @mysql-rollback
+
+DROP INDEX IDX_LESSONS_DATE ON LESSONS;
+DROP INDEX IDX_LESSONS_STUDENT_DATE ON LESSONS;
+
+ALTER TABLE LESSONS MODIFY COLUMN PDATE CHAR(10) NOT NULL;
+
+ALTER TABLE LESSONS MODIFY COLUMN PFROM VARCHAR(8) NOT NULL;
+ALTER TABLE LESSONS MODIFY COLUMN PTO VARCHAR(8) NOT NULL;
+UPDATE LESSONS SET PFROM = SUBSTRING(PFROM, 1, 5), PTO = SUBSTRING(PTO, 1, 5);
+ALTER TABLE LESSONS MODIFY COLUMN PFROM CHAR(5) NOT NULL;
+ALTER TABLE LESSONS MODIFY COLUMN PTO CHAR(5) NOT NULL;
@@ -0,0 +1,27 @@
+-- Teacher of the lesson, denormalized from STUDENTS & SCHOOLS
+
+ALTER TABLE LESSONS ADD COLUMN TEACHER INTEGER NULL;
+UPDATE LESSONS SET TEACHER = (SELECT H.TEACHER FROM STUDENTS S INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL WHERE S.ID = LESSONS.STUDENT);
+ALTER TABLE LESSONS ALTER COLUMN TEACHER SET NOT NULL;
+
+ALTER TABLE LESSONS ADD CONSTRAINT FK_LESSON_TEACHER FOREIGN KEY (TEACHER) REFERENCES USERS (ID) ON DELETE CASCADE;
+CREATE INDEX IDX_LESSONS_TEACHER_DATE ON LESSONS (TEACHER, PDATE, PFROM);
+
+-- @rollback
+
+ALTER TABLE LESSONS DROP COLUMN IF EXISTS TEACHER;
+
+-- @mysql
+
+ALTER TABLE LESSONS ADD COLUMN TEACHER INTEGER NULL;
+UPDATE LESSONS SET TEACHER = (SELECT H.TEACHER FROM STUDENTS S INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL WHERE S.ID = LESSONS.STUDENT);
+ALTER TABLE LESSONS MODIFY COLUMN TEACHER INTEGER NOT NULL;
+
+ALTER TABLE LESSONS ADD CONSTRAINT FK_LESSON_TEACHER FOREIGN KEY (TEACHER) REFERENCES USERS (ID) ON DELETE CASCADE;
+CREATE INDEX IDX_LESSONS_TEACHER_DATE ON LESSONS (TEACHER, PDATE, PFROM);
+
+-- @mysql-rollback
+
+ALTER TABLE LESSONS DROP FOREIGN KEY FK_LESSON_TEACHER;
+DROP INDEX IDX_LESSONS_TEACHER_DATE ON LESSONS;
+ALTER TABLE LESSONS DROP COLUMN TEACHER;
@@ -0,0 +1,37 @@
+-- Lookup indexes on the foreign keys, in the order the DAOs read them
+
+CREATE INDEX IDX_COMMENTS_SCHOOL ON COMMENTS (SCHOOL, ID);
+CREATE INDEX IDX_COMMENTS_STUDENT ON COMMENTS (STUDENT, ID);
+CREATE INDEX IDX_COMMENTS_LESSON ON COMMENTS (LESSON, ID);
+
+CREATE INDEX IDX_COORDINATES_SCHOOL ON COORDINATES (SCHOOL, COORD_TYPE);
+CREATE INDEX IDX_COORDINATES_STUDENT ON COORDINATES (STUDENT, COORD_TYPE);
+
+CREATE INDEX IDX_STUDENTS_SCHOOL ON STUDENTS (SCHOOL, NAME);
+
+-- Token lookup & clean-up
+
+CREATE INDEX IDX_TOKENS_KEY ON TOKENS (TOKENTYPE, TOKENKEY);
+CREATE INDEX IDX_TOKENS_CREATION ON TOKENS (CREATION);
+
+-- @rollback
+
+DROP INDEX IF EXISTS IDX_COMMENTS_SCHOOL;
+DROP INDEX IF EXISTS IDX_COMMENTS_STUDENT;
+DROP INDEX IF EXISTS IDX_COMMENTS_LESSON;
+DROP INDEX IF EXISTS IDX_COORDINATES_SCHOOL;
+DROP INDEX IF EXISTS IDX_COORDINATES_STUDENT;
+DROP INDEX IF EXISTS IDX_STUDENTS_SCHOOL;
+DROP INDEX IF EXISTS IDX_TOKENS_KEY;
+DROP INDEX IF EXISTS IDX_TOKENS_CREATION;
+
+-- @mysql-rollback
+
+DROP INDEX IDX_COMMENTS_SCHOOL ON COMMENTS;
+DROP INDEX IDX_COMMENTS_STUDENT ON COMMENTS;
+DROP INDEX IDX_COMMENTS_LESSON ON COMMENTS;
+DROP INDEX IDX_COORDINATES_SCHOOL ON COORDINATES;
+DROP INDEX IDX_COORDINATES_STUDENT ON COORDINATES;
+DROP INDEX IDX_STUDENTS_SCHOOL ON STUDENTS;
+DROP INDEX IDX_TOKENS_KEY ON TOKENS;
+DROP INDEX IDX_TOKENS_CREATION ON TOKENS;
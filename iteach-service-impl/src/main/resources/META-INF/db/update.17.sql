@@ -0,0 +1,18 @@
+-- Total of lesson minutes per student
+
+CREATE TABLE STUDENT_TOTALS (
+	STUDENT INTEGER NOT NULL,
+	MINUTES INTEGER NOT NULL,
+	CONSTRAINT PK_STUDENT_TOTALS PRIMARY KEY (STUDENT),
+	CONSTRAINT FK_STUDENT_TOTALS_STUDENT FOREIGN KEY (STUDENT) REFERENCES STUDENTS (ID) ON DELETE CASCADE
+);
+
+INSERT INTO STUDENT_TOTALS (STUDENT, MINUTES)
+	SELECT S.ID, COALESCE(SUM(HOUR(L.PTO) * 60 + MINUTE(L.PTO) - HOUR(L.PFROM) * 60 - MINUTE(L.PFROM)), 0)
+	FROM STUDENTS S
+	LEFT JOIN LESSONS L ON L.STUDENT = S.ID
+	GROUP BY S.ID;
+
+-- @rollback
+
+DROP TABLE IF EXISTS STUDENT_TOTALS;
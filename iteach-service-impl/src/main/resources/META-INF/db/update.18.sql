@@ -0,0 +1,19 @@
+-- Duration of the lesson in minutes, maintained on write
+
+ALTER TABLE LESSONS ADD COLUMN DURATION_MINUTES INTEGER NULL;
+UPDATE LESSONS SET DURATION_MINUTES = HOUR(PTO) * 60 + MINUTE(PTO) - HOUR(PFROM) * 60 - MINUTE(PFROM);
+ALTER TABLE LESSONS ALTER COLUMN DURATION_MINUTES SET NOT NULL;
+
+-- @rollback
+
+ALTER TABLE LESSONS DROP COLUMN IF EXISTS DURATION_MINUTES;
+
+-- @mysql
+
+ALTER TABLE LESSONS ADD COLUMN DURATION_MINUTES INTEGER NULL;
+UPDATE LESSONS SET DURATION_MINUTES = HOUR(PTO) * 60 + MINUTE(PTO) - HOUR(PFROM) * 60 - MINUTE(PFROM);
+ALTER TABLE LESSONS MODIFY COLUMN DURATION_MINUTES INTEGER NOT NULL;
+
+-- @mysql-rollback
+
+ALTER TABLE LESSONS DROP COLUMN DURATION_MINUTES;
@@ -0,0 +1,21 @@
+-- Minutes of lessons per teacher, student and month
+
+CREATE TABLE TEACHER_MONTHLY_MINUTES (
+	TEACHER INTEGER NOT NULL,
+	STUDENT INTEGER NOT NULL,
+	PYEAR INTEGER NOT NULL,
+	PMONTH INTEGER NOT NULL,
+	MINUTES INTEGER NOT NULL,
+	CONSTRAINT PK_TEACHER_MONTHLY_MINUTES PRIMARY KEY (TEACHER, PYEAR, PMONTH, STUDENT),
+	CONSTRAINT FK_TEACHER_MONTHLY_MINUTES_TEACHER FOREIGN KEY (TEACHER) REFERENCES USERS (ID) ON DELETE CASCADE,
+	CONSTRAINT FK_TEACHER_MONTHLY_MINUTES_STUDENT FOREIGN KEY (STUDENT) REFERENCES STUDENTS (ID) ON DELETE CASCADE
+);
+
+INSERT INTO TEACHER_MONTHLY_MINUTES (TEACHER, STUDENT, PYEAR, PMONTH, MINUTES)
+	SELECT TEACHER, STUDENT, YEAR(PDATE), MONTH(PDATE), SUM(DURATION_MINUTES)
+	FROM LESSONS
+	GROUP BY TEACHER, STUDENT, YEAR(PDATE), MONTH(PDATE);
+
+-- @rollback
+
+DROP TABLE IF EXISTS TEACHER_MONTHLY_MINUTES;
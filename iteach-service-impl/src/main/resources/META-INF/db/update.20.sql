@@ -0,0 +1,37 @@
+-- Recurring lessons, stored as a rule and expanded when read
+
+CREATE TABLE LESSON_SERIES (
+	ID INTEGER NOT NULL AUTO_INCREMENT,
+	TEACHER INTEGER NOT NULL,
+	STUDENT INTEGER NOT NULL,
+	PERIOD VARCHAR(10) NOT NULL,
+	START_DATE DATE NOT NULL,
+	END_DATE DATE NOT NULL,
+	PFROM TIME NOT NULL,
+	PTO TIME NOT NULL,
+	DURATION_MINUTES INTEGER NOT NULL,
+	LOCATION VARCHAR(80) NULL,
+	OCCURRENCE_COUNT INTEGER NOT NULL,
+	CONSTRAINT PK_LESSON_SERIES PRIMARY KEY (ID),
+	CONSTRAINT FK_LESSON_SERIES_TEACHER FOREIGN KEY (TEACHER) REFERENCES USERS (ID) ON DELETE CASCADE,
+	CONSTRAINT FK_LESSON_SERIES_STUDENT FOREIGN KEY (STUDENT) REFERENCES STUDENTS (ID) ON DELETE CASCADE
+);
+
+CREATE INDEX IDX_LESSON_SERIES_TEACHER ON LESSON_SERIES (TEACHER, END_DATE);
+CREATE INDEX IDX_LESSON_SERIES_STUDENT ON LESSON_SERIES (STUDENT, END_DATE);
+
+-- Occurrences of a series which have been deleted (no lesson) or replaced by a lesson
+
+CREATE TABLE LESSON_SERIES_EXCEPTIONS (
+	SERIES INTEGER NOT NULL,
+	PDATE DATE NOT NULL,
+	LESSON INTEGER NULL,
+	CONSTRAINT PK_LESSON_SERIES_EXCEPTIONS PRIMARY KEY (SERIES, PDATE),
+	CONSTRAINT FK_LESSON_SERIES_EXCEPTIONS_SERIES FOREIGN KEY (SERIES) REFERENCES LESSON_SERIES (ID) ON DELETE CASCADE,
+	CONSTRAINT FK_LESSON_SERIES_EXCEPTIONS_LESSON FOREIGN KEY (LESSON) REFERENCES LESSONS (ID) ON DELETE SET NULL
+);
+
+-- @rollback
+
+DROP TABLE IF EXISTS LESSON_SERIES_EXCEPTIONS;
+DROP TABLE IF EXISTS LESSON_SERIES;
@@ -0,0 +1,20 @@
+-- A teacher cannot start two lessons at the same time, which identifies the lessons
+-- created in one batch. The unique index replaces the former lookup index.
+
+ALTER TABLE LESSONS ADD CONSTRAINT UQ_LESSONS_TEACHER_START UNIQUE (TEACHER, PDATE, PFROM);
+DROP INDEX IF EXISTS IDX_LESSONS_TEACHER_DATE;
+
+-- @rollback
+
+CREATE INDEX IF NOT EXISTS IDX_LESSONS_TEACHER_DATE ON LESSONS (TEACHER, PDATE, PFROM);
+ALTER TABLE LESSONS DROP CONSTRAINT IF EXISTS UQ_LESSONS_TEACHER_START;
+
+-- @mysql
+
+ALTER TABLE LESSONS ADD CONSTRAINT UQ_LESSONS_TEACHER_START UNIQUE (TEACHER, PDATE, PFROM);
+DROP INDEX IDX_LESSONS_TEACHER_DATE ON LESSONS;
+
+-- @mysql-rollback
+
+CREATE INDEX IDX_LESSONS_TEACHER_DATE ON LESSONS (TEACHER, PDATE, PFROM);
+ALTER TABLE LESSONS DROP INDEX UQ_LESSONS_TEACHER_START;
@@ -0,0 +1,79 @@
+package net.iteach.service.admin;
+
+import net.iteach.api.admin.HoursDashboard;
+import net.iteach.api.admin.TeacherHours;
+import net.iteach.service.dao.LessonSeriesDao;
+import net.iteach.service.dao.ReportDao;
+import net.iteach.service.dao.UserDao;
+import net.iteach.test.AbstractIntegrationTest;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.joda.time.YearMonth;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HoursDashboardCollectorTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private ReportDao reportDao;
+
+    @Autowired
+    private LessonSeriesDao lessonSeriesDao;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Test
+    public void collect() {
+        check(new HoursDashboardCollector(reportDao, lessonSeriesDao));
+    }
+
+    @Test
+    public void collect_one_teacher_per_shard() {
+        check(new HoursDashboardCollector(reportDao, lessonSeriesDao, 1));
+    }
+
+    @Test
+    public void collect_no_lesson() {
+        HoursDashboard dashboard = new HoursDashboardCollector(reportDao, lessonSeriesDao).collect(new YearMonth(2013, 3), userDao.findAll());
+        assertEquals(3, dashboard.getTeachers().size());
+        assertEquals(0, dashboard.getLessonCount());
+        assertEquals(BigDecimal.ZERO, dashboard.getHours());
+        assertTrue(dashboard.getRevenue().isZero());
+    }
+
+    private void check(HoursDashboardCollector collector) {
+        HoursDashboard dashboard = collector.collect(new YearMonth(2013, 1), userDao.findAll());
+        assertEquals(new YearMonth(2013, 1), dashboard.getYearMonth());
+        // All the users, ordered by name
+        List<TeacherHours> teachers = dashboard.getTeachers();
+        assertEquals(3, teachers.size());
+        TeacherHours teacher1 = teachers.get(0);
+        assertEquals(1, teacher1.getId());
+        assertEquals(3, teacher1.getLessonCount());
+        assertEquals(new BigDecimal("6.75"), teacher1.getHours());
+        assertEquals(Money.of(CurrencyUnit.EUR, new BigDecimal("102.50")), teacher1.getRevenue());
+        TeacherHours teacher2 = teachers.get(1);
+        assertEquals(2, teacher2.getId());
+        assertTrue(teacher2.isDisabled());
+        assertEquals(1, teacher2.getLessonCount());
+        assertEquals(new BigDecimal("1.00"), teacher2.getHours());
+        assertEquals(Money.of(CurrencyUnit.EUR, new BigDecimal("20.00")), teacher2.getRevenue());
+        TeacherHours teacher3 = teachers.get(2);
+        assertEquals(3, teacher3.getId());
+        assertEquals(0, teacher3.getLessonCount());
+        assertEquals(BigDecimal.ZERO, teacher3.getHours());
+        assertTrue(teacher3.getRevenue().isZero());
+        // Totals
+        assertEquals(4, dashboard.getLessonCount());
+        assertEquals(new BigDecimal("7.75"), dashboard.getHours());
+        assertEquals(Money.of(CurrencyUnit.EUR, new BigDecimal("122.50")), dashboard.getRevenue());
+    }
+
+}
@@ -3,8 +3,6 @@ package net.iteach.service.config;
 import java.io.IOException;
 import java.util.Locale;
 
-import javax.sql.DataSource;
-
 import net.iteach.core.RunProfile;
 import net.sf.jstring.Strings;
 import net.sf.jstring.support.StringsLoader;
@@ -28,7 +26,7 @@ public class UnitTestConfiguration {
 	}
 
 	@Bean
-	public DataSource dataSource() {
+	public CountingDataSource dataSource() {
 		String dbURL = "jdbc:h2:mem:test;DB_CLOSE_DELAY=-1";
 		log.info("Using database at {}", dbURL);
 		BasicDataSource ds = new BasicDataSource();
@@ -39,7 +37,8 @@ public class UnitTestConfiguration {
 		ds.setDefaultAutoCommit(false);
 		ds.setInitialSize(1);
 		ds.setMaxActive(2);
-		return ds;
+		// Counts the statements for the round-trip tests
+		return new CountingDataSource(ds);
 	}
 
 }
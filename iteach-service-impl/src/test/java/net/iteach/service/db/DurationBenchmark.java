@@ -0,0 +1,76 @@
+package net.iteach.service.db;
+
+import org.joda.time.LocalTime;
+import org.joda.time.Period;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+/**
+ * Compares the former computation of the lesson hours, a Joda <code>Period</code> and
+ * a <code>BigDecimal</code> division for every lesson, with the accumulation of the
+ * stored <code>DURATION_MINUTES</code> converted once into hours.
+ * <p/>
+ * This is not a unit test and is not run by the build. Launch it manually:
+ * <pre>
+ * java -cp ... net.iteach.service.db.DurationBenchmark [lessons] [iterations]
+ * </pre>
+ */
+public class DurationBenchmark {
+
+    private static final BigDecimal MINUTES_IN_HOUR = BigDecimal.valueOf(60);
+
+    public static void main(String[] args) {
+        int lessons = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        System.out.format("Lessons: %d, iterations: %d%n", lessons, iterations);
+        // Lessons
+        Random random = new Random(42);
+        LocalTime[] froms = new LocalTime[lessons];
+        LocalTime[] tos = new LocalTime[lessons];
+        int[] durations = new int[lessons];
+        for (int i = 0; i < lessons; i++) {
+            froms[i] = new LocalTime(8 + random.nextInt(10), 15 * random.nextInt(4));
+            tos[i] = froms[i].plusMinutes(45 + 15 * random.nextInt(8));
+            durations[i] = SQLUtils.getMinutes(froms[i], tos[i]);
+        }
+        // Runs
+        long beforeNanos = 0;
+        long afterNanos = 0;
+        BigDecimal before = null;
+        BigDecimal after = null;
+        // Warm-up and measured runs
+        for (int i = -3; i < iterations; i++) {
+            long start = System.nanoTime();
+            before = periodHours(froms, tos);
+            long middle = System.nanoTime();
+            after = minuteHours(durations);
+            long end = System.nanoTime();
+            if (i >= 0) {
+                beforeNanos += middle - start;
+                afterNanos += end - middle;
+            }
+        }
+        System.out.format("Before: %s hours, %.3f ms/run%n", before, beforeNanos / 1e6 / iterations);
+        System.out.format("After:  %s hours, %.3f ms/run%n", after, afterNanos / 1e6 / iterations);
+    }
+
+    private static BigDecimal periodHours(LocalTime[] froms, LocalTime[] tos) {
+        BigDecimal hours = BigDecimal.ZERO;
+        for (int i = 0; i < froms.length; i++) {
+            int minutes = new Period(froms[i], tos[i]).toStandardMinutes().getMinutes();
+            hours = hours.add(new BigDecimal(minutes).divide(MINUTES_IN_HOUR, 2, RoundingMode.HALF_UP));
+        }
+        return hours;
+    }
+
+    private static BigDecimal minuteHours(int[] durations) {
+        long minutes = 0;
+        for (int duration : durations) {
+            minutes += duration;
+        }
+        return SQLUtils.getHours((int) minutes);
+    }
+
+}
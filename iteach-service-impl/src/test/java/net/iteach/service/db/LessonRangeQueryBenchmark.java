@@ -0,0 +1,161 @@
+package net.iteach.service.db;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+/**
+ * Compares the planning range query on the former <code>CHAR</code> lesson columns,
+ * joined to the schools to filter on the teacher, with the current query on the native
+ * <code>DATE</code>/<code>TIME</code> columns and the denormalized <code>TEACHER</code> column.
+ * <p/>
+ * This is not a unit test and is not run by the build. Launch it manually:
+ * <pre>
+ * java -cp ... net.iteach.service.db.LessonRangeQueryBenchmark [lessons] [iterations]
+ * </pre>
+ */
+public class LessonRangeQueryBenchmark {
+
+    private static final int TEACHERS = 50;
+    private static final int SCHOOLS_PER_TEACHER = 4;
+    private static final int STUDENTS_PER_SCHOOL = 10;
+    private static final LocalDate FIRST_DAY = new LocalDate(2009, 1, 1);
+    private static final int DAYS = 5 * 365;
+
+    private static final String SQL_BEFORE = "SELECT L.* FROM LESSONS L INNER JOIN STUDENTS S ON S.ID = L.STUDENT INNER JOIN SCHOOLS H ON H.ID = S.SCHOOL AND H.TEACHER = ? WHERE CONCAT(PDATE,'T',PFROM) >= ? AND CONCAT(PDATE,'T','PTO') <= ?";
+
+    public static void main(String[] args) throws SQLException {
+        int lessons = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        System.out.format("Lessons: %d, iterations: %d%n", lessons, iterations);
+        try (Connection before = DriverManager.getConnection("jdbc:h2:mem:before", "sa", "");
+             Connection after = DriverManager.getConnection("jdbc:h2:mem:after", "sa", "")) {
+            // Schemas
+            createSchema(before, "CHAR(10)", "CHAR(5)", false);
+            createSchema(after, "DATE", "TIME", true);
+            // Data
+            populate(before, lessons, false);
+            populate(after, lessons, true);
+            // Runs
+            long beforeNanos = run(before, iterations, false);
+            long afterNanos = run(after, iterations, true);
+            System.out.format("Before: %.3f ms/query%n", beforeNanos / 1e6 / iterations);
+            System.out.format("After:  %.3f ms/query%n", afterNanos / 1e6 / iterations);
+        }
+    }
+
+    private static void createSchema(Connection c, String dateType, String timeType, boolean indexed) throws SQLException {
+        try (Statement s = c.createStatement()) {
+            s.execute("CREATE TABLE SCHOOLS (ID INTEGER NOT NULL PRIMARY KEY, TEACHER INTEGER NOT NULL)");
+            s.execute("CREATE TABLE STUDENTS (ID INTEGER NOT NULL PRIMARY KEY, SCHOOL INTEGER NOT NULL, CONSTRAINT FK_STUDENT_SCHOOL FOREIGN KEY (SCHOOL) REFERENCES SCHOOLS (ID))");
+            s.execute(String.format(
+                    "CREATE TABLE LESSONS (ID INTEGER NOT NULL AUTO_INCREMENT PRIMARY KEY, TEACHER INTEGER NOT NULL, STUDENT INTEGER NOT NULL, PDATE %s NOT NULL, PFROM %s NOT NULL, PTO %s NOT NULL, LOCATION VARCHAR(80) NULL, CONSTRAINT FK_LESSON_STUDENT FOREIGN KEY (STUDENT) REFERENCES STUDENTS (ID))",
+                    dateType, timeType, timeType));
+            if (indexed) {
+                s.execute("CREATE INDEX IDX_LESSONS_DATE ON LESSONS (PDATE, PFROM)");
+                s.execute("CREATE INDEX IDX_LESSONS_STUDENT_DATE ON LESSONS (STUDENT, PDATE, PFROM)");
+                s.execute("CREATE INDEX IDX_LESSONS_TEACHER_DATE ON LESSONS (TEACHER, PDATE, PFROM)");
+            }
+        }
+    }
+
+    private static void populate(Connection c, int lessons, boolean typed) throws SQLException {
+        int schoolCount = TEACHERS * SCHOOLS_PER_TEACHER;
+        int studentCount = schoolCount * STUDENTS_PER_SCHOOL;
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO SCHOOLS (ID, TEACHER) VALUES (?, ?)")) {
+            for (int i = 0; i < schoolCount; i++) {
+                ps.setInt(1, i);
+                ps.setInt(2, i / SCHOOLS_PER_TEACHER);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO STUDENTS (ID, SCHOOL) VALUES (?, ?)")) {
+            for (int i = 0; i < studentCount; i++) {
+                ps.setInt(1, i);
+                ps.setInt(2, i / STUDENTS_PER_SCHOOL);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        // Same seed on both sides so that both databases hold the same lessons
+        Random random = new Random(42);
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO LESSONS (TEACHER, STUDENT, PDATE, PFROM, PTO, LOCATION) VALUES (?, ?, ?, ?, ?, 'Home')")) {
+            for (int i = 0; i < lessons; i++) {
+                LocalDate date = FIRST_DAY.plusDays(random.nextInt(DAYS));
+                LocalTime from = new LocalTime(8 + random.nextInt(10), 15 * random.nextInt(4));
+                LocalTime to = from.plusMinutes(60 + 30 * random.nextInt(3));
+                int student = random.nextInt(studentCount);
+                ps.setInt(1, student / STUDENTS_PER_SCHOOL / SCHOOLS_PER_TEACHER);
+                ps.setInt(2, student);
+                if (typed) {
+                    ps.setDate(3, SQLUtils.dateToDB(date));
+                    ps.setTime(4, SQLUtils.timeToDB(from));
+                    ps.setTime(5, SQLUtils.timeToDB(to));
+                } else {
+                    ps.setString(3, date.toString());
+                    ps.setString(4, from.toString("HH:mm"));
+                    ps.setString(5, to.toString("HH:mm"));
+                }
+                ps.addBatch();
+                if (i % 10000 == 0) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+        c.commit();
+        try (Statement s = c.createStatement()) {
+            s.execute("ANALYZE");
+        }
+    }
+
+    private static long run(Connection c, int iterations, boolean typed) throws SQLException {
+        Random random = new Random(7);
+        String sql = typed ? SQL.LESSONS.replaceAll(":\\w+", "?") : SQL_BEFORE;
+        long total = 0;
+        long rows = 0;
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            // Warm-up and measured runs
+            for (int i = -5; i < iterations; i++) {
+                int teacher = random.nextInt(TEACHERS);
+                LocalDateTime from = FIRST_DAY.plusDays(random.nextInt(DAYS - 7)).toLocalDateTime(LocalTime.MIDNIGHT);
+                LocalDateTime to = from.plusDays(7).minusSeconds(1);
+                ps.setInt(1, teacher);
+                if (typed) {
+                    ps.setDate(2, SQLUtils.dateToDB(from.toLocalDate()));
+                    ps.setDate(3, SQLUtils.dateToDB(to.toLocalDate()));
+                    ps.setDate(4, SQLUtils.dateToDB(from.toLocalDate()));
+                    ps.setTime(5, SQLUtils.timeToDB(from.toLocalTime()));
+                    ps.setDate(6, SQLUtils.dateToDB(to.toLocalDate()));
+                    ps.setTime(7, SQLUtils.timeToDB(to.toLocalTime()));
+                } else {
+                    ps.setString(2, from.toString());
+                    ps.setString(3, to.toString());
+                }
+                long start = System.nanoTime();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (i >= 0) {
+                            rows++;
+                        }
+                    }
+                }
+                if (i >= 0) {
+                    total += System.nanoTime() - start;
+                }
+            }
+        }
+        System.out.format("%s: %d rows read%n", typed ? "After" : "Before", rows);
+        return total;
+    }
+
+}
@@ -0,0 +1,108 @@
+package net.iteach.service.db;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import net.iteach.api.model.CommentEntity;
+import net.iteach.api.model.CoordinateEntity;
+import net.iteach.service.dao.jdbc.CommentJdbcDao;
+import net.iteach.service.dao.jdbc.CoordinateJdbcDao;
+import net.iteach.test.AbstractIntegrationTest;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs <code>EXPLAIN</code> on every SQL statement of the application and fails
+ * as soon as one of them reads a table without using an index.
+ */
+public class SQLExplainTest extends AbstractIntegrationTest {
+
+    /**
+     * Statements which are allowed to read a whole table
+     */
+    private static final Set<String> FULL_SCANS = ImmutableSet.of(
+            "SQL.USER_ADMINISTRATOR_COUNT",
+            "SQL.USERS",
+            // Batch reconciliation
+            "SQL.STUDENT_TOTALS_RECONCILE",
+            "SQL.STUDENT_TOTALS_MISSING",
+            // Rebuild of the monthly minutes
+            "SQL.MONTHLY_MINUTES_DELETE_ALL",
+            "SQL.MONTHLY_MINUTES_REBUILD_ALL",
+            "SQL.LESSON_SERIES_ALL"
+    );
+
+    /**
+     * DAOs which declare their own SQL statements, with the values used to
+     * format their <code>%s</code> placeholders.
+     */
+    private static final Map<Class<?>, Enum<?>[]> DAO_STATEMENTS = ImmutableMap.<Class<?>, Enum<?>[]>of(
+            CommentJdbcDao.class, CommentEntity.values(),
+            CoordinateJdbcDao.class, CoordinateEntity.values()
+    );
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void sql_constants() throws IllegalAccessException {
+        List<String> scans = new ArrayList<>();
+        for (Field field : SQL.class.getFields()) {
+            explain(scans, "SQL." + field.getName(), (String) field.get(null));
+        }
+        assertNoScan(scans);
+    }
+
+    @Test
+    public void dao_statements() throws IllegalAccessException {
+        List<String> scans = new ArrayList<>();
+        for (Map.Entry<Class<?>, Enum<?>[]> entry : DAO_STATEMENTS.entrySet()) {
+            Class<?> daoClass = entry.getKey();
+            for (Field field : daoClass.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class && field.getName().startsWith("SQL_")) {
+                    field.setAccessible(true);
+                    String sql = (String) field.get(null);
+                    String name = daoClass.getSimpleName() + "." + field.getName();
+                    if (sql.contains("%s")) {
+                        for (Enum<?> value : entry.getValue()) {
+                            explain(scans, name + "[" + value.name() + "]", String.format(sql, value.name()));
+                        }
+                    } else {
+                        explain(scans, name, sql);
+                    }
+                }
+            }
+        }
+        assertNoScan(scans);
+    }
+
+    private void explain(List<String> scans, String name, String sql) {
+        // H2 needs all the parameters to be set, even for EXPLAIN
+        String jdbcSql = sql.replaceAll(":\\w+", "?");
+        Object[] params = new Object[StringUtils.countMatches(jdbcSql, "?")];
+        String plan = new JdbcTemplate(dataSource).queryForObject(
+                "EXPLAIN " + jdbcSql,
+                params,
+                String.class
+        );
+        if (plan.contains(".tableScan") && !FULL_SCANS.contains(name)) {
+            scans.add(name + ": " + plan);
+        }
+    }
+
+    private void assertNoScan(List<String> scans) {
+        assertTrue("Statements reading a whole table:\n" + StringUtils.join(scans, "\n"), scans.isEmpty());
+    }
+
+}
@@ -1,6 +1,11 @@
 package net.iteach.service.db;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
 
 import org.joda.time.LocalDate;
 import org.joda.time.LocalTime;
@@ -10,26 +15,46 @@ public class SQLUtilsTest {
 	
 	@Test
 	public void dateToDB() {
-		assertEquals ("2012-12-28", SQLUtils.dateToDB(new LocalDate(2012, 12, 28)));
-		assertEquals ("2013-01-02", SQLUtils.dateToDB(new LocalDate(2013, 1, 2)));
+		assertEquals (Date.valueOf("2012-12-28"), SQLUtils.dateToDB(new LocalDate(2012, 12, 28)));
+		assertEquals (Date.valueOf("2013-01-02"), SQLUtils.dateToDB(new LocalDate(2013, 1, 2)));
+		assertNull (SQLUtils.dateToDB(null));
 	}
 	
 	@Test
 	public void dateFromDB() {
-		assertEquals (new LocalDate(2012, 12, 28), SQLUtils.dateFromDB("2012-12-28"));
-		assertEquals (new LocalDate(2013, 1, 2), SQLUtils.dateFromDB("2013-01-02"));
+		assertEquals (new LocalDate(2012, 12, 28), SQLUtils.dateFromDB(Date.valueOf("2012-12-28")));
+		assertEquals (new LocalDate(2013, 1, 2), SQLUtils.dateFromDB(Date.valueOf("2013-01-02")));
+		assertNull (SQLUtils.dateFromDB(null));
 	}
 	
 	@Test
 	public void timeToDB() {
-		assertEquals ("09:08", SQLUtils.timeToDB(new LocalTime(9, 8)));
-		assertEquals ("13:27", SQLUtils.timeToDB(new LocalTime(13, 27)));
+		assertEquals (Time.valueOf("09:08:00"), SQLUtils.timeToDB(new LocalTime(9, 8)));
+		assertEquals (Time.valueOf("13:27:00"), SQLUtils.timeToDB(new LocalTime(13, 27)));
+	}
+	
+	@Test
+	public void timeToDB_no_seconds() {
+		assertEquals (Time.valueOf("13:27:00"), SQLUtils.timeToDB(new LocalTime(13, 27, 45)));
 	}
 	
 	@Test
 	public void timeFromDB() {
-		assertEquals (new LocalTime(9, 8), SQLUtils.timeFromDB("09:08"));
-		assertEquals (new LocalTime(13, 27), SQLUtils.timeFromDB("13:27"));
+		assertEquals (new LocalTime(9, 8), SQLUtils.timeFromDB(Time.valueOf("09:08:00")));
+		assertEquals (new LocalTime(13, 27), SQLUtils.timeFromDB(Time.valueOf("13:27:00")));
+	}
+	
+	@Test
+	public void getMinutes() {
+		assertEquals (90, SQLUtils.getMinutes(new LocalTime(9, 15), new LocalTime(10, 45)));
+		assertEquals (0, SQLUtils.getMinutes(new LocalTime(9, 15), new LocalTime(9, 15)));
+	}
+	
+	@Test
+	public void getHours() {
+		assertEquals (new BigDecimal("1.50"), SQLUtils.getHours(90));
+		assertEquals (new BigDecimal("0.33"), SQLUtils.getHours(20));
+		assertEquals (BigDecimal.ZERO, SQLUtils.getHours(0));
 	}
 
 }
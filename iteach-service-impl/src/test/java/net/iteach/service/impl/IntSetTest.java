@@ -0,0 +1,66 @@
+package net.iteach.service.impl;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntSetTest {
+
+    @Test
+    public void add_contains_remove() {
+        IntSet set = new IntSet();
+        set.add(1);
+        set.add(17);
+        set.add(1);
+        assertEquals(2, set.size());
+        assertTrue(set.contains(1));
+        assertTrue(set.contains(17));
+        assertFalse(set.contains(2));
+        set.remove(1);
+        assertFalse(set.contains(1));
+        assertTrue(set.contains(17));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void not_positive() {
+        IntSet set = new IntSet();
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(-1));
+        set.remove(0);
+        assertEquals(0, set.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_zero() {
+        new IntSet().add(0);
+    }
+
+    @Test
+    public void same_as_hash_set() {
+        Random random = new Random(42);
+        IntSet set = new IntSet();
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            int value = 1 + random.nextInt(2000);
+            if (random.nextBoolean()) {
+                set.add(value);
+                expected.add(value);
+            } else {
+                set.remove(value);
+                expected.remove(value);
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (int value = 1; value <= 2000; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+
+}
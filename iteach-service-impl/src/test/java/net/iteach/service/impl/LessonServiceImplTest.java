@@ -2,26 +2,75 @@ package net.iteach.service.impl;
 
 import net.iteach.api.TeacherService;
 import net.iteach.core.model.*;
+import net.iteach.core.validation.ValidationException;
+import net.iteach.service.config.CountingDataSource;
+import net.iteach.service.dao.LessonDao;
+import net.iteach.service.dao.LessonSeriesDao;
+import net.iteach.service.dao.TeacherMonthlyMinutesDao;
+import net.iteach.service.dao.model.TLessonSeries;
 import net.iteach.test.AbstractIntegrationTest;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalDateTime;
 import org.joda.time.LocalTime;
+import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 public class LessonServiceImplTest extends AbstractIntegrationTest {
 
     @Autowired
     private TeacherService service;
 
+    @Autowired
+    private StudentTotalReconciliationTask studentTotalReconciliationTask;
+
+    @Autowired
+    private LessonIntervalIndex lessonIntervalIndex;
+
+    @Autowired
+    private PlanningCache planningCache;
+
+    @Autowired
+    private OwnershipIndex ownershipIndex;
+
+    private long loadCount;
+
+    private long missCount;
+
+    @Autowired
+    private TeacherMonthlyMinutesDao teacherMonthlyMinutesDao;
+
+    @Autowired
+    private CountingDataSource dataSource;
+
+    @Before
+    public void resetIndex() {
+        // The data set is loaded behind the back of the application
+        lessonIntervalIndex.evict(1);
+        ownershipIndex.evict(1);
+        ownershipIndex.evict(2);
+        planningCache.evictTeacher(1);
+        loadCount = ownershipIndex.getLoadCount();
+        missCount = ownershipIndex.getMissCount();
+    }
+
     @Test(expected = AccessDeniedException.class)
     public void getLessonsForStudent_access_denied() {
         service.getLessonsForStudent(2, 1, null, Locale.ENGLISH);
@@ -92,11 +141,79 @@ public class LessonServiceImplTest extends AbstractIntegrationTest {
                 result.getLessons());
     }
 
+    @Test
+    public void getLessonsForTeacher_range_includes_lesson_ending_at_bound() {
+        Lessons result = service.getLessonsForTeacher(1, new LessonRange(new LocalDateTime(2013, 1, 15, 9, 0, 0), new LocalDateTime(2013, 1, 15, 10, 45, 0)));
+        assertNotNull(result);
+        assertEquals(1, result.getLessons().size());
+        assertEquals(6, result.getLessons().get(0).getId());
+    }
+
+    @Test
+    public void getLessonsForTeacher_range_excludes_lesson_ending_after_bound() {
+        Lessons result = service.getLessonsForTeacher(1, new LessonRange(new LocalDateTime(2013, 1, 15, 0, 0, 0), new LocalDateTime(2013, 1, 15, 10, 30, 0)));
+        assertNotNull(result);
+        assertTrue(result.getLessons().isEmpty());
+    }
+
+    @Test
+    public void getLessonsForTeacher_range_excludes_lesson_starting_before_bound() {
+        Lessons result = service.getLessonsForTeacher(1, new LessonRange(new LocalDateTime(2013, 1, 15, 9, 30, 0), new LocalDateTime(2013, 1, 15, 23, 59, 59)));
+        assertNotNull(result);
+        assertTrue(result.getLessons().isEmpty());
+    }
+
     @Test(expected = AccessDeniedException.class)
     public void getLessonDetails_access_denied() {
         service.getLessonDetails(2, 1);
     }
 
+    @Test(expected = AccessDeniedException.class)
+    public void getLessonDetails_not_found() {
+        service.getLessonDetails(1, 1000);
+    }
+
+    @Test
+    public void getLessonDetails_one_statement() {
+        long count = dataSource.getStatementCount();
+        service.getLessonDetails(1, 1);
+        assertEquals(1, dataSource.getStatementCount() - count);
+    }
+
+    @Test
+    public void ownership_loaded_once() {
+        service.getStudentCoordinates(1, 1);
+        service.getSchoolCoordinates(1, 1);
+        service.getLessonsForStudent(1, 3, new LocalDate(2013, 1, 1), Locale.ENGLISH);
+        assertEquals(1, ownershipIndex.getLoadCount() - loadCount);
+        assertEquals(0, ownershipIndex.getMissCount() - missCount);
+    }
+
+    @Test
+    public void ownership_created_and_deleted_lesson() {
+        ID id = service.createLessonForTeacher(1, new LessonForm(
+                new LocalDate(2013, 1, 4),
+                new LocalTime(11, 0),
+                new LocalTime(12, 0),
+                1,
+                "Any location"));
+        assertTrue(id.isSuccess());
+        assertTrue(ownershipIndex.ownsLesson(1, id.getValue()));
+        assertFalse(ownershipIndex.ownsLesson(2, id.getValue()));
+        assertTrue(service.deleteLessonForTeacher(1, id.getValue()).isSuccess());
+        assertFalse(ownershipIndex.ownsLesson(1, id.getValue()));
+    }
+
+    @Test
+    public void ownership_other_teacher() {
+        assertTrue(ownershipIndex.ownsSchool(1, 1));
+        assertFalse(ownershipIndex.ownsSchool(1, 2));
+        assertTrue(ownershipIndex.ownsSchool(2, 2));
+        assertTrue(ownershipIndex.ownsStudent(1, 3));
+        assertFalse(ownershipIndex.ownsStudent(2, 3));
+        assertFalse(ownershipIndex.ownsLesson(1, 1000));
+    }
+
     @Test
     public void getLessonDetails() {
         LessonDetails details = service.getLessonDetails(1, 1);
@@ -142,6 +259,53 @@ public class LessonServiceImplTest extends AbstractIntegrationTest {
         );
     }
 
+    @Test
+    public void getLessonDensityForTeacher() {
+        LessonDensity density = service.getLessonDensityForTeacher(1, new LocalDate(2013, 1, 1), new LocalDate(2013, 1, 31));
+        assertEquals(31, density.getCounts().length);
+        assertEquals(31, density.getMinutes().length);
+        int[] counts = new int[31];
+        int[] minutes = new int[31];
+        counts[6] = 1;
+        minutes[6] = 150;
+        counts[8] = 1;
+        minutes[8] = 150;
+        counts[14] = 1;
+        minutes[14] = 105;
+        assertArrayEquals(counts, density.getCounts());
+        assertArrayEquals(minutes, density.getMinutes());
+    }
+
+    @Test
+    public void getLessonDensityForTeacher_several_lessons_per_day() {
+        ID id = service.createLessonForTeacher(1, new LessonForm(
+                new LocalDate(2013, 1, 7),
+                new LocalTime(9, 0),
+                new LocalTime(10, 0),
+                1,
+                "Any location"));
+        assertTrue(id.isSuccess());
+        LessonDensity density = service.getLessonDensityForTeacher(1, new LocalDate(2013, 1, 7), new LocalDate(2013, 1, 7));
+        assertArrayEquals(new int[]{2}, density.getCounts());
+        assertArrayEquals(new int[]{210}, density.getMinutes());
+    }
+
+    @Test
+    public void getLessonDensityForTeacher_other_teacher() {
+        LessonDensity density = service.getLessonDensityForTeacher(2, new LocalDate(2013, 1, 1), new LocalDate(2013, 1, 31));
+        assertArrayEquals(new int[31], density.getCounts());
+    }
+
+    @Test(expected = LessonDensityRangeException.class)
+    public void getLessonDensityForTeacher_inverted() {
+        service.getLessonDensityForTeacher(1, new LocalDate(2013, 1, 31), new LocalDate(2013, 1, 1));
+    }
+
+    @Test(expected = LessonDensityRangeException.class)
+    public void getLessonDensityForTeacher_too_long() {
+        service.getLessonDensityForTeacher(1, new LocalDate(2013, 1, 1), new LocalDate(2014, 12, 31));
+    }
+
     @Test
     public void createLessonForTeacher() {
         ID id = service.createLessonForTeacher(
@@ -252,6 +416,33 @@ public class LessonServiceImplTest extends AbstractIntegrationTest {
         assertEquals(new LocalTime(12, 15), lesson.getTo());
     }
 
+    @Test(expected = ValidationException.class)
+    public void changeLessonForTeacher_time_order() {
+        service.changeLessonForTeacher(1, 2, new LessonChange(0, -150));
+    }
+
+    @Test(expected = ValidationException.class)
+    public void moveLessonForTeacher_across_midnight() {
+        ID id = service.createLessonForTeacher(1, new LessonForm(
+                new LocalDate(2013, 1, 12),
+                new LocalTime(22, 30),
+                new LocalTime(23, 30),
+                1,
+                "Test"));
+        assertTrue(id.isSuccess());
+        service.moveLessonForTeacher(1, id.getValue(), new LessonChange(0, 60));
+    }
+
+    @Test(expected = ValidationException.class)
+    public void editLessonForTeacher_time_order() {
+        service.editLessonForTeacher(1, 2, new LessonForm(
+                new LocalDate(2013, 1, 7),
+                new LocalTime(18, 0),
+                new LocalTime(17, 0),
+                1,
+                "Home"));
+    }
+
     @Test
     public void changeLessonForTeacher_plus_days() {
         ID id = service.createLessonForTeacher(1, new LessonForm(
@@ -290,4 +481,812 @@ public class LessonServiceImplTest extends AbstractIntegrationTest {
         assertEquals(new LocalTime(12, 30), lesson.getTo());
     }
 
+    @Test
+    public void createLessonForTeacher_conflict() {
+        try {
+            service.createLessonForTeacher(1, new LessonForm(
+                    new LocalDate(2013, 1, 7),
+                    new LocalTime(17, 0),
+                    new LocalTime(18, 30),
+                    1,
+                    "Test"));
+            fail("Overlap not detected");
+        } catch (LessonConflictException ex) {
+            assertEquals(1, ex.getConflicts().size());
+            assertEquals(2, ex.getConflicts().get(0).getId());
+            assertEquals(new LocalDateTime(2013, 1, 7, 18, 0), ex.getConflicts().get(0).getFrom());
+            assertEquals(new LocalDateTime(2013, 1, 7, 20, 30), ex.getConflicts().get(0).getTo());
+        }
+    }
+
+    @Test
+    public void createLessonForTeacher_next_to_another() {
+        ID id = service.createLessonForTeacher(1, new LessonForm(
+                new LocalDate(2013, 1, 7),
+                new LocalTime(20, 30),
+                new LocalTime(21, 30),
+                1,
+                "Test"));
+        assertTrue(id.isSuccess());
+    }
+
+    @Test
+    public void createLessonForTeacher_conflict_with_created_lesson() {
+        ID id = service.createLessonForTeacher(1, new LessonForm(
+                new LocalDate(2013, 3, 4),
+                new LocalTime(10, 0),
+                new LocalTime(11, 0),
+                1,
+                "Test"));
+        assertTrue(id.isSuccess());
+        try {
+            service.createLessonForTeacher(1, new LessonForm(
+                    new LocalDate(2013, 3, 4),
+                    new LocalTime(10, 30),
+                    new LocalTime(11, 30),
+                    3,
+                    "Test"));
+            fail("Overlap not detected");
+        } catch (LessonConflictException ex) {
+            assertEquals(1, ex.getConflicts().size());
+            assertEquals(id.getValue(), ex.getConflicts().get(0).getId());
+        }
+    }
+
+    @Test
+    public void lessonIndex_kept_after_commit() {
+        lessonIntervalIndex.getConflicts(1, 0, new LocalDate(2013, 3, 4), new LocalTime(10, 0), new LocalTime(11, 0));
+        TransactionSynchronizationManager.initSynchronization();
+        lessonIntervalIndex.put(1, 1000, new LocalDate(2013, 3, 4), new LocalTime(10, 0), new LocalTime(11, 0));
+        commit();
+        long count = dataSource.getStatementCount();
+        assertEquals(1, lessonIntervalIndex.getConflicts(1, 0, new LocalDate(2013, 3, 4), new LocalTime(10, 30), new LocalTime(11, 30)).size());
+        assertEquals(0, dataSource.getStatementCount() - count);
+    }
+
+    @Test
+    public void lessonIndex_loaded_before_commit_is_dropped() {
+        // Lesson recorded while the index is not loaded
+        TransactionSynchronizationManager.initSynchronization();
+        lessonIntervalIndex.put(1, 1000, new LocalDate(2013, 3, 4), new LocalTime(10, 0), new LocalTime(11, 0));
+        // Index loaded meanwhile, as a concurrent transaction would do without the lesson
+        lessonIntervalIndex.getConflicts(1, 0, new LocalDate(2013, 3, 4), new LocalTime(10, 0), new LocalTime(11, 0));
+        commit();
+        // Loaded again
+        long count = dataSource.getStatementCount();
+        lessonIntervalIndex.getConflicts(1, 0, new LocalDate(2013, 3, 4), new LocalTime(10, 0), new LocalTime(11, 0));
+        assertTrue(dataSource.getStatementCount() > count);
+    }
+
+    @Test
+    public void ownershipIndex_one_synchronization_per_transaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        assertTrue(ownershipIndex.ownsSchool(1, 1));
+        assertTrue(ownershipIndex.ownsStudent(1, 1));
+        assertTrue(ownershipIndex.ownsLesson(1, 1));
+        assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+        commit();
+    }
+
+    @Test
+    public void ownershipIndex_loaded_before_commit_of_eviction_is_dropped() {
+        TransactionSynchronizationManager.initSynchronization();
+        ownershipIndex.evict(1);
+        // Index loaded meanwhile, as a concurrent transaction would do
+        assertTrue(ownershipIndex.ownsSchool(1, 1));
+        commit();
+        // Loaded again
+        long count = ownershipIndex.getLoadCount();
+        assertTrue(ownershipIndex.ownsSchool(1, 1));
+        assertEquals(count + 1, ownershipIndex.getLoadCount());
+    }
+
+    /**
+     * Completes the synchronizations registered since {@link TransactionSynchronizationManager#initSynchronization()}
+     * as for a committed transaction
+     */
+    private static void commit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+    }
+
+    @Test
+    public void editLessonForTeacher_same_period() {
+        Ack ack = service.editLessonForTeacher(1, 2, new LessonForm(
+                new LocalDate(2013, 1, 7),
+                new LocalTime(18, 0),
+                new LocalTime(20, 0),
+                1,
+                "Home"));
+        assertTrue(ack.isSuccess());
+    }
+
+    @Test
+    public void moveLessonForTeacher_conflict() {
+        try {
+            service.moveLessonForTeacher(1, 3, new LessonChange(-2, 60));
+            fail("Overlap not detected");
+        } catch (LessonConflictException ex) {
+            assertEquals(1, ex.getConflicts().size());
+            assertEquals(2, ex.getConflicts().get(0).getId());
+        }
+        // The lesson has not moved
+        LessonDetails lesson = service.getLessonDetails(1, 3);
+        assertEquals(new LocalDate(2013, 1, 9), lesson.getDate());
+    }
+
+    @Test
+    public void moveLessonForTeacher_after_delete() {
+        Ack ack = service.deleteLessonForTeacher(1, 2);
+        assertTrue(ack.isSuccess());
+        ack = service.moveLessonForTeacher(1, 3, new LessonChange(-2, 0));
+        assertTrue(ack.isSuccess());
+    }
+
+    @Test
+    public void getLessonsForTeacher_cached_week() {
+        LessonRange range = new LessonRange(new LocalDateTime(2013, 1, 7, 0, 0, 0), new LocalDateTime(2013, 1, 13, 23, 59, 59));
+        long hits = planningCache.getStats().hitCount();
+        long misses = planningCache.getStats().missCount();
+        assertEquals(2, service.getLessonsForTeacher(1, range).getLessons().size());
+        assertEquals(misses + 1, planningCache.getStats().missCount());
+        assertEquals(2, service.getLessonsForTeacher(1, range).getLessons().size());
+        assertEquals(hits + 1, planningCache.getStats().hitCount());
+        assertEquals(misses + 1, planningCache.getStats().missCount());
+    }
+
+    @Test
+    public void getLessonsForTeacher_after_move_to_next_week() {
+        LessonRange range = new LessonRange(new LocalDateTime(2013, 1, 1, 0, 0, 0), new LocalDateTime(2013, 1, 31, 23, 59, 59));
+        assertEquals(asList(2, 3, 6), getLessonIds(service.getLessonsForTeacher(1, range)));
+        // Moves the lesson 3 from the 9th to the 16th
+        Ack ack = service.moveLessonForTeacher(1, 3, new LessonChange(7, 0));
+        assertTrue(ack.isSuccess());
+        // Both weeks are up to date
+        assertEquals(asList(2, 6, 3), getLessonIds(service.getLessonsForTeacher(1, range)));
+    }
+
+    @Test
+    public void getLessonsForTeacher_after_create() {
+        LessonRange range = new LessonRange(new LocalDateTime(2013, 1, 7, 0, 0, 0), new LocalDateTime(2013, 1, 13, 23, 59, 59));
+        assertEquals(asList(2, 3), getLessonIds(service.getLessonsForTeacher(1, range)));
+        ID id = service.createLessonForTeacher(1, new LessonForm(
+                new LocalDate(2013, 1, 8),
+                new LocalTime(10, 0),
+                new LocalTime(11, 0),
+                1,
+                "Test"));
+        assertTrue(id.isSuccess());
+        assertEquals(asList(2, id.getValue(), 3), getLessonIds(service.getLessonsForTeacher(1, range)));
+    }
+
+    @Test
+    public void getLessonsForTeacher_prefetched_week() {
+        LocalDateTime from = new LocalDateTime(2013, 1, 14, 0, 0, 0);
+        LocalDateTime to = new LocalDateTime(2013, 1, 20, 23, 59, 59);
+        long prefetches = planningCache.getPrefetchCount();
+        long used = planningCache.getPrefetchUsedCount();
+        long misses = planningCache.getStats().missCount();
+        planningCache.prefetch(1, from, to);
+        assertEquals(prefetches + 1, planningCache.getPrefetchCount());
+        // Read from the cache
+        assertEquals(asList(6), getLessonIds(service.getLessonsForTeacher(1, new LessonRange(from, to))));
+        assertEquals(misses, planningCache.getStats().missCount());
+        assertEquals(used + 1, planningCache.getPrefetchUsedCount());
+        // Already cached
+        planningCache.prefetch(1, from, to);
+        assertEquals(prefetches + 1, planningCache.getPrefetchCount());
+    }
+
+    @Test
+    public void planningCache_week_changed_while_loading_is_not_kept() {
+        final TeacherGenerations generations = new TeacherGenerations();
+        LessonDao lessonDao = mock(LessonDao.class);
+        when(lessonDao.findLessonsWithStudentsForTeacher(eq(1), any(LocalDateTime.class), any(LocalDateTime.class))).thenAnswer(new Answer<List<Lesson>>() {
+            @Override
+            public List<Lesson> answer(InvocationOnMock invocation) {
+                // Change committed by a concurrent request while the week is being read
+                generations.bump(1);
+                return Collections.emptyList();
+            }
+        });
+        PlanningCache cache = new PlanningCache(lessonDao, mock(LessonSeriesDao.class), generations);
+        LocalDateTime from = new LocalDateTime(2013, 1, 7, 0, 0, 0);
+        LocalDateTime to = new LocalDateTime(2013, 1, 13, 23, 59, 59);
+        cache.getLessons(1, from, to);
+        // Loaded again
+        cache.getLessons(1, from, to);
+        verify(lessonDao, times(2)).findLessonsWithStudentsForTeacher(eq(1), any(LocalDateTime.class), any(LocalDateTime.class));
+    }
+
+    private static List<Integer> getLessonIds(Lessons lessons) {
+        List<Integer> ids = new ArrayList<>();
+        for (Lesson lesson : lessons.getLessons()) {
+            ids.add(lesson.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void getLessonsForTeacher_shared_summaries() {
+        Lessons result = service.getLessonsForTeacher(1, new LessonRange(new LocalDateTime(2013, 1, 1, 0, 0, 0), new LocalDateTime(2013, 1, 31, 23, 59, 59)));
+        List<Lesson> lessons = result.getLessons();
+        assertEquals(3, lessons.size());
+        // Lessons 2 & 3 are for the same student
+        Lesson lesson2 = lessons.get(0);
+        Lesson lesson3 = lessons.get(1);
+        assertEquals(2, lesson2.getId());
+        assertEquals(3, lesson3.getId());
+        assertSame(lesson2.getStudent(), lesson3.getStudent());
+        // Student and school projections
+        StudentSummary student = lesson2.getStudent();
+        assertEquals("A. Albert", student.getName());
+        assertEquals("My school 1", student.getSchool().getName());
+        assertEquals("#FF0000", student.getSchool().getColor());
+    }
+
+    @Test
+    public void studentHours_create_edit_delete() {
+        assertEquals(new BigDecimal("11.00"), service.getStudentHours(1, 1));
+        assertEquals(new BigDecimal("3.50"), service.getStudentHours(1, 3));
+        // Creation
+        ID id = service.createLessonForTeacher(1, new LessonForm(
+                new LocalDate(2013, 4, 1),
+                new LocalTime(11, 0),
+                new LocalTime(12, 15),
+                1,
+                "Test"));
+        assertTrue(id.isSuccess());
+        assertEquals(new BigDecimal("12.25"), service.getStudentHours(1, 1));
+        // Edition, for another student
+        Ack ack = service.editLessonForTeacher(1, id.getValue(), new LessonForm(
+                new LocalDate(2013, 4, 1),
+                new LocalTime(11, 0),
+                new LocalTime(11, 30),
+                3,
+                "Test"));
+        assertTrue(ack.isSuccess());
+        assertEquals(new BigDecimal("11.00"), service.getStudentHours(1, 1));
+        assertEquals(new BigDecimal("4.00"), service.getStudentHours(1, 3));
+        // Deletion
+        ack = service.deleteLessonForTeacher(1, id.getValue());
+        assertTrue(ack.isSuccess());
+        assertEquals(new BigDecimal("3.50"), service.getStudentHours(1, 3));
+    }
+
+    @Test
+    public void studentHours_change_and_move() {
+        // Lesson 2 is 18:00 - 20:30
+        Ack ack = service.changeLessonForTeacher(1, 2, new LessonChange(1, 30));
+        assertTrue(ack.isSuccess());
+        assertEquals(new BigDecimal("11.50"), service.getStudentHours(1, 1));
+        // Moving does not change the duration
+        ack = service.moveLessonForTeacher(1, 2, new LessonChange(-1, -60));
+        assertTrue(ack.isSuccess());
+        assertEquals(new BigDecimal("11.50"), service.getStudentHours(1, 1));
+    }
+
+    @Test
+    public void studentHours_reconcile_nothing() {
+        assertEquals(0, studentTotalReconciliationTask.reconcile());
+    }
+
+    @Test
+    public void studentHours_reconcile() throws SQLException {
+        execute("UPDATE STUDENT_TOTALS SET MINUTES = 10 WHERE STUDENT = 1");
+        execute("DELETE FROM STUDENT_TOTALS WHERE STUDENT = 3");
+        assertEquals(new BigDecimal("0.17"), service.getStudentHours(1, 1));
+        assertEquals(BigDecimal.ZERO, service.getStudentHours(1, 3));
+        // Reconciliation
+        assertEquals(2, studentTotalReconciliationTask.reconcile());
+        assertEquals(new BigDecimal("11.00"), service.getStudentHours(1, 1));
+        assertEquals(new BigDecimal("3.50"), service.getStudentHours(1, 3));
+    }
+
+    @Test
+    public void monthlyMinutes_create_and_delete() throws Exception {
+        ID id = service.createLessonForTeacher(1, new LessonForm(
+                new LocalDate(2013, 3, 4),
+                new LocalTime(11, 0),
+                new LocalTime(12, 15),
+                3,
+                "Test"));
+        assertTrue(id.isSuccess());
+        assertMonthlyMinutes(3, 2013, 3, 75);
+        // Deletion
+        Ack ack = service.deleteLessonForTeacher(1, id.getValue());
+        assertTrue(ack.isSuccess());
+        assertMonthlyMinutes(3, 2013, 3, 0);
+    }
+
+    @Test
+    public void monthlyMinutes_edit_for_another_student() throws Exception {
+        // Lesson 2 is 2013-01-07 18:00 - 20:30 for student 1
+        Ack ack = service.editLessonForTeacher(1, 2, new LessonForm(
+                new LocalDate(2013, 2, 4),
+                new LocalTime(18, 0),
+                new LocalTime(19, 0),
+                3,
+                "Home"));
+        assertTrue(ack.isSuccess());
+        assertMonthlyMinutes(1, 2013, 1, 150);
+        assertMonthlyMinutes(1, 2013, 2, 300);
+        assertMonthlyMinutes(3, 2013, 1, 105);
+        assertMonthlyMinutes(3, 2013, 2, 165);
+    }
+
+    @Test(expected = AccessDeniedException.class)
+    public void monthlyMinutes_edit_for_student_of_another_teacher() {
+        service.editLessonForTeacher(1, 2, new LessonForm(
+                new LocalDate(2013, 1, 7),
+                new LocalTime(18, 0),
+                new LocalTime(20, 30),
+                4,
+                "Home"));
+    }
+
+    @Test
+    public void monthlyMinutes_move_to_next_month() throws Exception {
+        // Lesson 3 is 2013-01-09 18:00 - 20:30, moved to 2013-02-04 and extended by 30 minutes
+        Ack ack = service.changeLessonForTeacher(1, 3, new LessonChange(26, 30));
+        assertTrue(ack.isSuccess());
+        assertMonthlyMinutes(1, 2013, 1, 150);
+        assertMonthlyMinutes(1, 2013, 2, 480);
+    }
+
+    @Test
+    public void monthlyMinutes_rebuild() throws Exception {
+        execute("DELETE FROM TEACHER_MONTHLY_MINUTES WHERE STUDENT = 1");
+        execute("UPDATE TEACHER_MONTHLY_MINUTES SET MINUTES = 10 WHERE STUDENT = 3");
+        assertEquals(5, teacherMonthlyMinutesDao.rebuild());
+        assertMonthlyMinutes(1, 2012, 12, 60);
+        assertMonthlyMinutes(1, 2013, 1, 300);
+        assertMonthlyMinutes(3, 2013, 2, 105);
+    }
+
+    @Test
+    public void lessonSeries_getLessonsForTeacher() {
+        int series = createMarchSeries();
+        LessonRange range = new LessonRange(new LocalDateTime(2013, 3, 1, 0, 0, 0), new LocalDateTime(2013, 3, 31, 23, 59, 59));
+        Lessons result = service.getLessonsForTeacher(1, range);
+        assertEquals(asList(occurrence(series, 0), occurrence(series, 1), occurrence(series, 2), occurrence(series, 3)), getLessonIds(result));
+        List<Lesson> lessons = result.getLessons();
+        assertEquals(new LocalDate(2013, 3, 18), lessons.get(2).getDate());
+        assertEquals(new LocalTime(10, 0), lessons.get(2).getFrom());
+        assertEquals(new LocalTime(11, 0), lessons.get(2).getTo());
+        assertEquals("C. Charles", lessons.get(2).getStudent().getName());
+        // Details of an occurrence
+        LessonDetails details = service.getLessonDetails(1, occurrence(series, 1));
+        assertEquals(new LocalDate(2013, 3, 11), details.getDate());
+        assertEquals("Factory", details.getLocation());
+    }
+
+    @Test
+    public void lessonSeries_biweekly() {
+        ID id = service.createLessonSeriesForTeacher(1, new LessonSeriesForm(
+                new LocalDate(2013, 3, 4),
+                new LocalTime(10, 0),
+                new LocalTime(11, 0),
+                3,
+                "Factory",
+                LessonPeriod.BIWEEKLY,
+                new LocalDate(2013, 3, 31)));
+        assertTrue(id.isSuccess());
+        LessonRange range = new LessonRange(new LocalDateTime(2013, 3, 1, 0, 0, 0), new LocalDateTime(2013, 3, 31, 23, 59, 59));
+        List<Lesson> lessons = service.getLessonsForTeacher(1, range).getLessons();
+        assertEquals(2, lessons.size());
+        assertEquals(new LocalDate(2013, 3, 4), lessons.get(0).getDate());
+        assertEquals(new LocalDate(2013, 3, 18), lessons.get(1).getDate());
+        assertEquals(new BigDecimal("5.50"), service.getStudentHours(1, 3));
+    }
+
+    @Test
+    public void lessonSeries_getLessonsForStudent_and_density() {
+        int series = createMarchSeries();
+        StudentLessons studentLessons = service.getLessonsForStudent(1, 3, new LocalDate(2013, 3, 1), Locale.ENGLISH);
+        assertEquals(4, studentLessons.getLessons().size());
+        assertEquals(occurrence(series, 0), studentLessons.getLessons().get(0).getId());
+        assertEquals(new LocalDate(2013, 3, 25), studentLessons.getLessons().get(3).getDate());
+        LessonDensity density = service.getLessonDensityForTeacher(1, new LocalDate(2013, 3, 1), new LocalDate(2013, 3, 31));
+        assertEquals(1, density.getCounts()[3]);
+        assertEquals(60, density.getMinutes()[3]);
+        assertEquals(0, density.getCounts()[4]);
+    }
+
+    @Test
+    public void lessonSeries_studentHours_and_monthlyMinutes() throws Exception {
+        int series = createMarchSeries();
+        assertEquals(new BigDecimal("7.50"), service.getStudentHours(1, 3));
+        assertMonthlyMinutes(3, 2013, 3, 240);
+        // The totals are consistent with the series
+        assertEquals(0, studentTotalReconciliationTask.reconcile());
+        // Deletion of the series
+        Ack ack = service.deleteLessonSeriesForTeacher(1, series);
+        assertTrue(ack.isSuccess());
+        assertEquals(new BigDecimal("3.50"), service.getStudentHours(1, 3));
+        assertMonthlyMinutes(3, 2013, 3, 0);
+        LessonRange range = new LessonRange(new LocalDateTime(2013, 3, 1, 0, 0, 0), new LocalDateTime(2013, 3, 31, 23, 59, 59));
+        assertTrue(service.getLessonsForTeacher(1, range).getLessons().isEmpty());
+    }
+
+    @Test
+    public void lessonSeries_monthlyMinutes_rebuild() throws Exception {
+        createMarchSeries();
+        execute("DELETE FROM TEACHER_MONTHLY_MINUTES WHERE STUDENT = 3");
+        assertEquals(6, teacherMonthlyMinutesDao.rebuild());
+        assertMonthlyMinutes(3, 2013, 3, 240);
+    }
+
+    @Test
+    public void lessonSeries_edit_occurrence() {
+        int series = createMarchSeries();
+        // The occurrence becomes a lesson
+        Ack ack = service.editLessonForTeacher(1, occurrence(series, 1), new LessonForm(
+                new LocalDate(2013, 3, 12),
+                new LocalTime(14, 0),
+                new LocalTime(15, 30),
+                3,
+                "Office"));
+        assertTrue(ack.isSuccess());
+        assertEquals(new BigDecimal("8.00"), service.getStudentHours(1, 3));
+        LessonRange range = new LessonRange(new LocalDateTime(2013, 3, 1, 0, 0, 0), new LocalDateTime(2013, 3, 31, 23, 59, 59));
+        List<Lesson> lessons = service.getLessonsForTeacher(1, range).getLessons();
+        assertEquals(4, lessons.size());
+        Lesson lesson = lessons.get(1);
+        assertTrue(lesson.getId() > 0);
+        assertEquals(new LocalDate(2013, 3, 12), lesson.getDate());
+        assertEquals("Office", lesson.getLocation());
+        // The ID of the occurrence leads to the lesson
+        LessonDetails details = service.getLessonDetails(1, occurrence(series, 1));
+        assertEquals(lesson.getId(), details.getId());
+        // The lesson is kept when the series is deleted
+        ack = service.deleteLessonSeriesForTeacher(1, series);
+        assertTrue(ack.isSuccess());
+        assertEquals(asList(lesson.getId()), getLessonIds(service.getLessonsForTeacher(1, range)));
+        assertEquals(new BigDecimal("5.00"), service.getStudentHours(1, 3));
+        assertEquals(0, studentTotalReconciliationTask.reconcile());
+    }
+
+    @Test
+    public void lessonSeries_comment_occurrence() {
+        int series = createMarchSeries();
+        Comment comment = service.editLessonComment(1, occurrence(series, 2), CommentFormat.RAW, new CommentsForm(0, "Occurrence"));
+        assertNotNull(comment);
+        Comments comments = service.getLessonComments(1, occurrence(series, 2), 0, 10, 50, CommentFormat.RAW);
+        assertEquals(1, comments.getList().size());
+        assertEquals("Occurrence", comments.getList().get(0).getContent());
+        // Same total
+        assertEquals(new BigDecimal("7.50"), service.getStudentHours(1, 3));
+        assertEquals(0, studentTotalReconciliationTask.reconcile());
+    }
+
+    @Test
+    public void lessonSeries_delete_occurrence() throws Exception {
+        int series = createMarchSeries();
+        Ack ack = service.deleteLessonForTeacher(1, occurrence(series, 2));
+        assertTrue(ack.isSuccess());
+        LessonRange range = new LessonRange(new LocalDateTime(2013, 3, 1, 0, 0, 0), new LocalDateTime(2013, 3, 31, 23, 59, 59));
+        assertEquals(asList(occurrence(series, 0), occurrence(series, 1), occurrence(series, 3)), getLessonIds(service.getLessonsForTeacher(1, range)));
+        assertEquals(new BigDecimal("6.50"), service.getStudentHours(1, 3));
+        assertMonthlyMinutes(3, 2013, 3, 180);
+        assertEquals(0, studentTotalReconciliationTask.reconcile());
+        // The time of the deleted occurrence is free again
+        ID id = service.createLessonForTeacher(1, new LessonForm(
+                new LocalDate(2013, 3, 18),
+                new LocalTime(10, 0),
+                new LocalTime(11, 0),
+                1,
+                "Test"));
+        assertTrue(id.isSuccess());
+    }
+
+    @Test(expected = AccessDeniedException.class)
+    public void lessonSeries_deleted_occurrence_access_denied() {
+        int series = createMarchSeries();
+        service.deleteLessonForTeacher(1, occurrence(series, 2));
+        service.getLessonDetails(1, occurrence(series, 2));
+    }
+
+    @Test(expected = AccessDeniedException.class)
+    public void lessonSeries_other_teacher() {
+        int series = createMarchSeries();
+        service.getLessonDetails(2, occurrence(series, 0));
+    }
+
+    @Test(expected = AccessDeniedException.class)
+    public void lessonSeries_delete_other_teacher() {
+        int series = createMarchSeries();
+        service.deleteLessonSeriesForTeacher(2, series);
+    }
+
+    @Test
+    public void lessonSeries_beyond_max_id() {
+        int series = createMarchSeries();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("ALTER TABLE LESSON_SERIES ALTER COLUMN ID RESTART WITH " + (TLessonSeries.MAX_SERIES_ID + 1));
+        try {
+            service.createLessonSeriesForTeacher(1, new LessonSeriesForm(
+                    new LocalDate(2013, 3, 4),
+                    new LocalTime(14, 0),
+                    new LocalTime(15, 0),
+                    3,
+                    "Factory",
+                    LessonPeriod.WEEKLY,
+                    new LocalDate(2013, 3, 31)));
+            fail("The series should not have been created");
+        } catch (LessonSeriesLimitException ex) {
+            // Rolled back
+            assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM LESSON_SERIES WHERE ID > ?", Integer.class, series - 1));
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE LESSON_SERIES ALTER COLUMN ID RESTART WITH " + (series + 1));
+        }
+    }
+
+    @Test(expected = LessonSeriesRangeException.class)
+    public void lessonSeries_inverted() {
+        service.createLessonSeriesForTeacher(1, new LessonSeriesForm(
+                new LocalDate(2013, 3, 4),
+                new LocalTime(10, 0),
+                new LocalTime(11, 0),
+                3,
+                "Factory",
+                LessonPeriod.WEEKLY,
+                new LocalDate(2013, 3, 1)));
+    }
+
+    @Test(expected = LessonSeriesRangeException.class)
+    public void lessonSeries_too_long() {
+        service.createLessonSeriesForTeacher(1, new LessonSeriesForm(
+                new LocalDate(2013, 3, 4),
+                new LocalTime(10, 0),
+                new LocalTime(11, 0),
+                3,
+                "Factory",
+                LessonPeriod.WEEKLY,
+                new LocalDate(2033, 3, 4)));
+    }
+
+    @Test
+    public void lessonSeries_conflict() {
+        try {
+            // Lesson 3 is 2013-01-09 18:00 - 20:30
+            service.createLessonSeriesForTeacher(1, new LessonSeriesForm(
+                    new LocalDate(2013, 1, 2),
+                    new LocalTime(19, 0),
+                    new LocalTime(20, 0),
+                    3,
+                    "Factory",
+                    LessonPeriod.WEEKLY,
+                    new LocalDate(2013, 1, 31)));
+            fail("Overlap not detected");
+        } catch (LessonConflictException ex) {
+            assertEquals(1, ex.getConflicts().size());
+            assertEquals(3, ex.getConflicts().get(0).getId());
+        }
+    }
+
+    @Test
+    public void lessonSeries_conflict_with_occurrence() {
+        int series = createMarchSeries();
+        try {
+            service.createLessonForTeacher(1, new LessonForm(
+                    new LocalDate(2013, 3, 18),
+                    new LocalTime(10, 30),
+                    new LocalTime(11, 30),
+                    1,
+                    "Test"));
+            fail("Overlap not detected");
+        } catch (LessonConflictException ex) {
+            assertEquals(1, ex.getConflicts().size());
+            assertEquals(occurrence(series, 2), ex.getConflicts().get(0).getId());
+        }
+    }
+
+    @Test
+    public void lessons_copy_week() throws Exception {
+        // Indexes already loaded
+        ownershipIndex.ownsStudent(1, 1);
+        lessonIntervalIndex.getConflicts(1, 0, new LocalDate(2013, 1, 14), new LocalTime(0, 0), new LocalTime(1, 0));
+        long count = dataSource.getStatementCount();
+        // Week of the 7th of January copied to the next one
+        LessonSelection selection = service.createLessonsForTeacher(1, new LessonsForm(asList(
+                new LessonForm(new LocalDate(2013, 1, 14), new LocalTime(18, 0), new LocalTime(20, 30), 1, "Home"),
+                new LessonForm(new LocalDate(2013, 1, 16), new LocalTime(18, 0), new LocalTime(20, 30), 1, "Home"),
+                new LessonForm(new LocalDate(2013, 1, 17), new LocalTime(9, 0), new LocalTime(10, 45), 3, "Factory")
+        )));
+        // Insertion, IDs, student totals and monthly minutes
+        assertEquals(6, dataSource.getStatementCount() - count);
+        List<Integer> ids = selection.getIds();
+        assertEquals(3, ids.size());
+        LessonRange range = new LessonRange(new LocalDateTime(2013, 1, 14, 0, 0, 0), new LocalDateTime(2013, 1, 20, 23, 59, 59));
+        assertEquals(asList(ids.get(0), 6, ids.get(1), ids.get(2)), getLessonIds(service.getLessonsForTeacher(1, range)));
+        assertEquals(new LocalDate(2013, 1, 17), service.getLessonDetails(1, ids.get(2)).getDate());
+        assertTrue(ownershipIndex.ownsLesson(1, ids.get(0)));
+        assertEquals(new BigDecimal("16.00"), service.getStudentHours(1, 1));
+        assertMonthlyMinutes(1, 2013, 1, 600);
+        assertMonthlyMinutes(3, 2013, 1, 210);
+        assertEquals(0, studentTotalReconciliationTask.reconcile());
+    }
+
+    @Test
+    public void lessons_create_statements_independent_of_size() throws Exception {
+        // Indexes and totals already loaded
+        service.createLessonsForTeacher(1, new LessonsForm(asList(
+                new LessonForm(new LocalDate(2013, 3, 4), new LocalTime(10, 0), new LocalTime(11, 0), 1, "Test")
+        )));
+        long count = dataSource.getStatementCount();
+        service.createLessonsForTeacher(1, new LessonsForm(asList(
+                new LessonForm(new LocalDate(2013, 3, 5), new LocalTime(10, 0), new LocalTime(11, 0), 1, "Test")
+        )));
+        long single = dataSource.getStatementCount() - count;
+        count = dataSource.getStatementCount();
+        LessonSelection selection = service.createLessonsForTeacher(1, new LessonsForm(asList(
+                new LessonForm(new LocalDate(2013, 3, 6), new LocalTime(10, 0), new LocalTime(11, 0), 1, "Test"),
+                new LessonForm(new LocalDate(2013, 3, 6), new LocalTime(14, 0), new LocalTime(15, 0), 1, "Test"),
+                new LessonForm(new LocalDate(2013, 3, 7), new LocalTime(10, 0), new LocalTime(11, 0), 1, "Test"),
+                new LessonForm(new LocalDate(2013, 3, 8), new LocalTime(10, 0), new LocalTime(11, 0), 1, "Test")
+        )));
+        // Same statements whatever the number of lessons
+        assertEquals(single, dataSource.getStatementCount() - count);
+        LessonRange range = new LessonRange(new LocalDateTime(2013, 3, 6, 0, 0, 0), new LocalDateTime(2013, 3, 8, 23, 59, 59));
+        assertEquals(selection.getIds(), getLessonIds(service.getLessonsForTeacher(1, range)));
+    }
+
+    @Test
+    public void lessons_create_conflict_between_lessons() {
+        try {
+            service.createLessonsForTeacher(1, new LessonsForm(asList(
+                    new LessonForm(new LocalDate(2013, 3, 4), new LocalTime(10, 0), new LocalTime(11, 0), 1, "Test"),
+                    new LessonForm(new LocalDate(2013, 3, 4), new LocalTime(10, 30), new LocalTime(11, 30), 3, "Test")
+            )));
+            fail("Overlap not detected");
+        } catch (LessonConflictException ex) {
+            assertEquals(2, ex.getConflicts().size());
+        }
+        LessonRange range = new LessonRange(new LocalDateTime(2013, 3, 4, 0, 0, 0), new LocalDateTime(2013, 3, 4, 23, 59, 59));
+        assertTrue(service.getLessonsForTeacher(1, range).getLessons().isEmpty());
+    }
+
+    @Test
+    public void lessons_create_conflict() {
+        try {
+            service.createLessonsForTeacher(1, new LessonsForm(asList(
+                    new LessonForm(new LocalDate(2013, 1, 7), new LocalTime(10, 0), new LocalTime(11, 0), 1, "Test"),
+                    new LessonForm(new LocalDate(2013, 1, 7), new LocalTime(17, 0), new LocalTime(18, 30), 1, "Test")
+            )));
+            fail("Overlap not detected");
+        } catch (LessonConflictException ex) {
+            assertEquals(1, ex.getConflicts().size());
+            assertEquals(2, ex.getConflicts().get(0).getId());
+        }
+        // None of the lessons has been created
+        LessonRange range = new LessonRange(new LocalDateTime(2013, 1, 7, 0, 0, 0), new LocalDateTime(2013, 1, 7, 23, 59, 59));
+        assertEquals(asList(2), getLessonIds(service.getLessonsForTeacher(1, range)));
+    }
+
+    @Test(expected = AccessDeniedException.class)
+    public void lessons_create_access_denied() {
+        service.createLessonsForTeacher(2, new LessonsForm(asList(
+                new LessonForm(new LocalDate(2013, 3, 4), new LocalTime(10, 0), new LocalTime(11, 0), 1, "Test")
+        )));
+    }
+
+    @Test
+    public void lessons_move() {
+        // Lesson 2 takes the former place of lesson 3
+        Ack ack = service.moveLessonsForTeacher(1, new LessonSelectionChange(asList(2, 3), new LessonChange(2, 0)));
+        assertTrue(ack.isSuccess());
+        assertEquals(new LocalDate(2013, 1, 9), service.getLessonDetails(1, 2).getDate());
+        assertEquals(new LocalDate(2013, 1, 11), service.getLessonDetails(1, 3).getDate());
+        assertEquals(new LocalTime(18, 0), service.getLessonDetails(1, 3).getFrom());
+        assertEquals(0, studentTotalReconciliationTask.reconcile());
+    }
+
+    @Test
+    public void lessons_move_to_another_month() throws Exception {
+        Ack ack = service.moveLessonsForTeacher(1, new LessonSelectionChange(asList(4, 5), new LessonChange(-7, 30)));
+        assertTrue(ack.isSuccess());
+        LessonDetails lesson = service.getLessonDetails(1, 4);
+        assertEquals(new LocalDate(2013, 1, 25), lesson.getDate());
+        assertEquals(new LocalTime(18, 30), lesson.getFrom());
+        assertEquals(new LocalTime(21, 0), lesson.getTo());
+        assertMonthlyMinutes(1, 2013, 1, 450);
+        assertMonthlyMinutes(1, 2013, 2, 150);
+        assertEquals(new BigDecimal("11.00"), service.getStudentHours(1, 1));
+        assertEquals(0, studentTotalReconciliationTask.reconcile());
+    }
+
+    @Test
+    public void lessons_move_conflict() {
+        try {
+            service.moveLessonsForTeacher(1, new LessonSelectionChange(asList(2, 3), new LessonChange(8, -540)));
+            fail("Overlap not detected");
+        } catch (LessonConflictException ex) {
+            assertEquals(1, ex.getConflicts().size());
+            assertEquals(6, ex.getConflicts().get(0).getId());
+        }
+        // The lessons have not moved
+        assertEquals(new LocalDate(2013, 1, 7), service.getLessonDetails(1, 2).getDate());
+    }
+
+    @Test
+    public void lessons_move_across_midnight() {
+        ID id = service.createLessonForTeacher(1, new LessonForm(
+                new LocalDate(2013, 1, 12),
+                new LocalTime(22, 30),
+                new LocalTime(23, 30),
+                1,
+                "Test"));
+        assertTrue(id.isSuccess());
+        try {
+            service.moveLessonsForTeacher(1, new LessonSelectionChange(asList(2, id.getValue()), new LessonChange(0, 60)));
+            fail("Range across midnight not detected");
+        } catch (ValidationException ex) {
+            // The lessons have not moved
+            assertEquals(new LocalTime(22, 30), service.getLessonDetails(1, id.getValue()).getFrom());
+        }
+    }
+
+    @Test(expected = AccessDeniedException.class)
+    public void lessons_move_access_denied() {
+        service.moveLessonsForTeacher(2, new LessonSelectionChange(asList(1), new LessonChange(1, 0)));
+    }
+
+    @Test
+    public void lessons_delete() throws Exception {
+        int series = createMarchSeries();
+        Ack ack = service.deleteLessonsForTeacher(1, new LessonSelection(asList(2, 3, occurrence(series, 1))));
+        assertTrue(ack.isSuccess());
+        LessonRange range = new LessonRange(new LocalDateTime(2013, 1, 1, 0, 0, 0), new LocalDateTime(2013, 3, 31, 23, 59, 59));
+        assertEquals(asList(6, 4, 5, 7, occurrence(series, 0), occurrence(series, 2), occurrence(series, 3)), getLessonIds(service.getLessonsForTeacher(1, range)));
+        assertFalse(ownershipIndex.ownsLesson(1, 2));
+        assertEquals(new BigDecimal("6.00"), service.getStudentHours(1, 1));
+        assertMonthlyMinutes(1, 2013, 1, 0);
+        assertMonthlyMinutes(3, 2013, 3, 180);
+        assertEquals(0, studentTotalReconciliationTask.reconcile());
+    }
+
+    @Test(expected = AccessDeniedException.class)
+    public void lessons_delete_access_denied() {
+        service.deleteLessonsForTeacher(1, new LessonSelection(asList(2, 1000)));
+    }
+
+    @Test(expected = LessonBatchSizeException.class)
+    public void lessons_batch_size() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 1; i <= TeacherServiceImpl.MAX_LESSON_BATCH + 1; i++) {
+            ids.add(i);
+        }
+        service.deleteLessonsForTeacher(1, new LessonSelection(ids));
+    }
+
+    /**
+     * Weekly lessons for student 3, on the four Mondays of March 2013, from 10:00 to 11:00
+     */
+    private int createMarchSeries() {
+        ID id = service.createLessonSeriesForTeacher(1, new LessonSeriesForm(
+                new LocalDate(2013, 3, 4),
+                new LocalTime(10, 0),
+                new LocalTime(11, 0),
+                3,
+                "Factory",
+                LessonPeriod.WEEKLY,
+                new LocalDate(2013, 3, 31)));
+        assertTrue(id.isSuccess());
+        return id.getValue();
+    }
+
+    private static int occurrence(int series, int index) {
+        return -(series * TLessonSeries.MAX_OCCURRENCES + index);
+    }
+
+    private void assertMonthlyMinutes(int student, int year, int month, int minutes) throws Exception {
+        assertRecordExists(
+                "SELECT * FROM TEACHER_MONTHLY_MINUTES WHERE TEACHER = 1 AND STUDENT = %d AND PYEAR = %d AND PMONTH = %d AND MINUTES = %d",
+                student, year, month, minutes);
+    }
+
 }
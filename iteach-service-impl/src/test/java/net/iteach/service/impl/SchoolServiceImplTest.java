@@ -11,6 +11,7 @@ import net.iteach.test.AbstractIntegrationTest;
 import net.sf.jstring.Strings;
 import net.sf.jstring.support.StringsLoader;
 import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.AccessDeniedException;
@@ -29,6 +30,16 @@ public class SchoolServiceImplTest extends AbstractIntegrationTest {
     @Autowired
     private TeacherService service;
 
+    @Autowired
+    private OwnershipIndex ownershipIndex;
+
+    @Before
+    public void resetIndex() {
+        // The data set is loaded behind the back of the application
+        ownershipIndex.evict(1);
+        ownershipIndex.evict(2);
+    }
+
     @Test
     public void getSchools() {
         SchoolSummaries schools = service.getSchoolsForTeacher(1);
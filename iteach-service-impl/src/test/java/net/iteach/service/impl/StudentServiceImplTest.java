@@ -4,9 +4,11 @@ import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import net.iteach.api.TeacherService;
 import net.iteach.core.model.*;
+import net.iteach.service.config.CountingDataSource;
 import net.iteach.test.AbstractIntegrationTest;
 import org.joda.money.CurrencyUnit;
 import org.joda.money.Money;
+import org.junit.Before;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.AccessDeniedException;
@@ -21,6 +23,24 @@ public class StudentServiceImplTest extends AbstractIntegrationTest {
     @Autowired
     private TeacherService service;
 
+    @Autowired
+    private PlanningCache planningCache;
+
+    @Autowired
+    private OwnershipIndex ownershipIndex;
+
+    @Autowired
+    private CountingDataSource dataSource;
+
+    @Before
+    public void resetPlanning() {
+        // The data set is loaded behind the back of the application
+        planningCache.evictTeacher(1);
+        planningCache.evictTeacher(2);
+        ownershipIndex.evict(1);
+        ownershipIndex.evict(2);
+    }
+
     @Test
     public void getStudents() {
         StudentSummaries students = service.getStudentsForTeacher(1);
@@ -73,6 +93,11 @@ public class StudentServiceImplTest extends AbstractIntegrationTest {
         assertEquals("A. Alfred", student.getName());
     }
 
+    @Test(expected = AccessDeniedException.class)
+    public void editStudent_school_of_another_teacher() {
+        service.editStudentForTeacher(1, 1, new StudentForm(2, "English", "A. Albert", Coordinates.create()));
+    }
+
     @Test(expected = AccessDeniedException.class)
     public void getStudentCoordinates_access_denied() {
         service.getStudentCoordinates(2, 1);
@@ -124,6 +149,22 @@ public class StudentServiceImplTest extends AbstractIntegrationTest {
                 student);
     }
 
+    @Test
+    public void getStudentForTeacher_one_statement() {
+        long count = dataSource.getStatementCount();
+        service.getStudentForTeacher(1, 1);
+        assertEquals(1, dataSource.getStatementCount() - count);
+    }
+
+    @Test
+    public void getStudentForTeacher_no_coordinate_no_lesson() {
+        StudentDetails student = service.getStudentForTeacher(1, 3);
+        assertEquals("C. Charles", student.getName());
+        assertEquals(3, student.getSchool().getId());
+        assertEquals(Coordinates.create(), student.getCoordinates());
+        assertEquals(BigDecimal.ZERO, student.getTotalHours());
+    }
+
     @Test(expected = AccessDeniedException.class)
     public void getStudentHours_access_denied() {
         service.getStudentHours(2, 1);
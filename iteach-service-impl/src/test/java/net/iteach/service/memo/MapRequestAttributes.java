@@ -0,0 +1,60 @@
+package net.iteach.service.memo;
+
+import org.springframework.web.context.request.AbstractRequestAttributes;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Request attributes without any servlet request, kept in a map. The session scope
+ * is not supported.
+ */
+public class MapRequestAttributes extends AbstractRequestAttributes {
+
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    @Override
+    public Object getAttribute(String name, int scope) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value, int scope) {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name, int scope) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public String[] getAttributeNames(int scope) {
+        return attributes.keySet().toArray(new String[attributes.size()]);
+    }
+
+    @Override
+    public void registerDestructionCallback(String name, Runnable callback, int scope) {
+        registerRequestDestructionCallback(name, callback);
+    }
+
+    @Override
+    public Object resolveReference(String key) {
+        return null;
+    }
+
+    @Override
+    public String getSessionId() {
+        throw new UnsupportedOperationException("No session");
+    }
+
+    @Override
+    public Object getSessionMutex() {
+        throw new UnsupportedOperationException("No session");
+    }
+
+    @Override
+    protected void updateAccessedSessionAttributes() {
+    }
+
+}
@@ -0,0 +1,110 @@
+package net.iteach.service.memo;
+
+import net.iteach.api.CoordinatesService;
+import net.iteach.api.TeacherService;
+import net.iteach.api.model.CoordinateEntity;
+import net.iteach.core.model.CoordinateType;
+import net.iteach.core.model.Coordinates;
+import net.iteach.core.model.StudentForm;
+import net.iteach.service.impl.OwnershipIndex;
+import net.iteach.test.AbstractIntegrationTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import static org.junit.Assert.*;
+
+public class RequestMemoAspectTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private TeacherService teacherService;
+
+    @Autowired
+    private CoordinatesService coordinatesService;
+
+    @Autowired
+    private OwnershipIndex ownershipIndex;
+
+    private MapRequestAttributes request;
+
+    @Before
+    public void startRequest() {
+        // The data set is loaded behind the back of the application
+        ownershipIndex.evict(1);
+        request = new MapRequestAttributes();
+        RequestContextHolder.setRequestAttributes(request);
+    }
+
+    @After
+    public void endRequest() {
+        RequestContextHolder.resetRequestAttributes();
+        request.requestCompleted();
+    }
+
+    @Test
+    public void no_request() {
+        RequestContextHolder.resetRequestAttributes();
+        coordinatesService.getCoordinates(CoordinateEntity.STUDENT, 1);
+        assertNull(RequestMemo.current());
+    }
+
+    @Test
+    public void same_arguments() {
+        Coordinates first = coordinatesService.getCoordinates(CoordinateEntity.STUDENT, 1);
+        Coordinates second = coordinatesService.getCoordinates(CoordinateEntity.STUDENT, 1);
+        assertSame(first, second);
+        RequestMemo memo = RequestMemo.current();
+        assertEquals(2, memo.getCallCount());
+        assertEquals(1, memo.getHitCount());
+    }
+
+    @Test
+    public void different_arguments() {
+        coordinatesService.getCoordinates(CoordinateEntity.STUDENT, 1);
+        coordinatesService.getCoordinates(CoordinateEntity.STUDENT, 2);
+        coordinatesService.getCoordinates(CoordinateEntity.SCHOOL, 1);
+        RequestMemo memo = RequestMemo.current();
+        assertEquals(3, memo.getCallCount());
+        assertEquals(0, memo.getHitCount());
+    }
+
+    @Test
+    public void across_service_calls() {
+        teacherService.getStudentCoordinates(1, 1);
+        teacherService.getStudentSummary(1);
+        RequestMemo memo = RequestMemo.current();
+        assertEquals(0, memo.getHitCount());
+        teacherService.getStudentCoordinates(1, 1);
+        teacherService.getStudentSummary(1);
+        // Coordinates & summary
+        assertEquals(2, memo.getHitCount());
+    }
+
+    @Test
+    public void invalidation_on_write() {
+        assertEquals("A. Albert", teacherService.getStudentSummary(1).getName());
+        assertEquals("0123456789", teacherService.getStudentCoordinates(1, 1).getCoordinateValue(CoordinateType.MOBILE_PHONE));
+        teacherService.editStudentForTeacher(1, 1, new StudentForm(1, "English", "A. Alfred",
+                Coordinates.create().add(CoordinateType.MOBILE_PHONE, "9876543210")));
+        RequestMemo memo = RequestMemo.current();
+        assertTrue(memo.getInvalidationCount() > 0);
+        int hits = memo.getHitCount();
+        assertEquals("A. Alfred", teacherService.getStudentSummary(1).getName());
+        assertEquals("9876543210", teacherService.getStudentCoordinates(1, 1).getCoordinateValue(CoordinateType.MOBILE_PHONE));
+        assertEquals(hits, memo.getHitCount());
+    }
+
+    @Test
+    public void no_cross_request() {
+        coordinatesService.getCoordinates(CoordinateEntity.STUDENT, 1);
+        RequestMemo first = RequestMemo.current();
+        RequestContextHolder.setRequestAttributes(new MapRequestAttributes());
+        coordinatesService.getCoordinates(CoordinateEntity.STUDENT, 1);
+        RequestMemo second = RequestMemo.current();
+        assertNotSame(first, second);
+        assertEquals(0, second.getHitCount());
+    }
+
+}
@@ -0,0 +1,445 @@
+package net.iteach.service.report;
+
+import net.iteach.api.TeacherService;
+import net.iteach.core.model.Ack;
+import net.iteach.core.model.ID;
+import net.iteach.core.model.LessonForm;
+import net.iteach.core.model.LessonPeriod;
+import net.iteach.core.model.LessonSeriesForm;
+import net.iteach.core.report.MonthlyReport;
+import net.iteach.core.report.RangeReport;
+import net.iteach.core.report.ReportGranularity;
+import net.iteach.core.report.SchoolRangeHours;
+import net.iteach.core.report.SchoolMonthlyHours;
+import net.iteach.core.report.StudentMonthlyHours;
+import net.iteach.core.security.SecurityUtils;
+import net.iteach.service.config.CountingDataSource;
+import net.iteach.service.dao.LessonSeriesDao;
+import net.iteach.service.dao.ReportDao;
+import net.iteach.service.dao.UserDao;
+import net.iteach.service.impl.LessonIntervalIndex;
+import net.iteach.service.impl.OwnershipIndex;
+import net.iteach.service.impl.TeacherGenerations;
+import net.iteach.test.AbstractIntegrationTest;
+import org.apache.commons.io.IOUtils;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.joda.time.YearMonth;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReportServiceImplTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private ReportDao reportDao;
+
+    @Autowired
+    private LessonSeriesDao lessonSeriesDao;
+
+    @Autowired
+    private TeacherGenerations teacherGenerations;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private TeacherService teacherService;
+
+    @Autowired
+    private LessonIntervalIndex lessonIntervalIndex;
+
+    @Autowired
+    private OwnershipIndex ownershipIndex;
+
+    @Autowired
+    private InvoiceGenerator invoiceGenerator;
+
+    @Autowired
+    private CountingDataSource dataSource;
+
+    private MonthlyReportCache monthlyReportCache;
+
+    private ReportServiceImpl service;
+
+    @Before
+    public void before() {
+        SecurityUtils securityUtils = mock(SecurityUtils.class);
+        when(securityUtils.getCurrentUserId()).thenReturn(1);
+        monthlyReportCache = new MonthlyReportCache(reportDao, teacherGenerations);
+        service = new ReportServiceImpl(securityUtils, reportDao, lessonSeriesDao, monthlyReportCache, invoiceGenerator);
+        // The data set is loaded behind the back of the application
+        lessonIntervalIndex.evict(1);
+        ownershipIndex.evict(1);
+    }
+
+    @Test
+    public void getMonthlyReport() {
+        MonthlyReport report = service.getMonthlyReport(new LocalDate(2013, 1, 10));
+        assertEquals(new YearMonth(2013, 1), report.getYearMonth());
+        // Schools, ordered by name
+        List<SchoolMonthlyHours> schools = report.getSchools();
+        assertEquals(2, schools.size());
+        SchoolMonthlyHours school1 = schools.get(0);
+        assertEquals("My school 1", school1.getName());
+        SchoolMonthlyHours school3 = schools.get(1);
+        assertEquals("My school 3", school3.getName());
+        // Only the students having had lessons
+        List<StudentMonthlyHours> students1 = new ArrayList<>(school1.getStudents().values());
+        assertEquals(1, students1.size());
+        assertEquals("A. Albert", students1.get(0).getName());
+        assertEquals(new BigDecimal("5.00"), students1.get(0).getMonthlyHours());
+        assertEquals(new BigDecimal("11.00"), students1.get(0).getTotalHours());
+        List<StudentMonthlyHours> students3 = new ArrayList<>(school3.getStudents().values());
+        assertEquals(1, students3.size());
+        assertEquals("C. Charles", students3.get(0).getName());
+        assertEquals(new BigDecimal("1.75"), students3.get(0).getMonthlyHours());
+        assertEquals(new BigDecimal("3.50"), students3.get(0).getTotalHours());
+        // Totals
+        assertEquals(new BigDecimal("6.75"), report.getMonthlyHours());
+        assertEquals(new BigDecimal("14.50"), report.getTotalHours());
+        assertEquals(Money.of(CurrencyUnit.EUR, new BigDecimal("102.50")), report.getMonthlyAmount());
+        assertEquals(Money.of(CurrencyUnit.EUR, new BigDecimal("215.00")), report.getTotalAmount());
+    }
+
+    @Test
+    public void getMonthlyReport_no_lesson_in_month() {
+        MonthlyReport report = service.getMonthlyReport(new LocalDate(2013, 3, 1));
+        List<SchoolMonthlyHours> schools = report.getSchools();
+        assertEquals(2, schools.size());
+        assertEquals(BigDecimal.ZERO, report.getMonthlyHours());
+        assertEquals(new BigDecimal("14.50"), report.getTotalHours());
+    }
+
+    @Test
+    public void getRangeReport_year_per_month() {
+        RangeReport report = service.getRangeReport(new LocalDate(2013, 1, 1), new LocalDate(2013, 12, 31), ReportGranularity.MONTH);
+        assertEquals(12, report.getPeriods().size());
+        assertEquals(new LocalDate(2013, 1, 1), report.getPeriods().get(0));
+        assertEquals(new LocalDate(2013, 12, 1), report.getPeriods().get(11));
+        // Only the schools having had lessons
+        List<SchoolRangeHours> schools = report.getSchools();
+        assertEquals(2, schools.size());
+        SchoolRangeHours school1 = schools.get(0);
+        assertEquals("My school 1", school1.getName());
+        assertEquals(1, school1.getStudents().size());
+        assertEquals("A. Albert", school1.getStudents().get(0).getName());
+        assertEquals(new BigDecimal("5.00"), school1.getStudents().get(0).getHours().get(0));
+        assertEquals(new BigDecimal("5.00"), school1.getStudents().get(0).getHours().get(1));
+        assertEquals(BigDecimal.ZERO, school1.getStudents().get(0).getHours().get(2));
+        assertEquals(new BigDecimal("10.00"), school1.getTotalHours());
+        assertEquals(Money.of(CurrencyUnit.EUR, new BigDecimal("100.00")), school1.getTotalAmount());
+        SchoolRangeHours school3 = schools.get(1);
+        assertEquals(new BigDecimal("1.75"), school3.getHours().get(1));
+        assertEquals(Money.of(CurrencyUnit.EUR, new BigDecimal("105.00")), school3.getTotalAmount());
+        // Totals
+        assertEquals(new BigDecimal("6.75"), report.getHours().get(0));
+        assertEquals(new BigDecimal("6.75"), report.getHours().get(1));
+        assertEquals(new BigDecimal("13.50"), report.getTotalHours());
+        assertEquals(Money.of(CurrencyUnit.EUR, new BigDecimal("205.00")), report.getTotalAmount());
+    }
+
+    @Test
+    public void getRangeReport_per_quarter() {
+        RangeReport report = service.getRangeReport(new LocalDate(2012, 11, 15), new LocalDate(2013, 3, 31), ReportGranularity.QUARTER);
+        assertEquals(asList(new LocalDate(2012, 10, 1), new LocalDate(2013, 1, 1)), report.getPeriods());
+        assertEquals(asList(new BigDecimal("1.00"), new BigDecimal("10.00")), report.getSchools().get(0).getHours());
+        assertEquals(new BigDecimal("14.50"), report.getTotalHours());
+    }
+
+    @Test
+    public void getRangeReport_per_week() {
+        RangeReport report = service.getRangeReport(new LocalDate(2013, 1, 1), new LocalDate(2013, 1, 31), ReportGranularity.WEEK);
+        assertEquals(asList(
+                new LocalDate(2012, 12, 31),
+                new LocalDate(2013, 1, 7),
+                new LocalDate(2013, 1, 14),
+                new LocalDate(2013, 1, 21),
+                new LocalDate(2013, 1, 28)
+        ), report.getPeriods());
+        assertEquals(asList(BigDecimal.ZERO, new BigDecimal("5.00"), BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO), report.getSchools().get(0).getHours());
+        assertEquals(asList(BigDecimal.ZERO, BigDecimal.ZERO, new BigDecimal("1.75"), BigDecimal.ZERO, BigDecimal.ZERO), report.getSchools().get(1).getHours());
+    }
+
+    @Test
+    public void getRangeReport_empty() {
+        RangeReport report = service.getRangeReport(new LocalDate(2014, 1, 1), new LocalDate(2014, 12, 31), ReportGranularity.QUARTER);
+        assertEquals(4, report.getPeriods().size());
+        assertEquals(0, report.getSchools().size());
+        assertEquals(BigDecimal.ZERO, report.getTotalHours());
+    }
+
+    @Test(expected = ReportRangeException.class)
+    public void getRangeReport_inverted() {
+        service.getRangeReport(new LocalDate(2013, 12, 31), new LocalDate(2013, 1, 1), ReportGranularity.MONTH);
+    }
+
+    @Test(expected = ReportRangeException.class)
+    public void getRangeReport_too_long() {
+        service.getRangeReport(new LocalDate(2000, 1, 1), new LocalDate(2013, 1, 1), ReportGranularity.WEEK);
+    }
+
+    @Test
+    public void exportLessons() throws IOException {
+        StringWriter writer = new StringWriter();
+        service.exportLessons(new LocalDate(2013, 1, 1), new LocalDate(2013, 1, 31), writer);
+        assertEquals(
+                "Date,From,To,School,Student,Location,Hours,Hourly rate,Currency,Amount\r\n" +
+                        "2013-01-07,18:00,20:30,My school 1,A. Albert,Home,2.50,10.00,EUR,25.00\r\n" +
+                        "2013-01-09,18:00,20:30,My school 1,A. Albert,Home,2.50,10.00,EUR,25.00\r\n" +
+                        "2013-01-15,09:00,10:45,My school 3,C. Charles,Factory,1.75,30.00,EUR,52.50\r\n",
+                writer.toString());
+    }
+
+    @Test
+    public void exportLessons_none() throws IOException {
+        StringWriter writer = new StringWriter();
+        service.exportLessons(new LocalDate(2014, 1, 1), new LocalDate(2014, 12, 31), writer);
+        assertEquals("Date,From,To,School,Student,Location,Hours,Hourly rate,Currency,Amount\r\n", writer.toString());
+    }
+
+    @Test(expected = ReportRangeException.class)
+    public void exportLessons_inverted() throws IOException {
+        service.exportLessons(new LocalDate(2013, 12, 31), new LocalDate(2013, 1, 1), new StringWriter());
+    }
+
+    @Test
+    public void exportInvoices() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, service.exportInvoices(new YearMonth(2013, 1), Locale.ENGLISH, out));
+        Map<String, String> entries = readZip(out);
+        assertEquals(asList("invoice-2013-01-1-My_school_1.html", "invoice-2013-01-3-My_school_3.html"), new ArrayList<>(entries.keySet()));
+        String invoice1 = entries.get("invoice-2013-01-1-My_school_1.html");
+        assertTrue(invoice1, invoice1.contains("<title>Invoice - My school 1 - January 2013</title>"));
+        assertTrue(invoice1, invoice1.contains("<tr><td>A. Albert</td><td>2</td><td>5</td><td>EUR 50.00</td></tr>"));
+        String invoice3 = entries.get("invoice-2013-01-3-My_school_3.html");
+        assertTrue(invoice3, invoice3.contains("<tr><td>C. Charles</td><td>1</td><td>1.75</td><td>EUR 52.50</td></tr>"));
+    }
+
+    @Test
+    public void exportInvoices_fr() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, service.exportInvoices(new YearMonth(2013, 1), Locale.FRENCH, out));
+        String invoice3 = readZip(out).get("invoice-2013-01-3-My_school_3.html");
+        assertTrue(invoice3, invoice3.contains("<title>Facture - My school 3 - janvier 2013</title>"));
+        assertTrue(invoice3, invoice3.contains("<tr><td>C. Charles</td><td>1</td><td>1,75</td><td>EUR 52.50</td></tr>"));
+    }
+
+    @Test
+    public void exportInvoices_none() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, service.exportInvoices(new YearMonth(2014, 1), Locale.ENGLISH, out));
+        assertTrue(readZip(out).isEmpty());
+    }
+
+    @Test
+    public void exportAllInvoices() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(3, invoiceGenerator.writeAllInvoices(new YearMonth(2013, 1), Locale.ENGLISH, out));
+        Map<String, String> entries = readZip(out);
+        assertEquals(asList(
+                "1-1/invoice-2013-01-1-My_school_1.html",
+                "1-1/invoice-2013-01-3-My_school_3.html",
+                "2-2/invoice-2013-01-2-My_school_2.html"),
+                new ArrayList<>(entries.keySet()));
+        String invoice2 = entries.get("2-2/invoice-2013-01-2-My_school_2.html");
+        assertTrue(invoice2, invoice2.contains("2@test.com"));
+        assertTrue(invoice2, invoice2.contains("<tr><th>Total</th><th>1</th><th>1</th><th>EUR 20.00</th></tr>"));
+    }
+
+    @Test
+    public void exportInvoices_with_series() throws IOException {
+        createSeries(1, new LocalDate(2013, 1, 16), new LocalDate(2013, 1, 31));
+        createSeries(2, new LocalDate(2013, 1, 14), new LocalDate(2013, 1, 31));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, service.exportInvoices(new YearMonth(2013, 1), Locale.ENGLISH, out));
+        String invoice1 = readZip(out).get("invoice-2013-01-1-My_school_1.html");
+        // Occurrences merged with the lessons of the same student
+        assertTrue(invoice1, invoice1.contains("<tr><td>A. Albert</td><td>5</td><td>8</td><td>EUR 80.00</td></tr>"));
+        // Student having only occurrences
+        assertTrue(invoice1, invoice1.contains("<tr><td>B. Bernard</td><td>3</td><td>3</td><td>EUR 30.00</td></tr>"));
+        assertTrue(invoice1, invoice1.indexOf("A. Albert") < invoice1.indexOf("B. Bernard"));
+    }
+
+    @Test
+    public void exportAllInvoices_with_series() throws IOException {
+        createSeries(2, new LocalDate(2013, 1, 14), new LocalDate(2013, 1, 31));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = dataSource.getStatementCount();
+        assertEquals(3, invoiceGenerator.writeAllInvoices(new YearMonth(2013, 1), Locale.ENGLISH, out));
+        // Series with their teachers, then the lines
+        assertEquals(2, dataSource.getStatementCount() - count);
+        String invoice1 = readZip(out).get("1-1/invoice-2013-01-1-My_school_1.html");
+        assertTrue(invoice1, invoice1.contains("1@test.com"));
+        assertTrue(invoice1, invoice1.contains("<tr><td>B. Bernard</td><td>3</td><td>3</td><td>EUR 30.00</td></tr>"));
+    }
+
+    @Test
+    public void exportInvoices_series_only() throws IOException {
+        createSeries(2, new LocalDate(2013, 3, 4), new LocalDate(2013, 3, 31));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, service.exportInvoices(new YearMonth(2013, 3), Locale.ENGLISH, out));
+        Map<String, String> entries = readZip(out);
+        assertEquals(asList("invoice-2013-03-1-My_school_1.html"), new ArrayList<>(entries.keySet()));
+        String invoice1 = entries.get("invoice-2013-03-1-My_school_1.html");
+        assertTrue(invoice1, invoice1.contains("1@test.com"));
+        assertTrue(invoice1, invoice1.contains("<tr><td>B. Bernard</td><td>4</td><td>4</td><td>EUR 40.00</td></tr>"));
+    }
+
+    @Test
+    public void exportLessons_with_series() throws IOException {
+        createSeries(3, new LocalDate(2013, 1, 14), new LocalDate(2013, 1, 24));
+        StringWriter writer = new StringWriter();
+        service.exportLessons(new LocalDate(2013, 1, 1), new LocalDate(2013, 1, 31), writer);
+        assertEquals(
+                "Date,From,To,School,Student,Location,Hours,Hourly rate,Currency,Amount\r\n" +
+                        "2013-01-07,18:00,20:30,My school 1,A. Albert,Home,2.50,10.00,EUR,25.00\r\n" +
+                        "2013-01-09,18:00,20:30,My school 1,A. Albert,Home,2.50,10.00,EUR,25.00\r\n" +
+                        "2013-01-14,10:00,11:00,My school 3,C. Charles,Series,1.00,30.00,EUR,30.00\r\n" +
+                        "2013-01-15,09:00,10:45,My school 3,C. Charles,Factory,1.75,30.00,EUR,52.50\r\n" +
+                        "2013-01-21,10:00,11:00,My school 3,C. Charles,Series,1.00,30.00,EUR,30.00\r\n",
+                writer.toString());
+    }
+
+    @Test
+    public void getRangeReport_with_series() {
+        createSeries(2, new LocalDate(2013, 3, 4), new LocalDate(2013, 3, 31));
+        RangeReport report = service.getRangeReport(new LocalDate(2013, 1, 1), new LocalDate(2013, 3, 31), ReportGranularity.MONTH);
+        SchoolRangeHours school1 = report.getSchools().get(0);
+        assertEquals(2, school1.getStudents().size());
+        assertEquals("B. Bernard", school1.getStudents().get(1).getName());
+        assertEquals(new BigDecimal("4.00"), school1.getHours().get(2));
+        assertEquals(new BigDecimal("17.50"), report.getTotalHours());
+        // Monthly report, from the monthly minutes
+        assertEquals(new BigDecimal("4.00"), service.getMonthlyReport(new LocalDate(2013, 3, 1)).getMonthlyHours());
+    }
+
+    /**
+     * Weekly lessons from 10:00 to 11:00
+     */
+    private void createSeries(int student, LocalDate date, LocalDate until) {
+        ID id = teacherService.createLessonSeriesForTeacher(1, new LessonSeriesForm(
+                date,
+                new LocalTime(10, 0),
+                new LocalTime(11, 0),
+                student,
+                "Series",
+                LessonPeriod.WEEKLY,
+                until));
+        assertTrue(id.isSuccess());
+    }
+
+    private static Map<String, String> readZip(ByteArrayOutputStream out) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), IOUtils.toString(zip, "UTF-8"));
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void getMonthlyReport_cached() {
+        MonthlyReport report = service.getMonthlyReport(new LocalDate(2013, 1, 10));
+        assertEquals(1, monthlyReportCache.getStats().missCount());
+        // Same month, same data
+        assertSame(report, service.getMonthlyReport(new LocalDate(2013, 1, 31)));
+        assertEquals(1, monthlyReportCache.getStats().hitCount());
+        // Another month
+        assertNotSame(report, service.getMonthlyReport(new LocalDate(2013, 2, 1)));
+        assertEquals(2, monthlyReportCache.getStats().missCount());
+    }
+
+    @Test
+    public void getMonthlyReport_cached_until_lesson_change() {
+        MonthlyReport report = service.getMonthlyReport(new LocalDate(2013, 1, 10));
+        assertEquals(new BigDecimal("6.75"), report.getMonthlyHours());
+        // New lesson
+        ID id = teacherService.createLessonForTeacher(1, new LessonForm(
+                new LocalDate(2013, 1, 21),
+                new LocalTime(9, 0),
+                new LocalTime(10, 0),
+                3,
+                "Factory"));
+        assertTrue(id.isSuccess());
+        report = service.getMonthlyReport(new LocalDate(2013, 1, 10));
+        assertEquals(new BigDecimal("7.75"), report.getMonthlyHours());
+        // Deleted lesson
+        Ack ack = teacherService.deleteLessonForTeacher(1, id.getValue());
+        assertTrue(ack.isSuccess());
+        report = service.getMonthlyReport(new LocalDate(2013, 1, 10));
+        assertEquals(new BigDecimal("6.75"), report.getMonthlyHours());
+        assertEquals(0, monthlyReportCache.getStats().hitCount());
+    }
+
+    @Test
+    public void precompute_dropped_after_lesson_change() {
+        MonthlyReportPrecomputeTask task = new MonthlyReportPrecomputeTask(userDao, monthlyReportCache);
+        try {
+            task.precompute(new LocalDate(2013, 1, 10));
+            ID id = teacherService.createLessonForTeacher(1, new LessonForm(
+                    new LocalDate(2013, 1, 21),
+                    new LocalTime(9, 0),
+                    new LocalTime(10, 0),
+                    3,
+                    "Factory"));
+            assertTrue(id.isSuccess());
+            MonthlyReport report = service.getMonthlyReport(new LocalDate(2013, 1, 10));
+            assertEquals(new BigDecimal("7.75"), report.getMonthlyHours());
+            assertEquals(0, monthlyReportCache.getPrecomputedHitCount());
+            assertEquals(3, monthlyReportCache.getPrecomputedCount());
+        } finally {
+            task.shutdown();
+        }
+    }
+
+    @Test
+    public void precompute() {
+        MonthlyReportPrecomputeTask task = new MonthlyReportPrecomputeTask(userDao, monthlyReportCache);
+        try {
+            assertEquals(2, task.precompute(new LocalDate(2013, 2, 10)));
+            assertEquals(4, monthlyReportCache.getPrecomputedCount());
+            assertEquals(0, monthlyReportCache.getStats().missCount());
+            assertEquals(1, task.getRunCount());
+            assertEquals(2, task.getLastRunTeacherCount());
+            assertEquals(0, task.getLastRunFailureCount());
+            // Reports of the current and previous months are ready
+            MonthlyReport report = service.getMonthlyReport(new LocalDate(2013, 1, 10));
+            assertEquals(new BigDecimal("6.75"), report.getMonthlyHours());
+            service.getMonthlyReport(new LocalDate(2013, 2, 10));
+            assertEquals(2, monthlyReportCache.getPrecomputedHitCount());
+            assertEquals(0, monthlyReportCache.getStats().missCount());
+            // The next month drops the oldest reports
+            task.precompute(new LocalDate(2013, 3, 10));
+            assertEquals(4, monthlyReportCache.getPrecomputedCount());
+        } finally {
+            task.shutdown();
+        }
+    }
+
+}
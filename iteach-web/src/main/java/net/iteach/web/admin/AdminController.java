@@ -12,6 +12,7 @@ import net.iteach.web.support.AbstractGUIController;
 import net.iteach.web.support.ErrorHandler;
 import net.sf.jstring.Strings;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.joda.time.YearMonth;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -22,6 +23,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.Locale;
 
@@ -91,6 +93,42 @@ public class AdminController extends AbstractGUIController {
         return "admin/accounts";
     }
 
+    /**
+     * Lessons, hours and revenue of all the accounts for a month (<code>yyyy-MM</code>),
+     * the current one by default
+     */
+    @RequestMapping(value = "/hours", method = RequestMethod.GET)
+    public String hours(Locale locale, Model model, @RequestParam(required = false) String month) {
+        YearMonth yearMonth = month != null ? YearMonth.parse(month) : new YearMonth();
+        // Dashboard
+        model.addAttribute("dashboard", adminService.getHoursDashboard(yearMonth));
+        // Display information
+        model.addAttribute("yearMonth",
+                String.format("%s %s",
+                        yearMonth.year().getAsText(locale),
+                        yearMonth.monthOfYear().getAsText(locale)));
+        model.addAttribute("month", yearMonth.toString());
+        model.addAttribute("previousMonth", yearMonth.minusMonths(1).toString());
+        model.addAttribute("nextMonth", yearMonth.plusMonths(1).toString());
+        // OK
+        return "admin/hours";
+    }
+
+    /**
+     * Downloads the invoices of all the accounts for a month (<code>yyyy-MM</code>) as a zip
+     */
+    @RequestMapping(value = "/invoices.zip", method = RequestMethod.GET)
+    public void exportInvoices(Locale locale, @RequestParam String month, HttpServletResponse response) throws IOException {
+        YearMonth yearMonth = YearMonth.parse(month);
+        // Headers
+        response.setContentType("application/zip");
+        response.addHeader("Content-Disposition", String.format("attachment; filename=invoices-%s.zip", yearMonth));
+        // Streams the invoices
+        OutputStream out = response.getOutputStream();
+        adminService.exportInvoices(yearMonth, locale, out);
+        out.flush();
+    }
+
     /**
      * Page to confirm the deletion
      */
@@ -121,6 +159,16 @@ public class AdminController extends AbstractGUIController {
         return adminService.userEnable(id);
     }
 
+    /**
+     * Rebuilds the monthly minutes used by the reports
+     */
+    @RequestMapping(value = "/reports/rebuild", method = RequestMethod.PUT)
+    public @ResponseBody
+    Ack reportsRebuild() {
+        adminService.rebuildMonthlyMinutes();
+        return Ack.OK;
+    }
+
     /**
      * Deletes the user
      */
@@ -5,6 +5,7 @@ import java.util.List;
 import javax.servlet.http.HttpSession;
 
 import net.iteach.api.PreferenceService;
+import net.iteach.api.TeacherService;
 import net.iteach.core.model.Ack;
 import net.iteach.core.model.Lesson;
 import net.iteach.core.model.LessonListRequest;
@@ -33,14 +34,16 @@ public class PlanningController extends AbstractUIController {
 	private final TeacherUI teacherUI;
 	private final UserSession userSession;
     private final PreferenceService preferenceService;
+    private final TeacherService teacherService;
 
 	@Autowired
 	public PlanningController(SecurityUtils securityUtils,
-                              ErrorHandler errorHandler, Strings strings, TeacherUI teacherUI, UserSession userSession, PreferenceService preferenceService) {
+                              ErrorHandler errorHandler, Strings strings, TeacherUI teacherUI, UserSession userSession, PreferenceService preferenceService, TeacherService teacherService) {
 		super(securityUtils, errorHandler, strings);
 		this.teacherUI = teacherUI;
 		this.userSession = userSession;
         this.preferenceService = preferenceService;
+        this.teacherService = teacherService;
     }
 
 	@RequestMapping(value = "/list", method = RequestMethod.POST)
@@ -57,6 +60,8 @@ public class PlanningController extends AbstractUIController {
 		// Sets the current date
 		if (request.isSetDate()) {
 			userSession.setCurrentDate(session, request.getRange().getFrom().toLocalDate());
+			// Previous & next ranges
+			teacherService.prefetchLessonsForTeacher(securityUtils.getCurrentUserId(), request.getRange());
 		}
 		// OK
 		return new LessonEvents(events);
@@ -1,21 +1,34 @@
 package net.iteach.web.report;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
 import net.iteach.api.report.ReportService;
 import net.iteach.core.report.MonthlyReport;
+import net.iteach.core.report.RangeReport;
+import net.iteach.core.report.ReportGranularity;
 import net.iteach.web.support.AbstractGUIController;
 import net.iteach.web.support.ErrorHandler;
 import net.iteach.web.support.UserSession;
+import net.sf.jstring.Strings;
 
 import org.joda.time.LocalDate;
+import org.joda.time.YearMonth;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 
 @Controller
 @RequestMapping("/gui/report")
@@ -23,12 +36,14 @@ public class ReportController extends AbstractGUIController {
 
 	private final UserSession userSession;
 	private final ReportService reportService;
+	private final Strings strings;
 
 	@Autowired
-	public ReportController(ErrorHandler errorHandler, UserSession userSession, ReportService reportService) {
+	public ReportController(ErrorHandler errorHandler, UserSession userSession, ReportService reportService, Strings strings) {
 		super(errorHandler);
 		this.userSession = userSession;
 		this.reportService = reportService;
+		this.strings = strings;
 	}
 
 	@RequestMapping(value = "/monthly", method = RequestMethod.GET)
@@ -58,6 +73,85 @@ public class ReportController extends AbstractGUIController {
 		return monthlyReportDelta(locale, model, session, 1);
 	}
 
+	@RequestMapping(value = "/yearly", method = RequestMethod.GET)
+	public String yearlyReport(Locale locale, Model model, HttpSession session, @RequestParam(required = false, defaultValue = "MONTH") ReportGranularity granularity) {
+		// Gets the current year
+		int year = userSession.getCurrentDate(session).getYear();
+		// Gets the report for the whole year...
+		RangeReport report = reportService.getRangeReport(new LocalDate(year, 1, 1), new LocalDate(year, 12, 31), granularity);
+		// ...and puts it into the model
+		model.addAttribute("report", report);
+		// Display information
+		model.addAttribute("year", year);
+		model.addAttribute("granularity", granularity);
+		model.addAttribute("granularities", ReportGranularity.values());
+		model.addAttribute("periods", getPeriodLabels(locale, report));
+		// OK
+		return "report/yearly";
+	}
+
+	@RequestMapping(value = "/yearly/previous", method = RequestMethod.GET)
+	public String yearlyReportPrevious(Locale locale, Model model, HttpSession session, @RequestParam(required = false, defaultValue = "MONTH") ReportGranularity granularity) {
+		deltaMonth(session, -12);
+		return yearlyReport(locale, model, session, granularity);
+	}
+
+	@RequestMapping(value = "/yearly/next", method = RequestMethod.GET)
+	public String yearlyReportNext(Locale locale, Model model, HttpSession session, @RequestParam(required = false, defaultValue = "MONTH") ReportGranularity granularity) {
+		deltaMonth(session, 12);
+		return yearlyReport(locale, model, session, granularity);
+	}
+
+	/**
+	 * Exports the lessons between two dates (<code>yyyy-MM-dd</code>) as CSV
+	 */
+	@RequestMapping(value = "/export.csv", method = RequestMethod.GET)
+	public void exportLessons(@RequestParam String from, @RequestParam String to, HttpServletResponse response) throws IOException {
+		LocalDate fromDate = LocalDate.parse(from);
+		LocalDate toDate = LocalDate.parse(to);
+		// Headers
+		response.setContentType("text/csv");
+		response.setCharacterEncoding("UTF-8");
+		response.addHeader("Content-Disposition", String.format("attachment; filename=lessons-%s-%s.csv", fromDate, toDate));
+		// Streams the lessons
+		Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), "UTF-8"));
+		reportService.exportLessons(fromDate, toDate, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Downloads the invoices of a month (<code>yyyy-MM</code>) as a zip, one file per school
+	 */
+	@RequestMapping(value = "/invoices.zip", method = RequestMethod.GET)
+	public void exportInvoices(Locale locale, @RequestParam String month, HttpServletResponse response) throws IOException {
+		YearMonth yearMonth = YearMonth.parse(month);
+		// Headers
+		response.setContentType("application/zip");
+		response.addHeader("Content-Disposition", String.format("attachment; filename=invoices-%s.zip", yearMonth));
+		// Streams the invoices
+		OutputStream out = response.getOutputStream();
+		reportService.exportInvoices(yearMonth, locale, out);
+		out.flush();
+	}
+
+	protected List<String> getPeriodLabels(Locale locale, RangeReport report) {
+		List<String> labels = new ArrayList<>();
+		for (LocalDate start : report.getPeriods()) {
+			switch (report.getGranularity()) {
+				case WEEK:
+					labels.add(strings.get(locale, "report.period.week", start.getWeekOfWeekyear()));
+					break;
+				case QUARTER:
+					labels.add(strings.get(locale, "report.period.quarter", (start.getMonthOfYear() + 2) / 3));
+					break;
+				default:
+					labels.add(start.monthOfYear().getAsShortText(locale));
+					break;
+			}
+		}
+		return labels;
+	}
+
 	protected String monthlyReportDelta(Locale locale, Model model, HttpSession session, int delta) {
 		deltaMonth(session, delta);
 		// OK
@@ -10,6 +10,7 @@ import net.iteach.web.support.ErrorHandler;
 import net.sf.jstring.Strings;
 import org.joda.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
@@ -188,7 +189,18 @@ public class TeacherUIController extends AbstractUIController implements Teacher
     }
 
     @Override
-    @RequestMapping(value = "/lesson/{id:\\d+}", method = RequestMethod.GET)
+    @RequestMapping(value = "/lesson/density", method = RequestMethod.GET)
+    public
+    @ResponseBody
+    LessonDensity getLessonDensity(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from, @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        // Gets the current teacher
+        int userId = securityUtils.getCurrentUserId();
+        // OK
+        return teacherService.getLessonDensityForTeacher(userId, from, to);
+    }
+
+    @Override
+    @RequestMapping(value = "/lesson/{id:-?\\d+}", method = RequestMethod.GET)
     public
     @ResponseBody
     LessonDetails getLesson(@PathVariable int id) {
@@ -231,6 +243,61 @@ public class TeacherUIController extends AbstractUIController implements Teacher
         return teacherService.deleteLessonForTeacher(userId, id);
     }
 
+    @Override
+    @RequestMapping(value = "/lesson/batch", method = RequestMethod.POST)
+    public
+    @ResponseBody
+    LessonSelection createLessons(@RequestBody LessonsForm form) {
+        // Gets the current teacher
+        int userId = securityUtils.getCurrentUserId();
+        // OK
+        return teacherService.createLessonsForTeacher(userId, form);
+    }
+
+    @Override
+    @RequestMapping(value = "/lesson/batch/move", method = RequestMethod.POST)
+    public
+    @ResponseBody
+    Ack moveLessons(@RequestBody LessonSelectionChange change) {
+        // Gets the current teacher
+        int userId = securityUtils.getCurrentUserId();
+        // OK
+        return teacherService.moveLessonsForTeacher(userId, change);
+    }
+
+    @Override
+    @RequestMapping(value = "/lesson/batch/delete", method = RequestMethod.POST)
+    public
+    @ResponseBody
+    Ack deleteLessons(@RequestBody LessonSelection selection) {
+        // Gets the current teacher
+        int userId = securityUtils.getCurrentUserId();
+        // OK
+        return teacherService.deleteLessonsForTeacher(userId, selection);
+    }
+
+    @Override
+    @RequestMapping(value = "/lesson/series", method = RequestMethod.POST)
+    public
+    @ResponseBody
+    ID createLessonSeries(@RequestBody LessonSeriesForm form) {
+        // Gets the current teacher
+        int userId = securityUtils.getCurrentUserId();
+        // OK
+        return teacherService.createLessonSeriesForTeacher(userId, form);
+    }
+
+    @Override
+    @RequestMapping(value = "/lesson/series/{id:\\d+}", method = RequestMethod.DELETE)
+    public
+    @ResponseBody
+    Ack deleteLessonSeries(@PathVariable int id) {
+        // Gets the current teacher
+        int userId = securityUtils.getCurrentUserId();
+        // OK
+        return teacherService.deleteLessonSeriesForTeacher(userId, id);
+    }
+
     @Override
     @RequestMapping(value = "/lesson/{id}/change", method = RequestMethod.POST)
     public
@@ -276,7 +343,7 @@ public class TeacherUIController extends AbstractUIController implements Teacher
     }
 
     @Override
-    @RequestMapping(value = "/lesson/{lessonId:\\d+}/comment/list/{maxlength:\\d+}/{format}/{offset:\\d+}/{count:\\d+}", method = RequestMethod.GET)
+    @RequestMapping(value = "/lesson/{lessonId:-?\\d+}/comment/list/{maxlength:\\d+}/{format}/{offset:\\d+}/{count:\\d+}", method = RequestMethod.GET)
     public
     @ResponseBody
     Comments getLessonComments(@PathVariable int lessonId, @PathVariable int offset, @PathVariable int count, @PathVariable int maxlength, @PathVariable CommentFormat format) {
@@ -287,7 +354,7 @@ public class TeacherUIController extends AbstractUIController implements Teacher
     }
 
     @Override
-    @RequestMapping(value = "/lesson/{lessonId:\\d+}/comment/{commentId:\\d+}/{format:.*}", method = RequestMethod.GET)
+    @RequestMapping(value = "/lesson/{lessonId:-?\\d+}/comment/{commentId:\\d+}/{format:.*}", method = RequestMethod.GET)
     public
     @ResponseBody
     Comment getLessonComment(@PathVariable int lessonId, @PathVariable int commentId, @PathVariable CommentFormat format) {
@@ -298,7 +365,7 @@ public class TeacherUIController extends AbstractUIController implements Teacher
     }
 
     @Override
-    @RequestMapping(value = "/lesson/{lessonId:\\d+}/comment/{format:.*}", method = RequestMethod.POST)
+    @RequestMapping(value = "/lesson/{lessonId:-?\\d+}/comment/{format:.*}", method = RequestMethod.POST)
     public
     @ResponseBody
     Comment editLessonComment(@PathVariable int lessonId, @PathVariable CommentFormat format, @RequestBody CommentsForm form) {
@@ -309,7 +376,7 @@ public class TeacherUIController extends AbstractUIController implements Teacher
     }
 
     @Override
-    @RequestMapping(value = "/lesson/{lessonId:\\d+}/comment/{commentId:\\d+}", method = RequestMethod.DELETE)
+    @RequestMapping(value = "/lesson/{lessonId:-?\\d+}/comment/{commentId:\\d+}", method = RequestMethod.DELETE)
     public
     @ResponseBody
     Ack deleteLessonComment(@PathVariable int lessonId, @PathVariable int commentId) {